@@ -0,0 +1,131 @@
+package org.koshiroanz.junit.ejemplo.benchmarks;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.LimiteVelocidad;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BancoBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class BancoPoblado {
+        @Param({"1000", "1000000"})
+        int cuentas;
+
+        Banco banco;
+        Cuenta[] todas;
+        BigDecimal monto = BigDecimal.ONE;
+
+        @Setup
+        public void setup() {
+            banco = new Banco();
+            todas = new Cuenta[cuentas];
+            for(int i = 0; i < cuentas; i++) {
+                todas[i] = new Cuenta("Persona " + i, new BigDecimal("1000000"));
+                banco.addCuenta(todas[i]);
+            }
+        }
+    }
+
+    // Mismo banco con límites de velocidad que nunca se alcanzan: mide sólo el costo del control
+    @State(Scope.Benchmark)
+    public static class BancoLimitado extends BancoPoblado {
+        @Override
+        public void setup() {
+            super.setup();
+            banco.habilitarLimites(new LimiteVelocidad(Duration.ofMinutes(1), new BigDecimal("1000000000"), 1 << 23));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DosCuentas {
+        Banco banco;
+        Cuenta cuenta1;
+        Cuenta cuenta2;
+        BigDecimal monto = BigDecimal.ONE;
+
+        @Setup
+        public void setup() {
+            banco = new Banco();
+            cuenta1 = new Cuenta("John Doe", new BigDecimal("1000000"));
+            cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000000"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BancoVacio {
+        Banco banco;
+        int siguiente;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            banco = new Banco();
+        }
+    }
+
+    // Todas las transferencias compiten por las mismas dos cuentas
+    @Benchmark
+    @Threads(1)
+    public void transferirContendidaUnHilo(DosCuentas estado) {
+        estado.banco.transferir(estado.cuenta1, estado.cuenta2, estado.monto);
+        estado.banco.transferir(estado.cuenta2, estado.cuenta1, estado.monto);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transferirContendidaMultiHilo(DosCuentas estado) {
+        estado.banco.transferir(estado.cuenta1, estado.cuenta2, estado.monto);
+        estado.banco.transferir(estado.cuenta2, estado.cuenta1, estado.monto);
+    }
+
+    // Cuentas al azar: con muchas cuentas casi nunca hay dos hilos sobre la misma
+    @Benchmark
+    @Threads(4)
+    public void transferirDispersaMultiHilo(BancoPoblado estado) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Cuenta origen = estado.todas[random.nextInt(estado.cuentas)];
+        Cuenta destino = estado.todas[random.nextInt(estado.cuentas)];
+        estado.banco.transferir(origen, destino, estado.monto);
+        estado.banco.transferir(destino, origen, estado.monto);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transferirDispersaConLimites(BancoLimitado estado) {
+        transferirDispersaMultiHilo(estado);
+    }
+
+    @Benchmark
+    public void addCuenta(BancoVacio estado) {
+        estado.banco.addCuenta(new Cuenta("Persona " + (estado.siguiente++ & 0xFFFFF), BigDecimal.TEN));
+    }
+
+    @Benchmark
+    public Object findById(BancoPoblado estado) {
+        return estado.banco.findById(estado.todas[ThreadLocalRandom.current().nextInt(estado.cuentas)].getId());
+    }
+
+    @Benchmark
+    public Object findByPersona(BancoPoblado estado) {
+        return estado.banco.findByPersona(estado.todas[ThreadLocalRandom.current().nextInt(estado.cuentas)].getPersona());
+    }
+
+    // Búsqueda lineal de referencia, como la de CuentaTest.testRelacionBancoCuentas
+    @Benchmark
+    public Object findByPersonaStream(BancoPoblado estado) {
+        String persona = estado.todas[ThreadLocalRandom.current().nextInt(estado.cuentas)].getPersona();
+        return estado.banco.getCuentas().stream().filter(c -> c.getPersona().equals(persona)).findFirst();
+    }
+}
@@ -0,0 +1,42 @@
+package org.koshiroanz.junit.ejemplo.benchmarks;
+
+import org.koshiroanz.junit.ejemplo.codec.CodecBinario;
+import org.koshiroanz.junit.ejemplo.codec.RegistroCuenta;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    ByteBuffer buffer;
+    RegistroCuenta registro;
+    long id;
+
+    @Setup
+    public void setup() {
+        buffer = ByteBuffer.allocateDirect(128);
+        registro = new RegistroCuenta();
+    }
+
+    // Con -prof gc debería reportar 0 B/op
+    @Benchmark
+    public RegistroCuenta idaYVueltaCuenta() {
+        buffer.clear();
+        CodecBinario.escribirCuenta(buffer, ++id, "John Doe", 100_050, 2);
+        buffer.flip();
+        return CodecBinario.leerCuenta(buffer, registro);
+    }
+
+    @Benchmark
+    public ByteBuffer escribirTransferencia() {
+        buffer.clear();
+        CodecBinario.escribirTransferencia(buffer, ++id, id + 1, 1_050, 2);
+        return buffer;
+    }
+}
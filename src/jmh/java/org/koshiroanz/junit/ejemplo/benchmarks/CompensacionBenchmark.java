@@ -0,0 +1,58 @@
+package org.koshiroanz.junit.ejemplo.benchmarks;
+
+import org.koshiroanz.junit.ejemplo.clearing.CamaraCompensacion;
+import org.koshiroanz.junit.ejemplo.clearing.ResultadoCompensacion;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cada medición compensa un ciclo completo con un millón de obligaciones pendientes
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CompensacionBenchmark {
+    @Param({"1000000"})
+    int obligaciones;
+
+    @Param({"10"})
+    int cantidadBancos;
+
+    CamaraCompensacion camara;
+    Banco[] bancos;
+    BigDecimal[] montos;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        camara = new CamaraCompensacion(2);
+        bancos = new Banco[cantidadBancos];
+        for(int i = 0; i < cantidadBancos; i++) {
+            bancos[i] = new Banco();
+            camara.registrarBanco(bancos[i], new Cuenta("Liquidación " + i, new BigDecimal("1000000000000")));
+        }
+        montos = new BigDecimal[100];
+        for(int i = 0; i < montos.length; i++) {
+            montos[i] = BigDecimal.valueOf(i + 1, 2);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void registrar() {
+        SplittableRandom random = new SplittableRandom(42);
+        for(int i = 0; i < obligaciones; i++) {
+            camara.registrarObligacion(bancos[random.nextInt(cantidadBancos)], bancos[random.nextInt(cantidadBancos)],
+                    montos[random.nextInt(montos.length)]);
+        }
+    }
+
+    @Benchmark
+    public ResultadoCompensacion compensar() {
+        return camara.compensar();
+    }
+}
@@ -0,0 +1,64 @@
+package org.koshiroanz.junit.ejemplo.benchmarks;
+
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.ResultadoOperacion;
+import org.koshiroanz.junit.ejemplo.models.SaldoEscalado;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CuentaBenchmark {
+    @Param({"decimal", "escalado"})
+    String saldo;
+
+    Cuenta cuenta;
+    BigDecimal monto;
+    BigDecimal excesivo;
+
+    @Setup
+    public void setup() {
+        BigDecimal inicial = new BigDecimal("1000000.00");
+        cuenta = "escalado".equals(saldo)
+                ? new Cuenta("John Doe", new SaldoEscalado(inicial, 2))
+                : new Cuenta("John Doe", inicial);
+        monto = new BigDecimal("10.50");
+        excesivo = new BigDecimal("99999999.00");
+    }
+
+    // Crédito seguido de débito para que el saldo no se agote entre iteraciones
+    @Benchmark
+    public Cuenta creditoDebito() {
+        cuenta.credito(monto);
+        cuenta.debito(monto);
+        return cuenta;
+    }
+
+    @Benchmark
+    public BigDecimal getSaldo() {
+        return cuenta.getSaldo();
+    }
+
+    // Rechazos: con -prof gc ambos deberían reportar 0 B/op
+    @Benchmark
+    public Object debitoRechazado() {
+        try {
+            cuenta.debito(excesivo);
+            return null;
+        } catch(NotEnoughMoneyException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public ResultadoOperacion tryDebitoRechazado() {
+        return cuenta.tryDebito(excesivo);
+    }
+}
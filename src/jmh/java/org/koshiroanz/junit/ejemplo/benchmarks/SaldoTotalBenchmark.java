@@ -0,0 +1,38 @@
+package org.koshiroanz.junit.ejemplo.benchmarks;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.storage.AlmacenColumnar;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaldoTotalBenchmark {
+    @Param({"heap", "columnar"})
+    String almacen;
+
+    @Param({"1000000"})
+    int cuentas;
+
+    Banco banco;
+
+    @Setup
+    public void setup() {
+        banco = "columnar".equals(almacen) ? new Banco(new AlmacenColumnar(2)) : new Banco();
+        for(int i = 0; i < cuentas; i++) {
+            banco.addCuenta(new Cuenta("Persona " + (i % 10000), new BigDecimal("100.25")));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal saldoTotal() {
+        return banco.saldoTotal();
+    }
+}
@@ -0,0 +1,175 @@
+package org.koshiroanz.junit.ejemplo.cache;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.PersonaListener;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Cache LRU acotada para resolver cuentas por persona delante de una búsqueda más cara (por
+ * defecto {@link Banco#findByPersona(String)}, pero puede ser cualquier cargador).
+ *
+ * <p>Se guardan referencias a las propias {@link Cuenta}s, así que {@code debito} y
+ * {@code credito} escriben directamente en su saldo y nunca hay un saldo viejo en la cache.
+ * Lo único que puede quedar desactualizado es la relación persona → cuenta: la cache se
+ * registra como {@link PersonaListener}, que no pone las escrituras del banco bajo el monitor
+ * de la cuenta, e invalida las personas afectadas en cada alta o cambio de persona. Una carga
+ * que se cruzó con una invalidación no se guarda. Como {@link Banco#setCuentas} no notifica a
+ * los listeners, después de usarlo hay que llamar a {@link #invalidarTodo()}.
+ *
+ * <p>Las entradas están en un {@link ConcurrentHashMap} y un acierto sólo anota en la entrada
+ * cuántas cargas iban al momento del acceso, sin tomar ningún lock. Al pasar
+ * la capacidad, un único hilo a la vez desaloja de una pasada las de acceso más viejo hasta
+ * dejar 7/8 de la capacidad; los accesos entre dos cargas empatan, así que el LRU es aproximado.
+ */
+public class CacheCuentas implements PersonaListener, AutoCloseable {
+    private static final Comparator<Candidata> MAS_RECIENTE = Comparator.comparingLong(Candidata::acceso).reversed();
+
+    private final Banco banco;
+    private final Function<String, Optional<Cuenta>> cargador;
+    private final int capacidad;
+    // Tamaño al que se baja en cada desalojo
+    private final int objetivo;
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    private final AtomicBoolean desalojando = new AtomicBoolean();
+    // Cantidad de cargas guardadas; es el instante de acceso de las entradas
+    private final AtomicLong reloj = new AtomicLong();
+
+    // Aumenta en cada invalidación para descartar cargas que empezaron antes
+    private final AtomicLong generacion = new AtomicLong();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder desalojos = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+
+    public CacheCuentas(Banco banco, int capacidad) {
+        this(banco, capacidad, banco::findByPersona);
+    }
+
+    public CacheCuentas(Banco banco, int capacidad, Function<String, Optional<Cuenta>> cargador) {
+        if(capacidad < 1) {
+            throw new IllegalArgumentException("La capacidad debe ser positiva: " + capacidad);
+        }
+        this.banco = banco;
+        this.cargador = cargador;
+        this.capacidad = capacidad;
+        this.objetivo = capacidad - capacidad / 8;
+        banco.addPersonaListener(this);
+    }
+
+    public Optional<Cuenta> findByPersona(String persona) {
+        Entrada entrada = entradas.get(persona);
+        if(entrada != null) {
+            entrada.acceso = reloj.get();
+            aciertos.increment();
+            return Optional.of(entrada.cuenta);
+        }
+        fallos.increment();
+        long antes = generacion.get();
+        Optional<Cuenta> cargada = cargador.apply(persona);
+        // Las ausencias no se guardan: una alta posterior debe verse sin esperar desalojos
+        if(cargada.isPresent()) {
+            Entrada nueva = new Entrada(cargada.get(), reloj.incrementAndGet());
+            entradas.put(persona, nueva);
+            // Una invalidación que aumentó la generación después de esta lectura también quita la entrada
+            if(generacion.get() != antes) {
+                entradas.remove(persona, nueva);
+            } else if(entradas.size() > capacidad) {
+                desalojar();
+            }
+        }
+        return cargada;
+    }
+
+    public void invalidar(String persona) {
+        generacion.incrementAndGet();
+        if(entradas.remove(persona) != null) {
+            invalidaciones.increment();
+        }
+    }
+
+    public void invalidarTodo() {
+        generacion.incrementAndGet();
+        invalidaciones.add(entradas.size());
+        entradas.clear();
+    }
+
+    public EstadisticasCache estadisticas() {
+        return new EstadisticasCache(aciertos.sum(), fallos.sum(), desalojos.sum(), invalidaciones.sum(), entradas.size(), capacidad);
+    }
+
+    @Override
+    public void onAlta(Cuenta cuenta) {
+        if(cuenta.getPersona() != null) {
+            invalidar(cuenta.getPersona());
+        }
+    }
+
+    @Override
+    public void onPersona(Cuenta cuenta, String anterior) {
+        if(anterior != null) {
+            invalidar(anterior);
+        }
+        if(cuenta.getPersona() != null) {
+            invalidar(cuenta.getPersona());
+        }
+    }
+
+    @Override
+    public void close() {
+        banco.removePersonaListener(this);
+        invalidarTodo();
+    }
+
+    // Si otro hilo ya está desalojando no se espera: esa pasada también cubre esta inserción
+    private void desalojar() {
+        if(!desalojando.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int exceso = entradas.size() - objetivo;
+            if(exceso <= 0) {
+                return;
+            }
+            // Las "exceso" de acceso más viejo, con un heap acotado en lugar de ordenar todas
+            PriorityQueue<Candidata> viejas = new PriorityQueue<>(exceso + 1, MAS_RECIENTE);
+            for(Map.Entry<String, Entrada> e : entradas.entrySet()) {
+                viejas.add(new Candidata(e.getValue().acceso, e.getKey(), e.getValue()));
+                if(viejas.size() > exceso) {
+                    viejas.poll();
+                }
+            }
+            for(Candidata candidata : viejas) {
+                if(entradas.remove(candidata.persona(), candidata.entrada())) {
+                    desalojos.increment();
+                }
+            }
+        } finally {
+            desalojando.set(false);
+        }
+    }
+
+    private static final class Entrada {
+        final Cuenta cuenta;
+        volatile long acceso;
+
+        Entrada(Cuenta cuenta, long acceso) {
+            this.cuenta = cuenta;
+            this.acceso = acceso;
+        }
+    }
+
+    private record Candidata(long acceso, String persona, Entrada entrada) {
+    }
+}
@@ -0,0 +1,12 @@
+package org.koshiroanz.junit.ejemplo.cache;
+
+/**
+ * Valores de {@link CacheCuentas} en un momento dado.
+ */
+public record EstadisticasCache(long aciertos, long fallos, long desalojos, long invalidaciones, int tamano, int capacidad) {
+
+    public double tasaAciertos() {
+        long consultas = aciertos + fallos;
+        return consultas == 0 ? 0 : (double) aciertos / consultas;
+    }
+}
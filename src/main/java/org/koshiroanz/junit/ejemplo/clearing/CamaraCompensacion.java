@@ -0,0 +1,208 @@
+package org.koshiroanz.junit.ejemplo.clearing;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.ResultadoOperacion;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cámara de compensación entre varios {@link Banco}s. Una transferencia entre cuentas de
+ * bancos distintos debita al origen y acredita al destino en el momento, y deja registrada
+ * una obligación pendiente del banco de origen con el banco de destino.
+ *
+ * <p>{@link #compensar()} toma todas las obligaciones pendientes, calcula en una pasada la
+ * posición neta multilateral de cada banco y la liquida con a lo sumo {@code bancos - 1}
+ * movimientos entre sus cuentas de liquidación, en lugar de un movimiento por transferencia.
+ * Las obligaciones se guardan en arreglos primitivos en unidades de la escala de la cámara.
+ */
+public class CamaraCompensacion {
+    private static final int CAPACIDAD_INICIAL = 1024;
+
+    private final int escala;
+
+    // Protegidos por el monitor de la cámara
+    private final Map<Banco, Integer> indices = new IdentityHashMap<>();
+    private final List<Banco> bancos = new ArrayList<>();
+    private final List<Cuenta> liquidaciones = new ArrayList<>();
+    private int[] deudores = new int[CAPACIDAD_INICIAL];
+    private int[] acreedores = new int[CAPACIDAD_INICIAL];
+    private long[] montos = new long[CAPACIDAD_INICIAL];
+    private int pendientes;
+
+    public CamaraCompensacion(int escala) {
+        this.escala = escala;
+    }
+
+    public int getEscala() {
+        return escala;
+    }
+
+    /**
+     * Suma el banco a la cámara con la cuenta donde se liquidan sus posiciones netas, que se
+     * agrega al banco si todavía no pertenece a él. Desde ese momento las transferencias del
+     * banco hacia otros bancos registrados pasan por la cámara.
+     */
+    public synchronized void registrarBanco(Banco banco, Cuenta cuentaLiquidacion) {
+        if(indices.containsKey(banco)) {
+            throw new IllegalArgumentException("El banco ya está registrado: " + banco.getNombre());
+        }
+        if(cuentaLiquidacion.getBanco() != banco) {
+            banco.addCuenta(cuentaLiquidacion);
+        }
+        indices.put(banco, bancos.size());
+        bancos.add(banco);
+        liquidaciones.add(cuentaLiquidacion);
+        banco.setCamara(this);
+    }
+
+    public synchronized int getPendientes() {
+        return pendientes;
+    }
+
+    /**
+     * Transferencia entre cuentas de bancos distintos. Las cuentas se bloquean en orden de id y
+     * el débito se devuelve si el crédito falla, igual que en {@link Banco#tryTransferir}. Si el
+     * movimiento no se hace no se registra ninguna obligación.
+     */
+    public ResultadoOperacion transferir(Cuenta origen, Cuenta destino, BigDecimal monto) {
+        int deudor = indice(origen.getBanco());
+        int acreedor = indice(destino.getBanco());
+        long unidades = monto.movePointRight(escala).longValueExact();
+        ResultadoOperacion resultado = origen.getBanco().tryTransferirDirecto(origen, destino, monto);
+        if(!resultado.isExitosa()) {
+            return resultado;
+        }
+        agregar(deudor, acreedor, unidades);
+        return ResultadoOperacion.EXITOSA;
+    }
+
+    /**
+     * Registra una obligación entre bancos originada fuera de la cámara, sin mover saldos de
+     * clientes.
+     */
+    public void registrarObligacion(Banco deudor, Banco acreedor, BigDecimal monto) {
+        agregar(indice(deudor), indice(acreedor), monto.movePointRight(escala).longValueExact());
+    }
+
+    /**
+     * Compensa y liquida todas las obligaciones pendientes. Las que se registren mientras
+     * tanto quedan para el próximo ciclo.
+     */
+    public ResultadoCompensacion compensar() {
+        int[] deudores;
+        int[] acreedores;
+        long[] montos;
+        int cantidad;
+        Banco[] participantes;
+        Cuenta[] cuentas;
+        synchronized (this) {
+            deudores = this.deudores;
+            acreedores = this.acreedores;
+            montos = this.montos;
+            cantidad = pendientes;
+            participantes = bancos.toArray(new Banco[0]);
+            cuentas = liquidaciones.toArray(new Cuenta[0]);
+            int capacidad = Math.max(CAPACIDAD_INICIAL, Integer.highestOneBit(Math.max(1, cantidad)));
+            this.deudores = new int[capacidad];
+            this.acreedores = new int[capacidad];
+            this.montos = new long[capacidad];
+            pendientes = 0;
+        }
+
+        // Posición neta de cada banco: positiva si debe recibir, negativa si debe pagar
+        long[] netos = new long[participantes.length];
+        long bruto = 0;
+        for(int i = 0; i < cantidad; i++) {
+            long monto = montos[i];
+            netos[deudores[i]] = Math.subtractExact(netos[deudores[i]], monto);
+            netos[acreedores[i]] = Math.addExact(netos[acreedores[i]], monto);
+            bruto = Math.addExact(bruto, monto);
+        }
+
+        List<Liquidacion> realizadas = new ArrayList<>();
+        List<Liquidacion> fallidas = new ArrayList<>();
+        long neto = 0;
+        // Cada paso salda por completo al deudor o al acreedor, así que hay a lo sumo n - 1
+        int d = siguiente(netos, 0, -1);
+        int a = siguiente(netos, 0, 1);
+        while(d >= 0 && a >= 0) {
+            long unidades = Math.min(-netos[d], netos[a]);
+            BigDecimal monto = BigDecimal.valueOf(unidades, escala);
+            RuntimeException error = liquidar(cuentas[d], cuentas[a], monto);
+            if(error == null) {
+                realizadas.add(new Liquidacion(participantes[d], participantes[a], monto));
+                neto += unidades;
+            } else {
+                fallidas.add(new Liquidacion(participantes[d], participantes[a], monto, error));
+                agregar(d, a, unidades);
+            }
+            netos[d] += unidades;
+            netos[a] -= unidades;
+            if(netos[d] == 0) {
+                d = siguiente(netos, d + 1, -1);
+            }
+            if(netos[a] == 0) {
+                a = siguiente(netos, a + 1, 1);
+            }
+        }
+        return new ResultadoCompensacion(cantidad, BigDecimal.valueOf(bruto, escala), BigDecimal.valueOf(neto, escala),
+                realizadas, fallidas);
+    }
+
+    // Los límites de velocidad son para los clientes, así que el débito no pasa por ellos.
+    // Devuelve null si se liquidó o el motivo del fallo, sin dejar ninguna de las dos cuentas tocada.
+    private static RuntimeException liquidar(Cuenta deudora, Cuenta acreedora, BigDecimal monto) {
+        ResultadoOperacion resultado;
+        try {
+            resultado = deudora.tryDebitoLiquidacion(monto);
+        } catch(RuntimeException e) {
+            return e;
+        }
+        if(!resultado.isExitosa()) {
+            return resultado.error();
+        }
+        try {
+            acreedora.credito(monto);
+            return null;
+        } catch(RuntimeException e) {
+            deudora.credito(monto);
+            return e;
+        }
+    }
+
+    private synchronized int indice(Banco banco) {
+        Integer indice = indices.get(banco);
+        if(indice == null) {
+            throw new IllegalArgumentException("El banco no está registrado en la cámara: " + (banco == null ? null : banco.getNombre()));
+        }
+        return indice;
+    }
+
+    private synchronized void agregar(int deudor, int acreedor, long unidades) {
+        if(pendientes == montos.length) {
+            deudores = Arrays.copyOf(deudores, pendientes * 2);
+            acreedores = Arrays.copyOf(acreedores, pendientes * 2);
+            montos = Arrays.copyOf(montos, pendientes * 2);
+        }
+        deudores[pendientes] = deudor;
+        acreedores[pendientes] = acreedor;
+        montos[pendientes] = unidades;
+        pendientes++;
+    }
+
+    // Próximo banco desde "desde" con posición del signo indicado, o -1
+    private static int siguiente(long[] netos, int desde, int signo) {
+        for(int i = desde; i < netos.length; i++) {
+            if(Long.signum(netos[i]) == signo) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
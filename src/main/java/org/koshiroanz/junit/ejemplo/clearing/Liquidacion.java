@@ -0,0 +1,21 @@
+package org.koshiroanz.junit.ejemplo.clearing;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+
+import java.math.BigDecimal;
+
+/**
+ * Movimiento entre las cuentas de liquidación de dos bancos producido por una compensación.
+ * Si falló, {@code error} contiene el motivo (por ejemplo
+ * {@link org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException}).
+ */
+public record Liquidacion(Banco deudor, Banco acreedor, BigDecimal monto, RuntimeException error) {
+
+    public Liquidacion(Banco deudor, Banco acreedor, BigDecimal monto) {
+        this(deudor, acreedor, monto, null);
+    }
+
+    public boolean isExitosa() {
+        return error == null;
+    }
+}
@@ -0,0 +1,14 @@
+package org.koshiroanz.junit.ejemplo.clearing;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Resumen de un ciclo de compensación. {@code bruto} es la suma de las obligaciones
+ * compensadas y {@code neto} lo que efectivamente se movió entre bancos. Las liquidaciones
+ * fallidas llevan el motivo en {@link Liquidacion#error()} y vuelven a quedar pendientes para
+ * el próximo ciclo.
+ */
+public record ResultadoCompensacion(long obligaciones, BigDecimal bruto, BigDecimal neto,
+                                    List<Liquidacion> liquidaciones, List<Liquidacion> fallidas) {
+}
@@ -0,0 +1,216 @@
+package org.koshiroanz.junit.ejemplo.codec;
+
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.Transfer;
+
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Formato binario versionado para cuentas y transferencias. Todos los registros empiezan con
+ * la versión y el tipo, y siguen un orden de campos fijo:
+ * <pre>
+ * Cuenta:        [version:1][tipo:1][id:varint][escala:1][unidades:8][largo:varint][persona:UTF-8]
+ * Transferencia: [version:1][tipo:1][origen:varint][destino:varint][escala:1][monto:8]
+ * </pre>
+ * Los importes viajan en unidades mínimas de su escala, igual que en
+ * {@link org.koshiroanz.junit.ejemplo.models.SaldoEscalado}.
+ *
+ * <p>Los métodos que reciben primitivos escriben y leen directamente sobre el
+ * {@link ByteBuffer} del llamador sin crear objetos intermedios; para leer se reutilizan
+ * {@link RegistroCuenta} y {@link RegistroTransferencia}. Si el buffer no tiene lugar para el
+ * registro completo se lanza {@link BufferOverflowException} sin escribir nada; si al leer no
+ * tiene el registro completo se lanza {@link BufferUnderflowException} con la posición donde
+ * estaba, así quien lee de la red puede compactar el buffer y reintentar cuando llegue el resto.
+ *
+ * <p>Una persona null se escribe como "", igual que en el journal y los snapshots.
+ */
+public final class CodecBinario {
+    public static final byte VERSION = 1;
+    public static final byte TIPO_CUENTA = 1;
+    public static final byte TIPO_TRANSFERENCIA = 2;
+
+    private CodecBinario() {
+    }
+
+    public static void escribirCuenta(ByteBuffer buffer, Cuenta cuenta, int escala) {
+        escribirCuenta(buffer, cuenta.getId(), cuenta.getPersona(), aUnidades(cuenta.getSaldo(), escala), escala);
+    }
+
+    public static void escribirCuenta(ByteBuffer buffer, long id, CharSequence persona, long unidades, int escala) {
+        validarEscala(escala);
+        if(persona == null) {
+            persona = "";
+        }
+        int bytesPersona = largoUtf8(persona);
+        int largo = 2 + largoVarint(id) + 1 + Long.BYTES + largoVarint(bytesPersona) + bytesPersona;
+        if(buffer.remaining() < largo) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(VERSION).put(TIPO_CUENTA);
+        escribirVarint(buffer, id);
+        buffer.put((byte) escala).putLong(unidades);
+        escribirVarint(buffer, bytesPersona);
+        escribirUtf8(buffer, persona);
+    }
+
+    public static void escribirTransferencia(ByteBuffer buffer, Transfer transfer, int escala) {
+        escribirTransferencia(buffer, transfer.origen().getId(), transfer.destino().getId(), aUnidades(transfer.monto(), escala), escala);
+    }
+
+    public static void escribirTransferencia(ByteBuffer buffer, long origen, long destino, long monto, int escala) {
+        validarEscala(escala);
+        int largo = 2 + largoVarint(origen) + largoVarint(destino) + 1 + Long.BYTES;
+        if(buffer.remaining() < largo) {
+            throw new BufferOverflowException();
+        }
+        buffer.put(VERSION).put(TIPO_TRANSFERENCIA);
+        escribirVarint(buffer, origen);
+        escribirVarint(buffer, destino);
+        buffer.put((byte) escala).putLong(monto);
+    }
+
+    /**
+     * Devuelve el tipo del próximo registro sin avanzar la posición del buffer.
+     */
+    public static byte tipo(ByteBuffer buffer) {
+        if(buffer.remaining() < 2) {
+            throw new BufferUnderflowException();
+        }
+        int posicion = buffer.position();
+        validarVersion(buffer.get(posicion));
+        return buffer.get(posicion + 1);
+    }
+
+    // Si falla, la posición del buffer vuelve al inicio del registro
+    public static RegistroCuenta leerCuenta(ByteBuffer buffer, RegistroCuenta registro) {
+        int inicio = buffer.position();
+        try {
+            leerEncabezado(buffer, TIPO_CUENTA);
+            registro.id = leerVarint(buffer);
+            registro.escala = leerEscala(buffer);
+            registro.unidades = buffer.getLong();
+            long bytesPersona = leerVarint(buffer);
+            if(bytesPersona < 0 || bytesPersona > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            registro.leerPersona(buffer, (int) bytesPersona);
+            return registro;
+        } catch(RuntimeException e) {
+            buffer.position(inicio);
+            throw e;
+        }
+    }
+
+    public static RegistroTransferencia leerTransferencia(ByteBuffer buffer, RegistroTransferencia registro) {
+        int inicio = buffer.position();
+        try {
+            leerEncabezado(buffer, TIPO_TRANSFERENCIA);
+            registro.origen = leerVarint(buffer);
+            registro.destino = leerVarint(buffer);
+            registro.escala = leerEscala(buffer);
+            registro.monto = buffer.getLong();
+            return registro;
+        } catch(RuntimeException e) {
+            buffer.position(inicio);
+            throw e;
+        }
+    }
+
+    static int largoVarint(long valor) {
+        // 7 bits por byte; un long negativo ocupa 10 bytes
+        return Math.max(1, (64 - Long.numberOfLeadingZeros(valor) + 6) / 7);
+    }
+
+    private static void escribirVarint(ByteBuffer buffer, long valor) {
+        while((valor & ~0x7FL) != 0) {
+            buffer.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        buffer.put((byte) valor);
+    }
+
+    private static long leerVarint(ByteBuffer buffer) {
+        long valor = 0;
+        for(int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            byte b = buffer.get();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if(b >= 0) {
+                return valor;
+            }
+        }
+        throw new IllegalArgumentException("Varint demasiado largo");
+    }
+
+    private static int largoUtf8(CharSequence texto) {
+        int largo = 0;
+        for(int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if(c < 0x80) {
+                largo++;
+            } else if(c < 0x800) {
+                largo += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < texto.length() && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                largo += 4;
+                i++;
+            } else {
+                largo += 3;
+            }
+        }
+        return largo;
+    }
+
+    // Los surrogates sueltos se codifican tal cual, como hace DataOutput.writeUTF
+    private static void escribirUtf8(ByteBuffer buffer, CharSequence texto) {
+        for(int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if(c < 0x80) {
+                buffer.put((byte) c);
+            } else if(c < 0x800) {
+                buffer.put((byte) (0xC0 | c >> 6)).put((byte) (0x80 | c & 0x3F));
+            } else if(Character.isHighSurrogate(c) && i + 1 < texto.length() && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, texto.charAt(++i));
+                buffer.put((byte) (0xF0 | cp >> 18))
+                        .put((byte) (0x80 | cp >> 12 & 0x3F))
+                        .put((byte) (0x80 | cp >> 6 & 0x3F))
+                        .put((byte) (0x80 | cp & 0x3F));
+            } else {
+                buffer.put((byte) (0xE0 | c >> 12))
+                        .put((byte) (0x80 | c >> 6 & 0x3F))
+                        .put((byte) (0x80 | c & 0x3F));
+            }
+        }
+    }
+
+    private static void leerEncabezado(ByteBuffer buffer, byte tipoEsperado) {
+        byte tipo = tipo(buffer);
+        if(tipo != tipoEsperado) {
+            throw new IllegalArgumentException("Se esperaba un registro de tipo " + tipoEsperado + " y llegó " + tipo);
+        }
+        buffer.position(buffer.position() + 2);
+    }
+
+    private static void validarVersion(byte version) {
+        if(version != VERSION) {
+            throw new IllegalArgumentException("Versión de formato no soportada: " + version);
+        }
+    }
+
+    private static int leerEscala(ByteBuffer buffer) {
+        byte escala = buffer.get();
+        validarEscala(escala);
+        return escala;
+    }
+
+    private static void validarEscala(int escala) {
+        if(escala < 0 || escala > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Escala fuera de rango: " + escala);
+        }
+    }
+
+    private static long aUnidades(BigDecimal valor, int escala) {
+        return valor.movePointRight(escala).longValueExact();
+    }
+}
@@ -0,0 +1,90 @@
+package org.koshiroanz.junit.ejemplo.codec;
+
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.SaldoEscalado;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Destino reutilizable de {@link CodecBinario#leerCuenta}. Cada lectura pisa los valores
+ * anteriores; la persona se decodifica en un arreglo propio que sólo crece si llega un nombre
+ * más largo.
+ */
+public final class RegistroCuenta {
+    long id;
+    int escala;
+    long unidades;
+
+    private char[] persona = new char[32];
+    private CharBuffer vista = CharBuffer.wrap(persona);
+
+    public long getId() {
+        return id;
+    }
+
+    public int getEscala() {
+        return escala;
+    }
+
+    public long getUnidades() {
+        return unidades;
+    }
+
+    public BigDecimal getSaldo() {
+        return BigDecimal.valueOf(unidades, escala);
+    }
+
+    /**
+     * Vista sobre el nombre decodificado; sólo es válida hasta la próxima lectura.
+     */
+    public CharSequence getPersona() {
+        return vista;
+    }
+
+    public Cuenta aCuenta() {
+        return new Cuenta(id, vista.toString(), new SaldoEscalado(unidades, escala));
+    }
+
+    void leerPersona(ByteBuffer buffer, int bytes) {
+        // Nunca hay más caracteres que bytes
+        if(persona.length < bytes) {
+            persona = new char[Math.max(bytes, persona.length * 2)];
+            vista = CharBuffer.wrap(persona);
+        }
+        int fin = buffer.position() + bytes;
+        int largo = 0;
+        while(buffer.position() < fin) {
+            int b = buffer.get() & 0xFF;
+            if(b < 0x80) {
+                persona[largo++] = (char) b;
+            } else if(b >> 5 == 0x6) {
+                persona[largo++] = (char) ((b & 0x1F) << 6 | continuacion(buffer, fin));
+            } else if(b >> 4 == 0xE) {
+                persona[largo++] = (char) ((b & 0x0F) << 12 | continuacion(buffer, fin) << 6 | continuacion(buffer, fin));
+            } else if(b >> 3 == 0x1E) {
+                int cp = (b & 0x07) << 18 | continuacion(buffer, fin) << 12 | continuacion(buffer, fin) << 6 | continuacion(buffer, fin);
+                if(!Character.isSupplementaryCodePoint(cp)) {
+                    throw new IllegalArgumentException("UTF-8 inválido en la persona");
+                }
+                persona[largo++] = Character.highSurrogate(cp);
+                persona[largo++] = Character.lowSurrogate(cp);
+            } else {
+                throw new IllegalArgumentException("UTF-8 inválido en la persona");
+            }
+        }
+        vista.clear().limit(largo);
+    }
+
+    private static int continuacion(ByteBuffer buffer, int fin) {
+        if(buffer.position() >= fin) {
+            throw new IllegalArgumentException("UTF-8 truncado en la persona");
+        }
+        int b = buffer.get() & 0xFF;
+        if(b >> 6 != 0x2) {
+            throw new IllegalArgumentException("UTF-8 inválido en la persona");
+        }
+        return b & 0x3F;
+    }
+}
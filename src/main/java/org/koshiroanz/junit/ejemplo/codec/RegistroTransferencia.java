@@ -0,0 +1,42 @@
+package org.koshiroanz.junit.ejemplo.codec;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Transfer;
+
+import java.math.BigDecimal;
+import java.util.NoSuchElementException;
+
+/**
+ * Destino reutilizable de {@link CodecBinario#leerTransferencia}.
+ */
+public final class RegistroTransferencia {
+    long origen;
+    long destino;
+    int escala;
+    long monto;
+
+    public long getOrigen() {
+        return origen;
+    }
+
+    public long getDestino() {
+        return destino;
+    }
+
+    public int getEscala() {
+        return escala;
+    }
+
+    public long getMonto() {
+        return monto;
+    }
+
+    /**
+     * Resuelve las cuentas en el banco; lanza {@link NoSuchElementException} si alguna no existe.
+     */
+    public Transfer aTransfer(Banco banco) {
+        return new Transfer(banco.findById(origen).orElseThrow(() -> new NoSuchElementException("No existe la cuenta " + origen)),
+                banco.findById(destino).orElseThrow(() -> new NoSuchElementException("No existe la cuenta " + destino)),
+                BigDecimal.valueOf(monto, escala));
+    }
+}
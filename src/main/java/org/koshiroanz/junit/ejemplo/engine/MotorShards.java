@@ -0,0 +1,243 @@
+package org.koshiroanz.junit.ejemplo.engine;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.ResultadoOperacion;
+import org.koshiroanz.junit.ejemplo.models.Transfer;
+import org.koshiroanz.junit.ejemplo.models.TransferResult;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Motor de ejecución alternativo para un {@link Banco}, al estilo LMAX: las cuentas se
+ * reparten por id entre N particiones y cada partición tiene un único hilo que es el único
+ * que modifica los saldos de sus cuentas. Las solicitudes llegan por {@link RingBuffer}s sin
+ * bloqueos.
+ *
+ * <p>Una transferencia entre particiones se hace en dos fases: la partición del origen
+ * debita y, si hubo fondos, envía el crédito a la partición del destino, que completa el
+ * resultado. Entre ambas fases el dinero está "en vuelo" y no figura en ninguna cuenta.
+ * Si el crédito falla, el hilo del destino le devuelve el dinero al origen: esa devolución
+ * es la única escritura sobre una cuenta desde un hilo que no es el de su partición, así que
+ * el motor no es estrictamente de un único escritor por cuenta y el saldo del origen tiene
+ * que tolerar accesos concurrentes.
+ *
+ * <p>Para que el camino del saldo no tome ningún lock, las cuentas deben usar un saldo sin
+ * bloqueos (por ejemplo {@link org.koshiroanz.junit.ejemplo.models.SaldoEscalado}) y el
+ * banco no debe tener listeners.
+ */
+public class MotorShards implements AutoCloseable {
+    public static final int CAPACIDAD_POR_SHARD = 1 << 16;
+
+    private final Banco banco;
+    private final Shard[] shards;
+
+    private volatile boolean activo = true;
+    private volatile boolean detenido;
+
+    public MotorShards(Banco banco, int particiones) {
+        this(banco, particiones, CAPACIDAD_POR_SHARD);
+    }
+
+    public MotorShards(Banco banco, int particiones, int capacidadPorShard) {
+        this.banco = banco;
+        this.shards = new Shard[particiones];
+        for(int i = 0; i < particiones; i++) {
+            shards[i] = new Shard(i, capacidadPorShard);
+        }
+        for(Shard shard : shards) {
+            shard.hilo.start();
+        }
+    }
+
+    public int getParticiones() {
+        return shards.length;
+    }
+
+    public int particion(Cuenta cuenta) {
+        return (int) Math.floorMod(cuenta.getId(), (long) shards.length);
+    }
+
+    /**
+     * Encola la transferencia en la partición del origen. Si su buffer está lleno el
+     * llamador espera activamente hasta que haya lugar.
+     */
+    public CompletableFuture<TransferResult> transferir(Cuenta origen, Cuenta destino, BigDecimal monto) {
+        Shard shard = shards[particion(origen)];
+        shard.creados.incrementAndGet();
+        if(!activo) {
+            shard.creados.decrementAndGet();
+            throw new IllegalStateException("El motor está detenido");
+        }
+        Mensaje mensaje = new Mensaje(new Transfer(origen, destino, monto), banco.getMetricas().iniciar());
+        while(!shard.entrada.ofrecer(mensaje)) {
+            Thread.onSpinWait();
+        }
+        return mensaje.resultado;
+    }
+
+    /**
+     * Deja de aceptar transferencias, espera a que se procesen las encoladas y detiene los hilos.
+     * Si el hilo que cierra es interrumpido se sigue esperando, porque cortar antes dejaría
+     * dinero en vuelo, y al terminar se restablece la interrupción.
+     */
+    @Override
+    public void close() {
+        activo = false;
+        boolean interrumpido = false;
+        while(!enReposo()) {
+            try {
+                Thread.sleep(1);
+            } catch(InterruptedException e) {
+                interrumpido = true;
+            }
+        }
+        detenido = true;
+        for(Shard shard : shards) {
+            while(shard.hilo.isAlive()) {
+                try {
+                    shard.hilo.join();
+                } catch(InterruptedException e) {
+                    interrumpido = true;
+                }
+            }
+        }
+        if(interrumpido) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Todas las transferencias aceptadas ya tienen resultado
+    private boolean enReposo() {
+        long creados = 0;
+        long completados = 0;
+        for(Shard shard : shards) {
+            creados += shard.creados.get();
+            completados += shard.completados;
+        }
+        return creados == completados;
+    }
+
+    private static final class Mensaje {
+        final Transfer transfer;
+        final long inicio;
+        final CompletableFuture<TransferResult> resultado = new CompletableFuture<>();
+        // false mientras falta el débito, true cuando sólo falta el crédito
+        boolean debitado;
+
+        Mensaje(Transfer transfer, long inicio) {
+            this.transfer = transfer;
+            this.inicio = inicio;
+        }
+    }
+
+    private final class Shard implements Runnable {
+        final RingBuffer<Mensaje> entrada;
+        final Thread hilo;
+        // Créditos para otras particiones que no entraron en su buffer; sólo los toca este hilo
+        final ArrayDeque<Mensaje> pendientes = new ArrayDeque<>();
+        // Transferencias aceptadas con origen en esta partición
+        final AtomicLong creados = new AtomicLong();
+        // Transferencias completadas por esta partición; sólo la escribe su hilo
+        volatile long completados;
+
+        Shard(int numero, int capacidad) {
+            this.entrada = new RingBuffer<>(capacidad);
+            this.hilo = new Thread(this, "banco-shard-" + numero);
+            this.hilo.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            int ocioso = 0;
+            while(true) {
+                boolean trabajo = reenviarPendientes();
+                Mensaje mensaje = entrada.tomar();
+                if(mensaje != null) {
+                    procesar(mensaje);
+                    trabajo = true;
+                }
+                if(trabajo) {
+                    ocioso = 0;
+                } else if(detenido) {
+                    return;
+                } else {
+                    ocioso = esperar(ocioso);
+                }
+            }
+        }
+
+        private void procesar(Mensaje mensaje) {
+            Transfer transfer = mensaje.transfer;
+            if(!mensaje.debitado) {
+                ResultadoOperacion resultado;
+                try {
+                    resultado = transfer.origen().tryDebito(transfer.monto());
+                } catch(RuntimeException e) {
+                    completar(mensaje, e);
+                    return;
+                }
+                if(!resultado.isExitosa()) {
+                    completar(mensaje, resultado.error());
+                    return;
+                }
+                mensaje.debitado = true;
+                Shard destino = shards[particion(transfer.destino())];
+                if(destino != this) {
+                    if(!pendientes.isEmpty() || !destino.entrada.ofrecer(mensaje)) {
+                        pendientes.addLast(mensaje);
+                    }
+                    return;
+                }
+            }
+            try {
+                transfer.destino().credito(transfer.monto());
+            } catch(RuntimeException e) {
+                // El dinero vuelve al origen; su saldo es seguro ante accesos concurrentes, así
+                // que se puede acreditar desde este hilo aunque el origen sea de otra partición
+                try {
+                    transfer.origen().credito(transfer.monto());
+                } catch(RuntimeException devolucion) {
+                    e.addSuppressed(devolucion);
+                }
+                completar(mensaje, e);
+                return;
+            }
+            banco.getMetricas().registrarTransferencia(mensaje.inicio);
+            completar(mensaje, null);
+        }
+
+        private void completar(Mensaje mensaje, RuntimeException error) {
+            completados++;
+            mensaje.resultado.complete(new TransferResult(mensaje.transfer, error));
+        }
+
+        private boolean reenviarPendientes() {
+            boolean reenviados = false;
+            while(!pendientes.isEmpty()) {
+                Mensaje mensaje = pendientes.peekFirst();
+                if(!shards[particion(mensaje.transfer.destino())].entrada.ofrecer(mensaje)) {
+                    break;
+                }
+                pendientes.removeFirst();
+                reenviados = true;
+            }
+            return reenviados;
+        }
+
+        private int esperar(int ocioso) {
+            if(ocioso < 100) {
+                Thread.onSpinWait();
+            } else if(ocioso < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(50_000);
+            }
+            return ocioso + 1;
+        }
+    }
+}
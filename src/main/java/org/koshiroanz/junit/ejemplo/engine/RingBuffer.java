@@ -0,0 +1,70 @@
+package org.koshiroanz.junit.ejemplo.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cola acotada sin bloqueos para varios productores y un único consumidor. Cada posición
+ * lleva una secuencia que indica si está libre para el productor de esa vuelta o lista para
+ * el consumidor, así que ni productores ni consumidor toman locks.
+ */
+final class RingBuffer<T> {
+    private final Object[] elementos;
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+
+    private final AtomicLong cola = new AtomicLong();
+    // Sólo la modifica el consumidor
+    private long cabeza;
+
+    RingBuffer(int capacidad) {
+        if(Integer.bitCount(capacidad) != 1) {
+            throw new IllegalArgumentException("La capacidad debe ser potencia de dos: " + capacidad);
+        }
+        this.elementos = new Object[capacidad];
+        this.secuencias = new AtomicLongArray(capacidad);
+        this.mascara = capacidad - 1;
+        for(int i = 0; i < capacidad; i++) {
+            secuencias.set(i, i);
+        }
+    }
+
+    /**
+     * Devuelve false si el buffer está lleno.
+     */
+    boolean ofrecer(T elemento) {
+        long posicion;
+        int indice;
+        while(true) {
+            posicion = cola.get();
+            indice = (int) posicion & mascara;
+            long diferencia = secuencias.get(indice) - posicion;
+            if(diferencia == 0) {
+                if(cola.compareAndSet(posicion, posicion + 1)) {
+                    break;
+                }
+            } else if(diferencia < 0) {
+                return false;
+            }
+        }
+        elementos[indice] = elemento;
+        secuencias.set(indice, posicion + 1);
+        return true;
+    }
+
+    /**
+     * Devuelve null si no hay elementos. Sólo puede llamarlo el hilo consumidor.
+     */
+    @SuppressWarnings("unchecked")
+    T tomar() {
+        int indice = (int) cabeza & mascara;
+        if(secuencias.get(indice) != cabeza + 1) {
+            return null;
+        }
+        T elemento = (T) elementos[indice];
+        elementos[indice] = null;
+        secuencias.set(indice, cabeza + elementos.length);
+        cabeza++;
+        return elemento;
+    }
+}
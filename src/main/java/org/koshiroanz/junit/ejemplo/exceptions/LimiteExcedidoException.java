@@ -0,0 +1,18 @@
+package org.koshiroanz.junit.ejemplo.exceptions;
+
+/**
+ * Débito rechazado porque la cuenta superó su límite de monto o de cantidad de débitos en la
+ * ventana de tiempo. Igual que {@link NotEnoughMoneyException}, no captura la traza de la pila.
+ */
+public class LimiteExcedidoException extends RuntimeException {
+    private static final LimiteExcedidoException LIMITE_EXCEDIDO = new LimiteExcedidoException("Velocity limit exceeded");
+
+    public LimiteExcedidoException(String message) {
+        super(message, null, false, false);
+    }
+
+    // Instancia compartida e inmutable, como NotEnoughMoneyException.sinFondos()
+    public static LimiteExcedidoException limiteExcedido() {
+        return LIMITE_EXCEDIDO;
+    }
+}
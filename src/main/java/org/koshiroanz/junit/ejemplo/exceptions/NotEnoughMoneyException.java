@@ -1,7 +1,21 @@
 package org.koshiroanz.junit.ejemplo.exceptions;
 
+/**
+ * Débito rechazado por saldo insuficiente. No captura la traza de la pila: en ráfagas de
+ * rechazos llenarla dominaba el costo, y el sitio del rechazo siempre es un débito.
+ */
 public class NotEnoughMoneyException extends RuntimeException {
+    private static final NotEnoughMoneyException SIN_FONDOS = new NotEnoughMoneyException("Not enough money");
+
     public NotEnoughMoneyException(String message) {
-        super(message);
+        super(message, null, false, false);
+    }
+
+    /**
+     * Instancia compartida para rechazar sin reservar memoria. Es inmutable: no tiene traza,
+     * causa ni excepciones suprimidas que se puedan modificar.
+     */
+    public static NotEnoughMoneyException sinFondos() {
+        return SIN_FONDOS;
     }
 }
@@ -0,0 +1,7 @@
+package org.koshiroanz.junit.ejemplo.exceptions;
+
+public class ServicioSaturadoException extends RuntimeException {
+    public ServicioSaturadoException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,143 @@
+package org.koshiroanz.junit.ejemplo.importer;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.SaldoEscalado;
+import org.koshiroanz.junit.ejemplo.models.Transfer;
+import org.koshiroanz.junit.ejemplo.models.TransferResult;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Importación masiva de cuentas y transferencias desde archivos CSV. Los archivos se leen en
+ * streaming y se aplican al banco en lotes de tamaño fijo, así que la memoria usada no depende
+ * de la cantidad de filas.
+ *
+ * <p>Formatos esperados:
+ * <ul>
+ *     <li>Cuentas: {@code id,persona,saldo}</li>
+ *     <li>Transferencias: {@code origenId,destinoId,monto}</li>
+ * </ul>
+ * Los importes se convierten directamente a unidades de la escala configurada y las cuentas
+ * importadas usan {@link SaldoEscalado}. Un id de cuenta que ya existe o un monto de
+ * transferencia que no es positivo se rechazan con el número de línea; las filas anteriores
+ * del archivo ya quedan aplicadas.
+ */
+public class ImportadorCsv {
+    public static final int TAMANO_BUFFER = 64 * 1024;
+    public static final int TAMANO_LOTE = 1024;
+
+    private final Banco banco;
+    private final int escala;
+    private final LectorCsv lector;
+
+    private int tamanoLote = TAMANO_LOTE;
+    private boolean encabezado = true;
+
+    public ImportadorCsv(Banco banco, int escala) {
+        this(banco, escala, TAMANO_BUFFER);
+    }
+
+    public ImportadorCsv(Banco banco, int escala, int tamanoBuffer) {
+        this.banco = banco;
+        this.escala = escala;
+        this.lector = new LectorCsv(tamanoBuffer);
+    }
+
+    public int getTamanoLote() {
+        return tamanoLote;
+    }
+
+    public void setTamanoLote(int tamanoLote) {
+        if(tamanoLote < 1) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo: " + tamanoLote);
+        }
+        this.tamanoLote = tamanoLote;
+    }
+
+    public boolean isEncabezado() {
+        return encabezado;
+    }
+
+    // Si la primera fila de cada archivo es un encabezado que debe ignorarse
+    public void setEncabezado(boolean encabezado) {
+        this.encabezado = encabezado;
+    }
+
+    public ResultadoImportacion importarCuentas(Path archivo) throws IOException {
+        List<Cuenta> lote = new ArrayList<>(tamanoLote);
+        // Línea de cada cuenta del lote, para informar un id que el banco rechaza
+        long[] lineas = new long[tamanoLote];
+        long[] filas = new long[1];
+        lector.leer(archivo, encabezado, fila -> {
+            validarCampos(fila);
+            lineas[lote.size()] = fila.getLinea();
+            lote.add(new Cuenta(fila.getLong(0), fila.getString(1), new SaldoEscalado(fila.getEscalado(2, escala), escala)));
+            filas[0]++;
+            if(lote.size() == tamanoLote) {
+                agregar(lote, lineas);
+            }
+        });
+        agregar(lote, lineas);
+        return new ResultadoImportacion(filas[0], filas[0], 0);
+    }
+
+    public ResultadoImportacion importarTransferencias(Path archivo) throws IOException {
+        List<Transfer> lote = new ArrayList<>(tamanoLote);
+        long[] contadores = new long[3];
+        lector.leer(archivo, encabezado, fila -> {
+            validarCampos(fila);
+            contadores[0]++;
+            Optional<Cuenta> origen = banco.findById(fila.getLong(0));
+            Optional<Cuenta> destino = banco.findById(fila.getLong(1));
+            long monto = fila.getEscalado(2, escala);
+            if(monto <= 0) {
+                throw new IllegalArgumentException("Línea " + fila.getLinea() + ", campo 3: el monto debe ser positivo");
+            }
+            if(origen.isEmpty() || destino.isEmpty()) {
+                contadores[2]++;
+                return;
+            }
+            lote.add(new Transfer(origen.get(), destino.get(), BigDecimal.valueOf(monto, escala)));
+            if(lote.size() == tamanoLote) {
+                transferir(lote, contadores);
+            }
+        });
+        transferir(lote, contadores);
+        return new ResultadoImportacion(contadores[0], contadores[1], contadores[2]);
+    }
+
+    // addCuenta rechaza un id repetido, tanto de una cuenta que ya estaba como de una anterior
+    // del archivo, y el rechazo se informa con la línea de la fila
+    private void agregar(List<Cuenta> lote, long[] lineas) {
+        for(int i = 0; i < lote.size(); i++) {
+            try {
+                banco.addCuenta(lote.get(i));
+            } catch(IllegalArgumentException e) {
+                throw new IllegalArgumentException("Línea " + lineas[i] + ": " + e.getMessage(), e);
+            }
+        }
+        lote.clear();
+    }
+
+    private void transferir(List<Transfer> lote, long[] contadores) {
+        if(lote.isEmpty()) {
+            return;
+        }
+        for(TransferResult resultado : banco.transferirBatch(lote)) {
+            contadores[resultado.isExitosa() ? 1 : 2]++;
+        }
+        lote.clear();
+    }
+
+    private static void validarCampos(LectorCsv fila) {
+        if(fila.getCampos() != 3) {
+            throw new IllegalArgumentException("Línea " + fila.getLinea() + ": se esperaban 3 campos y hay " + fila.getCampos());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package org.koshiroanz.junit.ejemplo.importer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Lector de CSV por bytes sobre un {@link FileChannel}. Reutiliza el mismo buffer de lectura y
+ * el mismo buffer de fila para todo el archivo, así que la memoria no depende del tamaño del
+ * archivo sino de la fila más larga. Soporta campos entre comillas dobles con {@code ""}
+ * como escape; los espacios alrededor de cada campo se ignoran.
+ */
+final class LectorCsv {
+    interface ConsumidorFila {
+        void aceptar(LectorCsv fila);
+    }
+
+    private final ByteBuffer lectura;
+
+    private byte[] fila = new byte[256];
+    private int[] inicios = new int[8];
+    private int[] fines = new int[8];
+    private int campos;
+    private int largo;
+    private long linea;
+
+    LectorCsv(int tamanoBuffer) {
+        this.lectura = ByteBuffer.allocateDirect(tamanoBuffer);
+    }
+
+    /**
+     * Recorre el archivo y llama al consumidor por cada fila no vacía. Los valores de la fila
+     * sólo son válidos durante la llamada.
+     */
+    void leer(Path archivo, boolean encabezado, ConsumidorFila consumidor) throws IOException {
+        linea = 0;
+        largo = 0;
+        campos = 0;
+        boolean comillas = false;
+        boolean comillaPendiente = false;
+        boolean omitir = encabezado;
+        iniciarCampo();
+        try(FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            lectura.clear();
+            while(canal.read(lectura) >= 0) {
+                lectura.flip();
+                while(lectura.hasRemaining()) {
+                    byte b = lectura.get();
+                    if(comillas) {
+                        if(comillaPendiente) {
+                            comillaPendiente = false;
+                            if(b == '"') {
+                                agregar(b);
+                                continue;
+                            }
+                            comillas = false;
+                        } else if(b == '"') {
+                            comillaPendiente = true;
+                            continue;
+                        } else {
+                            agregar(b);
+                            continue;
+                        }
+                    }
+                    if(b == '"') {
+                        comillas = true;
+                    } else if(b == ',') {
+                        cerrarCampo();
+                        iniciarCampo();
+                    } else if(b == '\n') {
+                        omitir = terminarFila(omitir, consumidor);
+                    } else if(b != '\r') {
+                        agregar(b);
+                    }
+                }
+                lectura.clear();
+            }
+        }
+        if(comillas && !comillaPendiente) {
+            throw new IllegalArgumentException("Línea " + (linea + 1) + ": comillas sin cerrar");
+        }
+        terminarFila(omitir, consumidor);
+    }
+
+    long getLinea() {
+        return linea;
+    }
+
+    int getCampos() {
+        return campos;
+    }
+
+    long getLong(int campo) {
+        int inicio = inicios[campo];
+        int fin = fines[campo];
+        boolean negativo = inicio < fin && fila[inicio] == '-';
+        if(negativo) {
+            inicio++;
+        }
+        if(inicio == fin) {
+            throw error(campo, "número vacío");
+        }
+        long valor = 0;
+        for(int i = inicio; i < fin; i++) {
+            valor = Math.addExact(Math.multiplyExact(valor, 10), digito(campo, fila[i]));
+        }
+        return negativo ? -valor : valor;
+    }
+
+    /**
+     * Interpreta el campo como un importe decimal y lo devuelve en unidades de la escala
+     * indicada, sin pasar por {@link String} ni {@link java.math.BigDecimal}. Igual que
+     * {@code SaldoEscalado}, lanza {@link ArithmeticException} si sobran decimales distintos
+     * de cero o el valor no entra en un long.
+     */
+    long getEscalado(int campo, int escala) {
+        int inicio = inicios[campo];
+        int fin = fines[campo];
+        boolean negativo = inicio < fin && fila[inicio] == '-';
+        if(negativo || inicio < fin && fila[inicio] == '+') {
+            inicio++;
+        }
+        if(inicio == fin) {
+            throw error(campo, "importe vacío");
+        }
+        long valor = 0;
+        int decimales = -1;
+        for(int i = inicio; i < fin; i++) {
+            byte b = fila[i];
+            if(b == '.' && decimales < 0) {
+                decimales = 0;
+                continue;
+            }
+            int digito = digito(campo, b);
+            if(decimales >= 0 && ++decimales > escala) {
+                if(digito != 0) {
+                    throw new ArithmeticException("Línea " + linea + ": el importe tiene más de " + escala + " decimales");
+                }
+                continue;
+            }
+            valor = Math.addExact(Math.multiplyExact(valor, 10), digito);
+        }
+        for(int i = Math.max(decimales, 0); i < escala; i++) {
+            valor = Math.multiplyExact(valor, 10);
+        }
+        return negativo ? -valor : valor;
+    }
+
+    String getString(int campo) {
+        return new String(fila, inicios[campo], fines[campo] - inicios[campo], StandardCharsets.UTF_8);
+    }
+
+    private boolean terminarFila(boolean omitir, ConsumidorFila consumidor) {
+        cerrarCampo();
+        linea++;
+        boolean vacia = campos == 1 && fines[0] == inicios[0];
+        if(!omitir && !vacia) {
+            consumidor.aceptar(this);
+        }
+        largo = 0;
+        campos = 0;
+        iniciarCampo();
+        return omitir && vacia;
+    }
+
+    private void iniciarCampo() {
+        if(campos == inicios.length) {
+            inicios = Arrays.copyOf(inicios, campos * 2);
+            fines = Arrays.copyOf(fines, campos * 2);
+        }
+        inicios[campos] = largo;
+    }
+
+    // Recorta espacios del campo actual
+    private void cerrarCampo() {
+        int inicio = inicios[campos];
+        int fin = largo;
+        while(inicio < fin && fila[inicio] == ' ') {
+            inicio++;
+        }
+        while(fin > inicio && fila[fin - 1] == ' ') {
+            fin--;
+        }
+        inicios[campos] = inicio;
+        fines[campos] = fin;
+        campos++;
+    }
+
+    private void agregar(byte b) {
+        if(largo == fila.length) {
+            fila = Arrays.copyOf(fila, largo * 2);
+        }
+        fila[largo++] = b;
+    }
+
+    private int digito(int campo, byte b) {
+        if(b < '0' || b > '9') {
+            throw error(campo, "carácter inesperado '" + (char) b + "'");
+        }
+        return b - '0';
+    }
+
+    private IllegalArgumentException error(int campo, String detalle) {
+        return new IllegalArgumentException("Línea " + linea + ", campo " + (campo + 1) + ": " + detalle);
+    }
+}
@@ -0,0 +1,8 @@
+package org.koshiroanz.junit.ejemplo.importer;
+
+/**
+ * Resumen de una importación: filas leídas, aplicadas y rechazadas (por ejemplo transferencias
+ * sin fondos o hacia cuentas inexistentes).
+ */
+public record ResultadoImportacion(long filas, long aplicadas, long rechazadas) {
+}
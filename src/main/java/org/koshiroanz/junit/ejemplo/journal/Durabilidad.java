@@ -0,0 +1,14 @@
+package org.koshiroanz.junit.ejemplo.journal;
+
+public enum Durabilidad {
+    /**
+     * Cada operación espera a que su registro esté en disco. Los fsync se agrupan: todas las
+     * operaciones que llegan mientras se fuerza el archivo comparten el siguiente fsync.
+     */
+    GRUPO,
+    /**
+     * Las operaciones no esperan; el journal se fuerza a disco periódicamente, por lo que una
+     * caída puede perder a lo sumo el último intervalo de flush.
+     */
+    DIFERIDA
+}
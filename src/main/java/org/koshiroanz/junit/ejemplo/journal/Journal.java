@@ -0,0 +1,540 @@
+package org.koshiroanz.junit.ejemplo.journal;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.MovimientoListener;
+import org.koshiroanz.junit.ejemplo.models.Saldo;
+import org.koshiroanz.junit.ejemplo.models.SaldoDecimal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Journal de sólo escritura al final (write-ahead) con los cambios de las cuentas de un
+ * {@link Banco}. Los registros tienen ancho fijo y se escriben en segmentos mapeados en
+ * memoria; un hilo de flush los fuerza a disco agrupando los fsync.
+ *
+ * <p>Uso típico al iniciar: {@code Journal.abrir(directorio).recuperar(banco)}, que
+ * reconstruye las cuentas reproduciendo el journal y luego registra el journal como
+ * listener del banco.
+ *
+ * <p>Todos los registros llevan el estado resultante de la cuenta (saldo o persona), así que
+ * reproducirlos es idempotente: se puede aplicar la cola del journal sobre un snapshot
+ * tomado mientras las cuentas seguían cambiando (ver {@link Snapshots}).
+ *
+ * <p>Una transferencia entre dos cuentas del mismo banco va en un único registro TRANSFERENCIA
+ * con el saldo resultante de ambas, así que al reproducir se aplica entera o no se aplica: un
+ * corte entre el débito y el crédito no hace desaparecer el dinero. En una transferencia entre
+ * bancos cada banco tiene su journal y registra sólo su pata.
+ */
+public class Journal implements MovimientoListener, Closeable {
+    public static final int REGISTROS_POR_SEGMENTO = 1 << 20;
+    public static final long INTERVALO_FLUSH_MILLIS = 5;
+
+    private static final String PREFIJO = "journal-";
+    private static final String SUFIJO = ".log";
+
+    private final Path directorio;
+    private final Durabilidad durabilidad;
+    private final int registrosPorSegmento;
+    private final long intervaloFlushMillis;
+
+    // Protegidos por el monitor del journal
+    private SegmentoJournal actual;
+    private long secuencia;
+
+    private volatile long ultimaSecuencia;
+
+    private final Object flush = new Object();
+    // Protegidos por flush
+    private long durable;
+    private long solicitada;
+    private boolean cerrado;
+
+    private final Thread flusher;
+
+    public static Journal abrir(Path directorio) {
+        return abrir(directorio, Durabilidad.GRUPO);
+    }
+
+    public static Journal abrir(Path directorio, Durabilidad durabilidad) {
+        return new Journal(directorio, durabilidad, REGISTROS_POR_SEGMENTO, INTERVALO_FLUSH_MILLIS);
+    }
+
+    public Journal(Path directorio, Durabilidad durabilidad, int registrosPorSegmento, long intervaloFlushMillis) {
+        this.directorio = directorio;
+        this.durabilidad = durabilidad;
+        this.registrosPorSegmento = registrosPorSegmento;
+        this.intervaloFlushMillis = intervaloFlushMillis;
+        try {
+            Files.createDirectories(directorio);
+            List<Path> segmentos = segmentos(directorio);
+            if(segmentos.isEmpty()) {
+                this.actual = new SegmentoJournal(archivoSegmento(1), registrosPorSegmento, true);
+                this.secuencia = 0;
+            } else {
+                Path ultimo = segmentos.get(segmentos.size() - 1);
+                this.actual = new SegmentoJournal(ultimo, registrosPorSegmento, true);
+                this.secuencia = actual.getSiguiente() == 0
+                        ? primeraSecuencia(ultimo) - 1
+                        : actual.secuencia(actual.getSiguiente() - 1);
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.ultimaSecuencia = secuencia;
+        this.durable = secuencia;
+        this.flusher = new Thread(this::flushear, "journal-flush");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public Path getDirectorio() {
+        return directorio;
+    }
+
+    public Durabilidad getDurabilidad() {
+        return durabilidad;
+    }
+
+    public long getUltimaSecuencia() {
+        return ultimaSecuencia;
+    }
+
+    public Banco recuperar(Banco banco) {
+        return recuperar(banco, SaldoDecimal::new);
+    }
+
+    /**
+     * Reconstruye en {@code banco} las cuentas del journal y deja el journal registrado como
+     * listener. Las cuentas que ya estaban en el banco y no figuran en el journal se dan de alta.
+     */
+    public Banco recuperar(Banco banco, Function<BigDecimal, Saldo> fabricaSaldo) {
+        return recuperar(banco, 0, fabricaSaldo);
+    }
+
+    /**
+     * Igual que {@link #recuperar(Banco, Function)} pero sólo reproduce los registros con
+     * secuencia mayor a {@code desde}, sobre un banco ya cargado desde un snapshot.
+     */
+    public Banco recuperar(Banco banco, long desde, Function<BigDecimal, Saldo> fabricaSaldo) {
+        Set<Long> recuperadas = new HashSet<>();
+        if(desde > 0) {
+            // Las cuentas cargadas desde el snapshot ya están persistidas
+            banco.getCuentas().forEach(cuenta -> recuperadas.add(cuenta.getId()));
+        }
+        leer(directorio, desde, registro -> {
+            recuperadas.add(registro.cuentaId());
+            aplicar(banco, registro, fabricaSaldo);
+        });
+        List<Cuenta> existentes;
+        synchronized (banco.getCuentas()) {
+            existentes = new ArrayList<>(banco.getCuentas());
+        }
+        for(Cuenta cuenta : existentes) {
+            if(!recuperadas.contains(cuenta.getId())) {
+                onAlta(cuenta);
+            }
+        }
+        banco.addListener(this);
+        return banco;
+    }
+
+    public void leer(Consumer<RegistroJournal> consumidor) {
+        leer(directorio, 0, consumidor);
+    }
+
+    /**
+     * Recorre en orden los registros con secuencia mayor a {@code desde}, uniendo los
+     * registros de continuación con su ALTA o PERSONA.
+     */
+    public static void leer(Path directorio, long desde, Consumer<RegistroJournal> consumidor) {
+        try {
+            List<Path> segmentos = segmentos(directorio);
+            for(int s = 0; s < segmentos.size(); s++) {
+                // Se saltean los segmentos que terminan antes de la secuencia pedida
+                if(s + 1 < segmentos.size() && primeraSecuencia(segmentos.get(s + 1)) <= desde + 1) {
+                    continue;
+                }
+                try(SegmentoJournal segmento = new SegmentoJournal(segmentos.get(s), Integer.MAX_VALUE / SegmentoJournal.TAMANIO_REGISTRO, false)) {
+                    leerSegmento(segmento, desde, consumidor);
+                }
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Espera a que todos los registros hasta {@code secuencia} inclusive estén en disco.
+     */
+    public void esperarDurable(long secuencia) {
+        synchronized (flush) {
+            if(secuencia > solicitada) {
+                solicitada = secuencia;
+                flush.notifyAll();
+            }
+            while(durable < secuencia) {
+                if(cerrado) {
+                    throw new IllegalStateException("Journal cerrado");
+                }
+                try {
+                    flush.wait();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrumpido esperando el journal", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onAlta(Cuenta cuenta) {
+        escribir(TipoRegistro.ALTA, cuenta.getId(), cuenta.getSaldo(), 0, cuenta.getPersona());
+    }
+
+    // El saldo resultante nunca supera en valor absoluto al actual más el monto
+    @Override
+    public void antesDeMovimiento(Cuenta cuenta, BigDecimal monto) {
+        unidades(monto);
+        unidades(cuenta.getSaldo().abs().add(monto.abs()));
+    }
+
+    @Override
+    public void antesDeSaldo(Cuenta cuenta, BigDecimal nuevo) {
+        unidades(nuevo);
+    }
+
+    @Override
+    public void antesDePersona(Cuenta cuenta, String nueva) {
+        registros(nueva == null ? 0 : nueva.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    // El débito de una transferencia dentro del banco se escribe junto con su crédito
+    @Override
+    public void onDebito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        if(!esTransferencia(cuenta, contraparte)) {
+            escribirMovimiento(TipoRegistro.DEBITO, cuenta, monto, contraparte);
+        }
+    }
+
+    // Si el crédito de una transferencia falla, el débito devuelto llega como otro crédito con
+    // contraparte y se escribe con los saldos ya restituidos
+    @Override
+    public void onCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        if(esTransferencia(cuenta, contraparte)) {
+            escribirTransferencia(contraparte, cuenta, monto);
+        } else {
+            escribirMovimiento(TipoRegistro.CREDITO, cuenta, monto, contraparte);
+        }
+    }
+
+    @Override
+    public void onSaldo(Cuenta cuenta, BigDecimal anterior, BigDecimal nuevo) {
+        escribir(TipoRegistro.SALDO, cuenta.getId(), nuevo, 0, null);
+    }
+
+    @Override
+    public void onPersona(Cuenta cuenta, String anterior) {
+        escribir(TipoRegistro.PERSONA, cuenta.getId(), null, 0, cuenta.getPersona());
+    }
+
+    @Override
+    public void confirmar(Cuenta cuenta) {
+        if(durabilidad == Durabilidad.GRUPO) {
+            esperarDurable(ultimaSecuencia);
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (flush) {
+            cerrado = true;
+            flush.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                actual.forzar();
+                actual.close();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Borra los segmentos cuyos registros tienen todos secuencia menor o igual a
+     * {@code secuencia}. El segmento en uso nunca se borra.
+     */
+    public void truncarHasta(long secuencia) {
+        try {
+            Path enUso;
+            synchronized (this) {
+                enUso = actual.getArchivo();
+            }
+            List<Path> segmentos = segmentos(directorio);
+            for(int s = 0; s + 1 < segmentos.size(); s++) {
+                Path segmento = segmentos.get(s);
+                if(segmento.equals(enUso) || primeraSecuencia(segmentos.get(s + 1)) > secuencia + 1) {
+                    break;
+                }
+                Files.deleteIfExists(segmento);
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized long escribirMovimiento(TipoRegistro tipo, Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        BigDecimal saldo = cuenta.getSaldo();
+        long unidades = unidades(monto);
+        long saldoUnidades = unidades(saldo);
+        if(actual.libres() < 1) {
+            rotar();
+        }
+        actual.escribirMovimiento(++secuencia, tipo, cuenta.getId(), unidades, monto.scale(),
+                contraparte == null ? 0 : contraparte.getId(), saldoUnidades, saldo.scale());
+        ultimaSecuencia = secuencia;
+        return secuencia;
+    }
+
+    // Se llama con los monitores de ambas cuentas tomados, así que los dos saldos son los resultantes
+    synchronized long escribirTransferencia(Cuenta origen, Cuenta destino, BigDecimal monto) {
+        BigDecimal saldoOrigen = origen.getSaldo();
+        BigDecimal saldoDestino = destino.getSaldo();
+        long unidades = unidades(monto);
+        long origenUnidades = unidades(saldoOrigen);
+        long destinoUnidades = unidades(saldoDestino);
+        if(actual.libres() < 1) {
+            rotar();
+        }
+        actual.escribirTransferencia(++secuencia, origen.getId(), unidades, monto.scale(), destino.getId(),
+                origenUnidades, saldoOrigen.scale(), destinoUnidades, saldoDestino.scale());
+        ultimaSecuencia = secuencia;
+        return secuencia;
+    }
+
+    synchronized long escribir(TipoRegistro tipo, long cuentaId, BigDecimal monto, long contraparteId, String persona) {
+        long unidades = monto == null ? 0 : unidades(monto);
+        int escala = monto == null ? 0 : monto.scale();
+        byte[] bytes = persona == null ? null : persona.getBytes(StandardCharsets.UTF_8);
+        int longitud = bytes == null ? 0 : bytes.length;
+        int registros = registros(longitud);
+        if(actual.libres() < registros) {
+            rotar();
+        }
+
+        // En ALTA y PERSONA el campo de contraparte guarda la longitud total de la persona
+        long contraparte = bytes == null ? contraparteId : longitud;
+        int enRegistro = Math.min(longitud, SegmentoJournal.BYTES_PERSONA);
+        actual.escribir(++secuencia, tipo, cuentaId, unidades, escala, contraparte, bytes, 0, enRegistro);
+        for(int desde = enRegistro; desde < longitud; desde += SegmentoJournal.BYTES_PERSONA) {
+            int parte = Math.min(longitud - desde, SegmentoJournal.BYTES_PERSONA);
+            actual.escribir(++secuencia, TipoRegistro.CONTINUACION, cuentaId, 0, 0, 0, bytes, desde, parte);
+        }
+        ultimaSecuencia = secuencia;
+        return secuencia;
+    }
+
+    // Registros que ocupa una persona de la longitud dada en UTF-8
+    private int registros(int longitud) {
+        int registros = Math.max(1, (longitud + SegmentoJournal.BYTES_PERSONA - 1) / SegmentoJournal.BYTES_PERSONA);
+        if(registros > registrosPorSegmento) {
+            throw new IllegalArgumentException("Persona demasiado larga para el journal");
+        }
+        return registros;
+    }
+
+    // Las dos patas de una transferencia de Banco se notifican con los monitores de ambas
+    // cuentas tomados; entre bancos el destino tiene otro journal
+    private static boolean esTransferencia(Cuenta cuenta, Cuenta contraparte) {
+        return contraparte != null && contraparte.getBanco() == cuenta.getBanco();
+    }
+
+    private static long unidades(BigDecimal valor) {
+        if(valor.scale() != (short) valor.scale()) {
+            throw new ArithmeticException("Escala fuera de rango: " + valor.scale());
+        }
+        return valor.unscaledValue().longValueExact();
+    }
+
+    private void rotar() {
+        try {
+            actual.forzar();
+            actual.close();
+            actual = new SegmentoJournal(archivoSegmento(secuencia + 1), registrosPorSegmento, true);
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Un único fsync cubre todo lo escrito hasta el momento, así que las esperas se agrupan
+    private void flushear() {
+        while(true) {
+            long objetivo;
+            long yaDurable;
+            boolean terminar;
+            synchronized (flush) {
+                if(!cerrado && solicitada <= durable) {
+                    try {
+                        flush.wait(intervaloFlushMillis);
+                    } catch(InterruptedException e) {
+                        return;
+                    }
+                }
+                terminar = cerrado;
+                objetivo = ultimaSecuencia;
+                yaDurable = durable;
+            }
+            if(objetivo > yaDurable) {
+                SegmentoJournal segmento;
+                synchronized (this) {
+                    segmento = actual;
+                }
+                segmento.forzar();
+            }
+            synchronized (flush) {
+                durable = Math.max(durable, objetivo);
+                flush.notifyAll();
+            }
+            if(terminar) {
+                return;
+            }
+        }
+    }
+
+    private void aplicar(Banco banco, RegistroJournal registro, Function<BigDecimal, Saldo> fabricaSaldo) {
+        if(registro.tipo() == TipoRegistro.ALTA) {
+            banco.findById(registro.cuentaId()).ifPresentOrElse(
+                    cuenta -> {
+                        cuenta.setPersona(registro.persona());
+                        cuenta.setSaldo(registro.monto());
+                    },
+                    () -> banco.addCuenta(new Cuenta(registro.cuentaId(), registro.persona(), fabricaSaldo.apply(registro.monto()))));
+            return;
+        }
+        Cuenta cuenta = banco.findById(registro.cuentaId())
+                .orElseThrow(() -> new IllegalStateException("Cuenta " + registro.cuentaId() + " sin alta en el journal"));
+        switch(registro.tipo()) {
+            case DEBITO, CREDITO, SALDO -> cuenta.setSaldo(registro.saldo());
+            case TRANSFERENCIA -> {
+                Cuenta destino = banco.findById(registro.contraparteId())
+                        .orElseThrow(() -> new IllegalStateException("Cuenta " + registro.contraparteId() + " sin alta en el journal"));
+                cuenta.setSaldo(registro.saldo());
+                destino.setSaldo(registro.saldoContraparte());
+            }
+            case PERSONA -> cuenta.setPersona(registro.persona());
+            default -> throw new IllegalStateException("Registro inesperado: " + registro.tipo());
+        }
+    }
+
+    private static void leerSegmento(SegmentoJournal segmento, long desde, Consumer<RegistroJournal> consumidor) {
+        int total = segmento.getSiguiente();
+        for(int i = 0; i < total; i++) {
+            long secuencia = segmento.secuencia(i);
+            TipoRegistro tipo = TipoRegistro.deCodigo(segmento.leerByte(i, SegmentoJournal.TIPO));
+            if(tipo == TipoRegistro.CONTINUACION) {
+                continue;
+            }
+            long cuentaId = segmento.leerLong(i, SegmentoJournal.CUENTA);
+            long contraparte = segmento.leerLong(i, SegmentoJournal.CONTRAPARTE);
+            BigDecimal monto = null;
+            BigDecimal saldo = null;
+            BigDecimal saldoContraparte = null;
+            String persona = null;
+            if(tipo == TipoRegistro.ALTA || tipo == TipoRegistro.PERSONA) {
+                persona = leerPersona(segmento, i, total, contraparte);
+                if(persona == null) {
+                    // Cola cortada: las continuaciones que llegaron se saltean como siempre
+                    continue;
+                }
+                contraparte = 0;
+            }
+            if(tipo != TipoRegistro.PERSONA) {
+                monto = new BigDecimal(BigInteger.valueOf(segmento.leerLong(i, SegmentoJournal.UNIDADES)),
+                        segmento.leerShort(i, SegmentoJournal.ESCALA));
+                saldo = monto;
+            }
+            if(tipo == TipoRegistro.DEBITO || tipo == TipoRegistro.CREDITO || tipo == TipoRegistro.TRANSFERENCIA) {
+                saldo = new BigDecimal(BigInteger.valueOf(segmento.leerLong(i, SegmentoJournal.SALDO_UNIDADES)),
+                        segmento.leerShort(i, SegmentoJournal.SALDO_ESCALA));
+            }
+            if(tipo == TipoRegistro.TRANSFERENCIA) {
+                saldoContraparte = new BigDecimal(BigInteger.valueOf(segmento.leerLong(i, SegmentoJournal.SALDO_CONTRAPARTE_UNIDADES)),
+                        segmento.leerShort(i, SegmentoJournal.SALDO_CONTRAPARTE_ESCALA));
+            }
+            if(secuencia > desde) {
+                consumidor.accept(new RegistroJournal(secuencia, tipo, cuentaId, contraparte, monto, saldo, saldoContraparte, persona));
+            }
+        }
+    }
+
+    /**
+     * Une la persona de un ALTA o PERSONA en el registro {@code i} con sus continuaciones, que
+     * deben seguirlo con secuencias consecutivas. Devuelve null si la entrada quedó incompleta
+     * (un corte después del primer registro), para que se descarte como el resto de la cola.
+     */
+    private static String leerPersona(SegmentoJournal segmento, int i, int total, long longitud) {
+        if(longitud < 0 || longitud > (long) (total - i) * SegmentoJournal.BYTES_PERSONA) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) longitud];
+        long secuencia = segmento.secuencia(i);
+        int leidos = 0;
+        for(int j = i; leidos < bytes.length; j++) {
+            if(j >= total) {
+                return null;
+            }
+            if(j > i && (segmento.secuencia(j) != secuencia + (j - i)
+                    || TipoRegistro.deCodigo(segmento.leerByte(j, SegmentoJournal.TIPO)) != TipoRegistro.CONTINUACION)) {
+                return null;
+            }
+            int parte = segmento.leerByte(j, SegmentoJournal.LONGITUD);
+            if(parte < 1 || parte > bytes.length - leidos) {
+                return null;
+            }
+            segmento.leerPersona(j, bytes, leidos, parte);
+            leidos += parte;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path archivoSegmento(long primeraSecuencia) {
+        return directorio.resolve(String.format("%s%019d%s", PREFIJO, primeraSecuencia, SUFIJO));
+    }
+
+    private static long primeraSecuencia(Path segmento) {
+        String nombre = segmento.getFileName().toString();
+        return Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - SUFIJO.length()));
+    }
+
+    static List<Path> segmentos(Path directorio) throws IOException {
+        if(!Files.isDirectory(directorio)) {
+            return List.of();
+        }
+        try(Stream<Path> archivos = Files.list(directorio)) {
+            return archivos
+                    .filter(p -> p.getFileName().toString().startsWith(PREFIJO) && p.getFileName().toString().endsWith(SUFIJO))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
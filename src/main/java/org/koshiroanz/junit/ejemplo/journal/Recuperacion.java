@@ -0,0 +1,10 @@
+package org.koshiroanz.junit.ejemplo.journal;
+
+import java.time.Duration;
+
+/**
+ * Resumen de un arranque: cuántas cuentas vinieron del snapshot, desde qué secuencia se
+ * reprodujo el journal, cuántos registros se reprodujeron y cuánto tardó todo.
+ */
+public record Recuperacion(int cuentasSnapshot, long secuenciaSnapshot, long registrosReproducidos, Duration duracion) {
+}
@@ -0,0 +1,14 @@
+package org.koshiroanz.junit.ejemplo.journal;
+
+import java.math.BigDecimal;
+
+/**
+ * Registro leído del journal. {@code monto} es el saldo inicial en un ALTA, el monto en un
+ * DEBITO, CREDITO o TRANSFERENCIA y el nuevo saldo en un SALDO; {@code saldo} es el saldo de
+ * la cuenta después de aplicar el registro. En una TRANSFERENCIA la cuenta es el origen, la
+ * contraparte el destino y {@code saldoContraparte} el saldo resultante del destino; en los
+ * demás tipos es null. {@code persona} sólo viene en ALTA y PERSONA.
+ */
+public record RegistroJournal(long secuencia, TipoRegistro tipo, long cuentaId, long contraparteId,
+                              BigDecimal monto, BigDecimal saldo, BigDecimal saldoContraparte, String persona) {
+}
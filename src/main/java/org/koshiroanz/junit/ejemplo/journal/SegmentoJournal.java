@@ -0,0 +1,166 @@
+package org.koshiroanz.junit.ejemplo.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Archivo de journal de tamaño fijo, mapeado en memoria y dividido en registros de
+ * {@link #TAMANIO_REGISTRO} bytes:
+ *
+ * <pre>
+ *  0  long  secuencia (0 = registro libre, se escribe al final)
+ *  8  long  id de cuenta
+ * 16  long  monto sin escala
+ * 24  long  id de contraparte
+ * 32  short escala del monto
+ * 34  byte  tipo
+ * 35  byte  bytes de persona en este registro
+ * 36  28 bytes de persona en UTF-8 (ALTA, PERSONA y CONTINUACION), o bien
+ * 36  long  saldo resultante sin escala (DEBITO, CREDITO y TRANSFERENCIA)
+ * 44  short escala del saldo resultante
+ * 46  long  saldo resultante de la contraparte sin escala (TRANSFERENCIA)
+ * 54  short escala del saldo resultante de la contraparte
+ * </pre>
+ */
+class SegmentoJournal implements Closeable {
+    static final int TAMANIO_REGISTRO = 64;
+    static final int BYTES_PERSONA = 28;
+
+    static final int SECUENCIA = 0;
+    static final int CUENTA = 8;
+    static final int UNIDADES = 16;
+    static final int CONTRAPARTE = 24;
+    static final int ESCALA = 32;
+    static final int TIPO = 34;
+    static final int LONGITUD = 35;
+    static final int PERSONA = 36;
+    static final int SALDO_UNIDADES = 36;
+    static final int SALDO_ESCALA = 44;
+    static final int SALDO_CONTRAPARTE_UNIDADES = 46;
+    static final int SALDO_CONTRAPARTE_ESCALA = 54;
+
+    private final Path archivo;
+    private final FileChannel canal;
+    private final MappedByteBuffer buffer;
+    private final int registros;
+
+    // Primer registro libre; sólo lo modifica el hilo que escribe con el lock del journal
+    private int siguiente;
+
+    SegmentoJournal(Path archivo, int registros, boolean escritura) throws IOException {
+        this.archivo = archivo;
+        if(escritura) {
+            this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Un segmento existente conserva el tamaño con el que se creó
+            if(canal.size() > 0) {
+                registros = (int) (canal.size() / TAMANIO_REGISTRO);
+            }
+            this.buffer = canal.map(FileChannel.MapMode.READ_WRITE, 0, (long) registros * TAMANIO_REGISTRO);
+        } else {
+            this.canal = FileChannel.open(archivo, StandardOpenOption.READ);
+            this.buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(canal.size(), (long) registros * TAMANIO_REGISTRO));
+        }
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.registros = buffer.capacity() / TAMANIO_REGISTRO;
+        while(siguiente < this.registros && secuencia(siguiente) != 0) {
+            siguiente++;
+        }
+    }
+
+    Path getArchivo() {
+        return archivo;
+    }
+
+    int getSiguiente() {
+        return siguiente;
+    }
+
+    int libres() {
+        return registros - siguiente;
+    }
+
+    long secuencia(int registro) {
+        return buffer.getLong(registro * TAMANIO_REGISTRO + SECUENCIA);
+    }
+
+    long leerLong(int registro, int campo) {
+        return buffer.getLong(registro * TAMANIO_REGISTRO + campo);
+    }
+
+    short leerShort(int registro, int campo) {
+        return buffer.getShort(registro * TAMANIO_REGISTRO + campo);
+    }
+
+    byte leerByte(int registro, int campo) {
+        return buffer.get(registro * TAMANIO_REGISTRO + campo);
+    }
+
+    void leerPersona(int registro, byte[] destino, int desde, int longitud) {
+        buffer.get(registro * TAMANIO_REGISTRO + PERSONA, destino, desde, longitud);
+    }
+
+    void escribir(long secuencia, TipoRegistro tipo, long cuentaId, long unidades, int escala, long contraparteId,
+                  byte[] persona, int desde, int longitud) {
+        int base = siguiente * TAMANIO_REGISTRO;
+        buffer.putLong(base + CUENTA, cuentaId);
+        buffer.putLong(base + UNIDADES, unidades);
+        buffer.putLong(base + CONTRAPARTE, contraparteId);
+        buffer.putShort(base + ESCALA, (short) escala);
+        buffer.put(base + TIPO, tipo.codigo());
+        buffer.put(base + LONGITUD, (byte) longitud);
+        if(longitud > 0) {
+            buffer.put(base + PERSONA, persona, desde, longitud);
+        }
+        escribirSecuencia(base, secuencia);
+    }
+
+    void escribirMovimiento(long secuencia, TipoRegistro tipo, long cuentaId, long unidades, int escala, long contraparteId,
+                            long saldoUnidades, int saldoEscala) {
+        int base = siguiente * TAMANIO_REGISTRO;
+        buffer.putLong(base + CUENTA, cuentaId);
+        buffer.putLong(base + UNIDADES, unidades);
+        buffer.putLong(base + CONTRAPARTE, contraparteId);
+        buffer.putShort(base + ESCALA, (short) escala);
+        buffer.put(base + TIPO, tipo.codigo());
+        buffer.put(base + LONGITUD, (byte) 0);
+        buffer.putLong(base + SALDO_UNIDADES, saldoUnidades);
+        buffer.putShort(base + SALDO_ESCALA, (short) saldoEscala);
+        escribirSecuencia(base, secuencia);
+    }
+
+    void escribirTransferencia(long secuencia, long origenId, long unidades, int escala, long destinoId,
+                               long saldoOrigenUnidades, int saldoOrigenEscala, long saldoDestinoUnidades, int saldoDestinoEscala) {
+        int base = siguiente * TAMANIO_REGISTRO;
+        buffer.putLong(base + CUENTA, origenId);
+        buffer.putLong(base + UNIDADES, unidades);
+        buffer.putLong(base + CONTRAPARTE, destinoId);
+        buffer.putShort(base + ESCALA, (short) escala);
+        buffer.put(base + TIPO, TipoRegistro.TRANSFERENCIA.codigo());
+        buffer.put(base + LONGITUD, (byte) 0);
+        buffer.putLong(base + SALDO_UNIDADES, saldoOrigenUnidades);
+        buffer.putShort(base + SALDO_ESCALA, (short) saldoOrigenEscala);
+        buffer.putLong(base + SALDO_CONTRAPARTE_UNIDADES, saldoDestinoUnidades);
+        buffer.putShort(base + SALDO_CONTRAPARTE_ESCALA, (short) saldoDestinoEscala);
+        escribirSecuencia(base, secuencia);
+    }
+
+    private void escribirSecuencia(int base, long secuencia) {
+        // La secuencia va al final: un registro con secuencia está completo
+        buffer.putLong(base + SECUENCIA, secuencia);
+        siguiente++;
+    }
+
+    void forzar() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
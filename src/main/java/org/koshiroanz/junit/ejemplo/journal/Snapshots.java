@@ -0,0 +1,248 @@
+package org.koshiroanz.junit.ejemplo.journal;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.Saldo;
+import org.koshiroanz.junit.ejemplo.models.SaldoDecimal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Snapshots binarios del estado de un {@link Banco} journalizado. Un snapshot se toma sin
+ * detener las transferencias: primero se anota la última secuencia del journal y después se
+ * leen las cuentas una por una. Como reproducir el journal es idempotente, al arrancar basta
+ * con cargar el último snapshot y aplicar los registros posteriores a esa secuencia.
+ *
+ * <pre>
+ * int    MAGIA
+ * short  VERSION
+ * long   secuencia del journal
+ * UTF    nombre del banco ("" si no tiene)
+ * int    cantidad de cuentas
+ * por cuenta: long id, short escala, long saldo sin escala, UTF persona
+ * </pre>
+ *
+ * Igual que en el journal, una persona null se guarda como "".
+ */
+public class Snapshots implements Closeable {
+    private static final int MAGIA = 0x534E4150;
+    private static final short VERSION = 1;
+
+    private static final String PREFIJO = "snapshot-";
+    private static final String SUFIJO = ".snap";
+
+    private final Path directorio;
+    private final Banco banco;
+    private final Journal journal;
+
+    private ScheduledExecutorService programador;
+    private volatile RuntimeException ultimoError;
+
+    public Snapshots(Path directorio, Banco banco, Journal journal) {
+        this.directorio = directorio;
+        this.banco = banco;
+        this.journal = journal;
+    }
+
+    public static Recuperacion recuperar(Path directorio, Journal journal, Banco banco) {
+        return recuperar(directorio, journal, banco, SaldoDecimal::new);
+    }
+
+    /**
+     * Carga el último snapshot en {@code banco} y reproduce sólo la cola del journal.
+     */
+    public static Recuperacion recuperar(Path directorio, Journal journal, Banco banco, Function<BigDecimal, Saldo> fabricaSaldo) {
+        long inicio = System.nanoTime();
+        long secuencia = 0;
+        int cuentas = 0;
+        Optional<Path> ultimo = ultimo(directorio);
+        if(ultimo.isPresent()) {
+            try(DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(ultimo.get())))) {
+                if(entrada.readInt() != MAGIA || entrada.readShort() != VERSION) {
+                    throw new IllegalStateException("Snapshot inválido: " + ultimo.get());
+                }
+                secuencia = entrada.readLong();
+                String nombre = entrada.readUTF();
+                if(banco.getNombre() == null && !nombre.isEmpty()) {
+                    banco.setNombre(nombre);
+                }
+                cuentas = entrada.readInt();
+                for(int i = 0; i < cuentas; i++) {
+                    long id = entrada.readLong();
+                    int escala = entrada.readShort();
+                    BigDecimal saldo = BigDecimal.valueOf(entrada.readLong(), escala);
+                    banco.addCuenta(new Cuenta(id, entrada.readUTF(), fabricaSaldo.apply(saldo)));
+                }
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        journal.recuperar(banco, secuencia, fabricaSaldo);
+        return new Recuperacion(cuentas, secuencia, Math.max(0, journal.getUltimaSecuencia() - secuencia),
+                Duration.ofNanos(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Escribe un snapshot, borra los anteriores y los segmentos del journal que ya cubre.
+     */
+    public synchronized Path tomar() {
+        long secuencia = journal.getUltimaSecuencia();
+        List<Cuenta> cuentas;
+        synchronized (banco.getCuentas()) {
+            cuentas = new ArrayList<>(banco.getCuentas());
+        }
+        String nombre = banco.getNombre() == null ? "" : banco.getNombre();
+        validarUtf(nombre);
+        // Se codifica todo antes de abrir el archivo: una cuenta que no entra en el formato
+        // falla sin dejar un snapshot a medio escribir
+        int cantidad = cuentas.size();
+        long[] ids = new long[cantidad];
+        short[] escalas = new short[cantidad];
+        long[] unidades = new long[cantidad];
+        String[] personas = new String[cantidad];
+        for(int i = 0; i < cantidad; i++) {
+            Cuenta cuenta = cuentas.get(i);
+            BigDecimal saldo = cuenta.getSaldo();
+            if(saldo.scale() != (short) saldo.scale() || saldo.unscaledValue().bitLength() > 63) {
+                throw new ArithmeticException("El saldo de la cuenta " + cuenta.getId() + " no entra en el snapshot: " + saldo);
+            }
+            ids[i] = cuenta.getId();
+            escalas[i] = (short) saldo.scale();
+            unidades[i] = saldo.unscaledValue().longValue();
+            personas[i] = cuenta.getPersona() == null ? "" : cuenta.getPersona();
+            validarUtf(personas[i]);
+        }
+
+        Path archivo = directorio.resolve(String.format("%s%019d%s", PREFIJO, secuencia, SUFIJO));
+        Path temporal = directorio.resolve(archivo.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directorio);
+            try {
+                try(FileOutputStream archivoSalida = new FileOutputStream(temporal.toFile());
+                    DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(archivoSalida, 1 << 16))) {
+                    salida.writeInt(MAGIA);
+                    salida.writeShort(VERSION);
+                    salida.writeLong(secuencia);
+                    salida.writeUTF(nombre);
+                    salida.writeInt(cantidad);
+                    for(int i = 0; i < cantidad; i++) {
+                        salida.writeLong(ids[i]);
+                        salida.writeShort(escalas[i]);
+                        salida.writeLong(unidades[i]);
+                        salida.writeUTF(personas[i]);
+                    }
+                    salida.flush();
+                    archivoSalida.getFD().sync();
+                }
+            } catch(IOException e) {
+                Files.deleteIfExists(temporal);
+                throw e;
+            }
+            Files.move(temporal, archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            for(Path anterior : snapshots(directorio)) {
+                if(!anterior.equals(archivo)) {
+                    Files.deleteIfExists(anterior);
+                }
+            }
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        journal.truncarHasta(secuencia);
+        return archivo;
+    }
+
+    /**
+     * Toma un snapshot cada {@code periodo} en un hilo de fondo.
+     */
+    public synchronized void programar(Duration periodo) {
+        if(programador != null) {
+            throw new IllegalStateException("Los snapshots ya están programados");
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "banco-snapshots");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                tomar();
+            } catch(RuntimeException e) {
+                ultimoError = e;
+            }
+        }, periodo.toMillis(), periodo.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public RuntimeException getUltimoError() {
+        return ultimoError;
+    }
+
+    @Override
+    public void close() {
+        ScheduledExecutorService detenido;
+        synchronized (this) {
+            detenido = programador;
+            programador = null;
+        }
+        if(detenido != null) {
+            detenido.shutdown();
+            try {
+                detenido.awaitTermination(1, TimeUnit.MINUTES);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // writeUTF admite hasta 65535 bytes en UTF-8 modificado, donde '\0' ocupa dos
+    private static void validarUtf(String texto) {
+        long bytes = 0;
+        for(int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            bytes += c >= 0x0001 && c <= 0x007F ? 1 : c <= 0x07FF ? 2 : 3;
+        }
+        if(bytes > 65535) {
+            throw new IllegalArgumentException("Texto demasiado largo para el snapshot: " + bytes + " bytes");
+        }
+    }
+
+    private static Optional<Path> ultimo(Path directorio) {
+        try {
+            List<Path> snapshots = snapshots(directorio);
+            return snapshots.isEmpty() ? Optional.empty() : Optional.of(snapshots.get(snapshots.size() - 1));
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<Path> snapshots(Path directorio) throws IOException {
+        if(!Files.isDirectory(directorio)) {
+            return List.of();
+        }
+        try(Stream<Path> archivos = Files.list(directorio)) {
+            return archivos
+                    .filter(p -> p.getFileName().toString().startsWith(PREFIJO) && p.getFileName().toString().endsWith(SUFIJO))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.koshiroanz.junit.ejemplo.journal;
+
+public enum TipoRegistro {
+    ALTA,
+    DEBITO,
+    CREDITO,
+    SALDO,
+    PERSONA,
+    // Continúa la persona de un ALTA o PERSONA que no entra en un único registro
+    CONTINUACION,
+    // Débito y crédito de una transferencia entre cuentas del mismo banco, en un único registro
+    TRANSFERENCIA;
+
+    private static final TipoRegistro[] VALORES = values();
+
+    byte codigo() {
+        return (byte) (ordinal() + 1);
+    }
+
+    static TipoRegistro deCodigo(byte codigo) {
+        if(codigo < 1 || codigo > VALORES.length) {
+            throw new IllegalStateException("Tipo de registro desconocido: " + codigo);
+        }
+        return VALORES[codigo - 1];
+    }
+}
@@ -0,0 +1,127 @@
+package org.koshiroanz.junit.ejemplo.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Histograma de latencias de memoria fija al estilo HdrHistogram: los valores menores a 128
+ * se guardan exactos y el resto en 64 sub-buckets por potencia de dos, con un error relativo
+ * menor al 1,6%.
+ *
+ * <p>Los conteos están repartidos en franjas: cada hilo suma siempre en la misma franja, así
+ * los hilos que registran a la vez no compiten por las mismas líneas de caché, y las lecturas
+ * suman todas las franjas. Una franja se crea la primera vez que un hilo la usa; a partir de
+ * ahí {@link #registrar(long)} no reserva memoria.
+ */
+public class Histograma {
+    private static final int SUB_BUCKETS = 64;
+    private static final int BITS_SUB_BUCKET = 6;
+    private static final int BUCKETS = (64 - BITS_SUB_BUCKET) * SUB_BUCKETS;
+    private static final int FRANJAS = Math.min(64, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    // Los hilos reciben números consecutivos, así se reparten parejo entre las franjas
+    private static final AtomicInteger SIGUIENTE_HILO = new AtomicInteger();
+    private static final ThreadLocal<Integer> HILO = ThreadLocal.withInitial(SIGUIENTE_HILO::getAndIncrement);
+
+    private final AtomicReferenceArray<AtomicLongArray> franjas = new AtomicReferenceArray<>(FRANJAS);
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    public void registrar(long valor) {
+        if(valor < 0) {
+            valor = 0;
+        }
+        franja().incrementAndGet(indice(valor));
+        maximo.accumulate(valor);
+    }
+
+    public long getCantidad() {
+        long total = 0;
+        for(long conteo : conteos()) {
+            total += conteo;
+        }
+        return total;
+    }
+
+    public long getMaximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Valor por debajo del cual cae el {@code percentil} (0 a 100) de las muestras,
+     * redondeado hacia arriba al límite de su bucket.
+     */
+    public long percentil(double percentil) {
+        long[] copia = conteos();
+        long total = 0;
+        for(long conteo : copia) {
+            total += conteo;
+        }
+        if(total == 0) {
+            return 0;
+        }
+        long objetivo = Math.max(1, (long) Math.ceil(total * percentil / 100.0));
+        long acumulado = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            acumulado += copia[i];
+            if(acumulado >= objetivo) {
+                return Math.min(limiteSuperior(i), getMaximo());
+            }
+        }
+        return getMaximo();
+    }
+
+    public void reiniciar() {
+        for(int f = 0; f < FRANJAS; f++) {
+            AtomicLongArray franja = franjas.get(f);
+            if(franja != null) {
+                for(int i = 0; i < BUCKETS; i++) {
+                    franja.set(i, 0);
+                }
+            }
+        }
+        maximo.reset();
+    }
+
+    private AtomicLongArray franja() {
+        int f = HILO.get() & (FRANJAS - 1);
+        AtomicLongArray franja = franjas.get(f);
+        if(franja == null) {
+            franjas.compareAndSet(f, null, new AtomicLongArray(BUCKETS));
+            franja = franjas.get(f);
+        }
+        return franja;
+    }
+
+    // Suma de todas las franjas por bucket
+    private long[] conteos() {
+        long[] conteos = new long[BUCKETS];
+        for(int f = 0; f < FRANJAS; f++) {
+            AtomicLongArray franja = franjas.get(f);
+            if(franja != null) {
+                for(int i = 0; i < BUCKETS; i++) {
+                    conteos[i] += franja.get(i);
+                }
+            }
+        }
+        return conteos;
+    }
+
+    static int indice(long valor) {
+        if(valor < 2 * SUB_BUCKETS) {
+            return (int) valor;
+        }
+        int desplazamiento = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUB_BUCKET;
+        return (desplazamiento + 1) * SUB_BUCKETS + (int) (valor >>> desplazamiento) - SUB_BUCKETS;
+    }
+
+    static long limiteSuperior(int indice) {
+        if(indice < 2 * SUB_BUCKETS) {
+            return indice;
+        }
+        int desplazamiento = indice / SUB_BUCKETS - 1;
+        long subBucket = indice % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << desplazamiento) - 1;
+    }
+}
@@ -0,0 +1,138 @@
+package org.koshiroanz.junit.ejemplo.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores y latencias de las operaciones de un banco. Los contadores son {@link LongAdder}
+ * para que hilos que operan sobre cuentas distintas no compitan por la misma línea de caché, y
+ * registrar no reserva memoria. Con {@link #setHabilitadas(boolean)} en false no se mide nada.
+ */
+public class Metricas implements MetricasMBean {
+    private volatile boolean habilitadas = true;
+
+    private final LongAdder transferencias = new LongAdder();
+    private final LongAdder creditos = new LongAdder();
+    private final LongAdder debitos = new LongAdder();
+    private final LongAdder rechazos = new LongAdder();
+    private final Histograma latenciaTransferir = new Histograma();
+
+    @Override
+    public boolean isHabilitadas() {
+        return habilitadas;
+    }
+
+    @Override
+    public void setHabilitadas(boolean habilitadas) {
+        this.habilitadas = habilitadas;
+    }
+
+    // Devuelve el instante de inicio a pasar a registrarTransferencia, o 0 si están deshabilitadas
+    public long iniciar() {
+        return habilitadas ? System.nanoTime() : 0;
+    }
+
+    public void registrarTransferencia(long inicio) {
+        if(habilitadas && inicio != 0) {
+            transferencias.increment();
+            latenciaTransferir.registrar(System.nanoTime() - inicio);
+        }
+    }
+
+    public void registrarCredito() {
+        if(habilitadas) {
+            creditos.increment();
+        }
+    }
+
+    public void registrarDebito() {
+        if(habilitadas) {
+            debitos.increment();
+        }
+    }
+
+    public void registrarRechazo() {
+        if(habilitadas) {
+            rechazos.increment();
+        }
+    }
+
+    public MetricasSnapshot instantanea() {
+        return new MetricasSnapshot(getTransferencias(), getCreditos(), getDebitos(), getRechazos(),
+                getLatenciaP50(), getLatenciaP99(), getLatenciaP999(), getLatenciaMaxima());
+    }
+
+    public Histograma getLatenciaTransferir() {
+        return latenciaTransferir;
+    }
+
+    @Override
+    public long getTransferencias() {
+        return transferencias.sum();
+    }
+
+    @Override
+    public long getCreditos() {
+        return creditos.sum();
+    }
+
+    @Override
+    public long getDebitos() {
+        return debitos.sum();
+    }
+
+    @Override
+    public long getRechazos() {
+        return rechazos.sum();
+    }
+
+    @Override
+    public long getLatenciaP50() {
+        return latenciaTransferir.percentil(50);
+    }
+
+    @Override
+    public long getLatenciaP99() {
+        return latenciaTransferir.percentil(99);
+    }
+
+    @Override
+    public long getLatenciaP999() {
+        return latenciaTransferir.percentil(99.9);
+    }
+
+    @Override
+    public long getLatenciaMaxima() {
+        return latenciaTransferir.getMaximo();
+    }
+
+    @Override
+    public void reiniciar() {
+        transferencias.reset();
+        creditos.reset();
+        debitos.reset();
+        rechazos.reset();
+        latenciaTransferir.reiniciar();
+    }
+
+    /**
+     * Publica las métricas en el MBeanServer de la plataforma como
+     * {@code org.koshiroanz.junit.ejemplo:type=Banco,name=<nombre>}.
+     */
+    public ObjectName registrarJmx(String nombre) {
+        try {
+            ObjectName objectName = new ObjectName("org.koshiroanz.junit.ejemplo:type=Banco,name=" + ObjectName.quote(nombre));
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            if(servidor.isRegistered(objectName)) {
+                servidor.unregisterMBean(objectName);
+            }
+            servidor.registerMBean(this, objectName);
+            return objectName;
+        } catch(JMException e) {
+            throw new IllegalStateException("No se pudo registrar el MBean " + nombre, e);
+        }
+    }
+}
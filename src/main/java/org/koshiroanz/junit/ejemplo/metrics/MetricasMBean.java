@@ -0,0 +1,25 @@
+package org.koshiroanz.junit.ejemplo.metrics;
+
+public interface MetricasMBean {
+    boolean isHabilitadas();
+
+    void setHabilitadas(boolean habilitadas);
+
+    long getTransferencias();
+
+    long getCreditos();
+
+    long getDebitos();
+
+    long getRechazos();
+
+    long getLatenciaP50();
+
+    long getLatenciaP99();
+
+    long getLatenciaP999();
+
+    long getLatenciaMaxima();
+
+    void reiniciar();
+}
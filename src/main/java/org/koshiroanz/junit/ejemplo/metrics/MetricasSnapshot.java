@@ -0,0 +1,8 @@
+package org.koshiroanz.junit.ejemplo.metrics;
+
+/**
+ * Valores de {@link Metricas} en un momento dado. Las latencias están en nanosegundos.
+ */
+public record MetricasSnapshot(long transferencias, long creditos, long debitos, long rechazos,
+                               long latenciaP50, long latenciaP99, long latenciaP999, long latenciaMaxima) {
+}
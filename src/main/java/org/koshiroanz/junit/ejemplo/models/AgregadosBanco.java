@@ -0,0 +1,301 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Agregados de un {@link Banco} mantenidos de forma incremental a partir de los eventos de sus
+ * cuentas: saldo total, cantidad de cuentas, total por persona y las N cuentas con mayor saldo.
+ * Las lecturas son O(1) salvo {@link #topCuentas()}, que es O(N).
+ *
+ * <p>Para el ranking se siguen hasta 2N candidatas: exactamente las cuentas que quedan antes de
+ * un umbral (saldo e id, en el orden del ranking), que todas las demás no superan. Una candidata
+ * que baja hasta el umbral deja de serlo; recién cuando quedan menos de N candidatas hay que
+ * recorrer todas las cuentas, o sea después de que al menos N + 1 candidatas hayan bajado.
+ *
+ * <p>Se crea con {@link Banco#habilitarAgregados(int)}. Como es un {@link MovimientoListener},
+ * las actualizaciones de una misma cuenta llegan en orden bajo su monitor; el total se reparte
+ * en franjas para que cuentas distintas no compitan por el mismo lock.
+ */
+public class AgregadosBanco implements MovimientoListener {
+    private static final int FRANJAS = 16;
+
+    private static final Comparator<Entrada> MAYOR_SALDO = Comparator.comparing(Entrada::saldo).reversed()
+            .thenComparingLong(e -> e.estado().cuenta.getId());
+
+    private final int tamanoTop;
+
+    private final Map<Long, Estado> estados = new ConcurrentHashMap<>();
+    private final Map<String, BigDecimal> totalesPorPersona = new ConcurrentHashMap<>();
+    private final Franja[] franjas = new Franja[FRANJAS];
+
+    private final int maxCandidatas;
+
+    // Protegidos por el monitor de top; top son las candidatas, de mayor a menor
+    private final TreeSet<Entrada> top = new TreeSet<>(MAYOR_SALDO);
+    private long reconstrucciones;
+    // Las cuentas que no son candidatas quedan en el ranking en él o después; null mientras
+    // todas lo son. Permite descartar sin lock los cambios de cuentas que siguen fuera.
+    private volatile Entrada umbral;
+
+    AgregadosBanco(int tamanoTop) {
+        if(tamanoTop < 1) {
+            throw new IllegalArgumentException("El tamaño del ranking debe ser positivo: " + tamanoTop);
+        }
+        this.tamanoTop = tamanoTop;
+        this.maxCandidatas = tamanoTop > Integer.MAX_VALUE / 2 ? Integer.MAX_VALUE : tamanoTop * 2;
+        for(int i = 0; i < FRANJAS; i++) {
+            franjas[i] = new Franja();
+        }
+    }
+
+    public BigDecimal saldoTotal() {
+        BigDecimal total = BigDecimal.ZERO;
+        for(Franja franja : franjas) {
+            total = total.add(franja.get());
+        }
+        return total;
+    }
+
+    public long cantidadCuentas() {
+        return estados.size();
+    }
+
+    public BigDecimal saldoTotal(String persona) {
+        return totalesPorPersona.getOrDefault(persona, BigDecimal.ZERO);
+    }
+
+    public int getTamanoTop() {
+        return tamanoTop;
+    }
+
+    /**
+     * Las cuentas de mayor saldo, de mayor a menor.
+     */
+    public List<Cuenta> topCuentas() {
+        synchronized (top) {
+            if(top.size() < tamanoTop && umbral != null) {
+                reconstruirTop();
+            }
+            List<Cuenta> resultado = new ArrayList<>(Math.min(top.size(), tamanoTop));
+            for(Entrada entrada : top) {
+                if(resultado.size() == tamanoTop) {
+                    break;
+                }
+                resultado.add(entrada.estado().cuenta);
+            }
+            return resultado;
+        }
+    }
+
+    // Cantidad de veces que el ranking tuvo que recorrer todas las cuentas
+    long getReconstrucciones() {
+        synchronized (top) {
+            return reconstrucciones;
+        }
+    }
+
+    @Override
+    public void onAlta(Cuenta cuenta) {
+        estado(cuenta);
+    }
+
+    @Override
+    public void onDebito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        Estado estado = estados.get(cuenta.getId());
+        if(estado == null) {
+            estado(cuenta);
+        } else {
+            cambiar(estado, estado.saldo.subtract(monto));
+        }
+    }
+
+    @Override
+    public void onCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        Estado estado = estados.get(cuenta.getId());
+        if(estado == null) {
+            estado(cuenta);
+        } else {
+            cambiar(estado, estado.saldo.add(monto));
+        }
+    }
+
+    @Override
+    public void onSaldo(Cuenta cuenta, BigDecimal anterior, BigDecimal nuevo) {
+        Estado estado = estados.get(cuenta.getId());
+        if(estado == null) {
+            estado(cuenta);
+        } else {
+            cambiar(estado, nuevo);
+        }
+    }
+
+    @Override
+    public void onPersona(Cuenta cuenta, String anterior) {
+        Estado estado = estados.get(cuenta.getId());
+        if(estado == null) {
+            estado(cuenta);
+            return;
+        }
+        sumarPersona(estado.persona, estado.saldo.negate());
+        estado.persona = cuenta.getPersona();
+        sumarPersona(estado.persona, estado.saldo);
+    }
+
+    /**
+     * Descarta lo acumulado y vuelve a partir de las cuentas indicadas.
+     */
+    void reiniciar(Collection<Cuenta> cuentas) {
+        estados.clear();
+        totalesPorPersona.clear();
+        for(Franja franja : franjas) {
+            franja.reiniciar();
+        }
+        synchronized (top) {
+            top.clear();
+            umbral = null;
+        }
+        cuentas.forEach(this::sembrar);
+    }
+
+    // Registra una cuenta con su saldo actual tomando su monitor, como hacen los eventos
+    void sembrar(Cuenta cuenta) {
+        synchronized (cuenta) {
+            estado(cuenta);
+        }
+    }
+
+    private Estado estado(Cuenta cuenta) {
+        Estado existente = estados.get(cuenta.getId());
+        if(existente != null) {
+            return existente;
+        }
+        Estado estado = new Estado(cuenta);
+        estados.put(cuenta.getId(), estado);
+        franja(cuenta).sumar(estado.saldo);
+        sumarPersona(estado.persona, estado.saldo);
+        actualizarTop(estado);
+        return estado;
+    }
+
+    private void cambiar(Estado estado, BigDecimal nuevo) {
+        BigDecimal anterior = estado.saldo;
+        estado.saldo = nuevo;
+        BigDecimal delta = nuevo.subtract(anterior);
+        franja(estado.cuenta).sumar(delta);
+        sumarPersona(estado.persona, delta);
+        actualizarTop(estado);
+    }
+
+    private void sumarPersona(String persona, BigDecimal delta) {
+        if(persona != null) {
+            totalesPorPersona.merge(persona, delta, BigDecimal::add);
+        }
+    }
+
+    private void actualizarTop(Estado estado) {
+        Entrada limite = umbral;
+        if(!estado.enTop && limite != null && fuera(estado, limite)) {
+            return;
+        }
+        synchronized (top) {
+            if(estado.enTop) {
+                top.remove(estado.entrada);
+                estado.enTop = false;
+            }
+            limite = umbral;
+            if(limite != null && fuera(estado, limite)) {
+                // Bajó hasta el umbral: sigue acotada por él, así que deja de ser candidata
+                return;
+            }
+            estado.entrada = new Entrada(estado.saldo, estado);
+            estado.enTop = true;
+            top.add(estado.entrada);
+            if(top.size() > maxCandidatas) {
+                // La descartada queda antes del umbral anterior, así que el umbral sólo sube
+                Entrada descartada = top.pollLast();
+                descartada.estado().enTop = false;
+                umbral = descartada;
+            }
+        }
+    }
+
+    // Se llama con el monitor de top tomado. El umbral puede quedar más bajo que antes, así que
+    // primero se anula: un cambio que lo leyó antes de esto ya es visible en el recorrido, y
+    // los que lleguen durante el recorrido esperan el monitor.
+    private void reconstruirTop() {
+        reconstrucciones++;
+        umbral = null;
+        PriorityQueue<Entrada> mejores = new PriorityQueue<>(maxCandidatas + 1, MAYOR_SALDO.reversed());
+        Entrada nuevoUmbral = null;
+        for(Estado estado : estados.values()) {
+            estado.enTop = false;
+            mejores.add(new Entrada(estado.saldo, estado));
+            if(mejores.size() > maxCandidatas) {
+                Entrada descartada = mejores.poll();
+                if(nuevoUmbral == null || MAYOR_SALDO.compare(descartada, nuevoUmbral) < 0) {
+                    nuevoUmbral = descartada;
+                }
+            }
+        }
+        top.clear();
+        for(Entrada entrada : mejores) {
+            entrada.estado().entrada = entrada;
+            entrada.estado().enTop = true;
+            top.add(entrada);
+        }
+        umbral = nuevoUmbral;
+    }
+
+    // true si con su saldo actual la cuenta queda en el ranking en el umbral o después
+    private static boolean fuera(Estado estado, Entrada umbral) {
+        int comparacion = estado.saldo.compareTo(umbral.saldo());
+        return comparacion < 0 || comparacion == 0 && estado.cuenta.getId() >= umbral.estado().cuenta.getId();
+    }
+
+    private Franja franja(Cuenta cuenta) {
+        return franjas[(int) (cuenta.getId() & (FRANJAS - 1))];
+    }
+
+    // Último saldo conocido de una cuenta; sólo lo modifican eventos de esa cuenta
+    private static final class Estado {
+        final Cuenta cuenta;
+        volatile BigDecimal saldo;
+        String persona;
+        // Protegidos por el monitor de top
+        volatile boolean enTop;
+        Entrada entrada;
+
+        Estado(Cuenta cuenta) {
+            this.cuenta = cuenta;
+            this.saldo = cuenta.getSaldo();
+            this.persona = cuenta.getPersona();
+        }
+    }
+
+    private record Entrada(BigDecimal saldo, Estado estado) {
+    }
+
+    private static final class Franja {
+        private BigDecimal total = BigDecimal.ZERO;
+
+        synchronized void sumar(BigDecimal delta) {
+            total = total.add(delta);
+        }
+
+        synchronized BigDecimal get() {
+            return total;
+        }
+
+        synchronized void reiniciar() {
+            total = BigDecimal.ZERO;
+        }
+    }
+}
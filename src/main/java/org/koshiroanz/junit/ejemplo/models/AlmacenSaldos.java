@@ -0,0 +1,31 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Almacenamiento alternativo para los saldos de un {@link Banco}. En lugar de que cada
+ * {@link Cuenta} tenga su propio saldo en el heap, el almacén guarda una fila por cuenta y el
+ * saldo de la cuenta opera sobre esa fila. La cuenta sigue siendo un objeto completo del heap.
+ */
+public interface AlmacenSaldos {
+    /**
+     * Agrega una fila con la persona y el saldo dados y devuelve el saldo respaldado por ella.
+     */
+    FilaSaldo agregar(long cuentaId, String persona, BigDecimal saldo);
+
+    // true si el saldo ya es una fila de este almacén (por ejemplo, una cuenta recuperada)
+    boolean contiene(Saldo saldo);
+
+    String getPersona(int fila);
+
+    // Lanza IllegalArgumentException si setPersona no podría guardar la persona; se llama antes
+    // de cambiar la persona de la cuenta
+    default void validarPersona(String persona) {
+    }
+
+    void setPersona(int fila, String persona);
+
+    int size();
+
+    BigDecimal saldoTotal();
+}
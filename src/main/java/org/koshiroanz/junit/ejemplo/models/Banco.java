@@ -1,17 +1,66 @@
 package org.koshiroanz.junit.ejemplo.models;
 
+import org.koshiroanz.junit.ejemplo.clearing.CamaraCompensacion;
+import org.koshiroanz.junit.ejemplo.metrics.Metricas;
+
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongSupplier;
 
 public class Banco {
+    // Desempata el orden de bloqueo de dos cuentas que ni el id ni la identidad distinguen
+    private static final Object DESEMPATE = new Object();
 
     private String nombre;
 
     private List<Cuenta> cuentas;
 
+    // Índices para búsquedas O(1); una persona puede ser titular de varias cuentas
+    private final Map<Long, Cuenta> cuentasPorId = new ConcurrentHashMap<>();
+    private final Map<String, List<Cuenta>> cuentasPorPersona = new ConcurrentHashMap<>();
+    // Ids dados de alta o en alta; se reservan antes de notificar para rechazar duplicados
+    private final Set<Long> ids = ConcurrentHashMap.newKeySet();
+
+    private final List<MovimientoListener> listeners = new CopyOnWriteArrayList<>();
+    // No cuentan en tieneListeners: no ponen débitos y créditos bajo el monitor
+    private final List<PersonaListener> listenersPersona = new CopyOnWriteArrayList<>();
+
+    private final Metricas metricas = new Metricas();
+
+    // null cuando cada cuenta guarda su propio saldo
+    private final AlmacenSaldos almacen;
+
+    // null mientras no se habiliten los agregados incrementales
+    private volatile AgregadosBanco agregados;
+
+    // Cámara por la que pasan las transferencias hacia cuentas de otros bancos, si la hay
+    private volatile CamaraCompensacion camara;
+
+    // null mientras no se habiliten las instantáneas consistentes
+    private volatile ControlInstantaneas instantaneas;
+
+    // null mientras no se habilite el historial de movimientos
+    private volatile RegistroHistorial historial;
+
+    // null mientras no se habiliten los límites de velocidad
+    private volatile ControlVelocidad velocidad;
+
     public Banco() {
-        cuentas = new ArrayList<>();
+        this(null);
+    }
+
+    public Banco(AlmacenSaldos almacen) {
+        this.cuentas = Collections.synchronizedList(new ArrayList<>());
+        this.almacen = almacen;
     }
 
     public String getNombre() {
@@ -28,15 +77,448 @@ public class Banco {
 
     public void setCuentas(List<Cuenta> cuentas) {
         this.cuentas = cuentas;
+        cuentasPorId.clear();
+        cuentasPorPersona.clear();
+        ids.clear();
+        cuentas.forEach(cuenta -> ids.add(cuenta.getId()));
+        cuentas.forEach(this::indexar);
+        if(agregados != null) {
+            agregados.reiniciar(cuentas);
+        }
     }
 
+    public AlmacenSaldos getAlmacen() {
+        return almacen;
+    }
+
+    // Lanza IllegalArgumentException si el banco ya tiene una cuenta con el mismo id
     public void addCuenta(Cuenta cuenta) {
+        if(!ids.add(cuenta.getId())) {
+            throw new IllegalArgumentException("La cuenta " + cuenta.getId() + " ya existe en el banco");
+        }
+        try {
+            if(almacen != null) {
+                cuenta.moverA(almacen);
+            }
+            // El alta se notifica antes de publicar la cuenta: si un listener falla (por ejemplo el
+            // journal) la cuenta no queda en el banco sin estar registrada
+            if(tieneListeners()) {
+                synchronized (cuenta) {
+                    listeners.forEach(l -> l.onAlta(cuenta));
+                }
+                confirmar(cuenta);
+            }
+        } catch(RuntimeException e) {
+            ids.remove(cuenta.getId());
+            throw e;
+        }
         this.cuentas.add(cuenta);
         cuenta.setBanco(this);
+        indexar(cuenta);
+        for(PersonaListener listener : listenersPersona) {
+            listener.onAlta(cuenta);
+        }
+    }
+
+    public CamaraCompensacion getCamara() {
+        return camara;
+    }
+
+    // Lo asigna CamaraCompensacion.registrarBanco
+    public void setCamara(CamaraCompensacion camara) {
+        this.camara = camara;
+    }
+
+    public Metricas getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Empieza a mantener los agregados del banco a partir de los saldos actuales. Si ya estaban
+     * habilitados devuelve los existentes. Las cuentas que se estén modificando en ese mismo
+     * momento podrían no reflejarse, así que conviene habilitarlos antes de operar.
+     */
+    public synchronized AgregadosBanco habilitarAgregados(int tamanoTop) {
+        if(agregados == null) {
+            AgregadosBanco nuevos = new AgregadosBanco(tamanoTop);
+            addListener(nuevos);
+            synchronized (cuentas) {
+                cuentas.forEach(nuevos::sembrar);
+            }
+            agregados = nuevos;
+        }
+        return agregados;
+    }
+
+    public Optional<AgregadosBanco> getAgregados() {
+        return Optional.ofNullable(agregados);
+    }
+
+    /**
+     * Hace que las escrituras registren su época para poder abrir instantáneas consistentes.
+     * A partir de aquí débitos y créditos toman el monitor de la cuenta. Las escrituras que ya
+     * estaban en curso no se registran, así que conviene habilitarlas antes de operar.
+     */
+    public synchronized void habilitarInstantaneas() {
+        if(instantaneas == null) {
+            instantaneas = new ControlInstantaneas();
+        }
+    }
+
+    public InstantaneaBanco abrirInstantanea() {
+        ControlInstantaneas instantaneas = this.instantaneas;
+        if(instantaneas == null) {
+            throw new IllegalStateException("Las instantáneas no están habilitadas");
+        }
+        return instantaneas.abrir(cuentas);
+    }
+
+    public void habilitarHistorial(int escala) {
+        habilitarHistorial(escala, 16, 256, System::currentTimeMillis);
+    }
+
+    /**
+     * Empieza a registrar los movimientos de cada cuenta en su {@link HistorialMovimientos},
+     * con los montos en la escala dada y el tiempo que devuelva el reloj. Cada cuenta conserva
+     * el detalle de hasta {@code maxBloques} bloques y resume los anteriores en a lo sumo
+     * {@code maxResumenes} tramos. Si ya estaba habilitado no hace nada.
+     */
+    public synchronized void habilitarHistorial(int escala, int maxBloques, int maxResumenes, LongSupplier reloj) {
+        if(historial == null) {
+            RegistroHistorial nuevo = new RegistroHistorial(escala, maxBloques, maxResumenes, reloj);
+            addListener(nuevo);
+            synchronized (cuentas) {
+                for(Cuenta cuenta : cuentas) {
+                    synchronized (cuenta) {
+                        nuevo.historial(cuenta);
+                    }
+                }
+            }
+            historial = nuevo;
+        }
+    }
+
+    public void habilitarLimites(LimiteVelocidad limite) {
+        habilitarLimites(limite, System::nanoTime);
+    }
+
+    /**
+     * Limita el monto y la cantidad de débitos de cada cuenta dentro de una ventana de tiempo,
+     * medido con el reloj dado en nanosegundos. Los débitos y transferencias que lo excedan se
+     * rechazan con {@link ResultadoOperacion#LIMITE_EXCEDIDO}. Reemplaza un límite anterior;
+     * los débitos ya contados siguen contando hasta que salen de la ventana.
+     */
+    public void habilitarLimites(LimiteVelocidad limite, LongSupplier relojNanos) {
+        velocidad = new ControlVelocidad(limite, relojNanos);
+    }
+
+    public Optional<LimiteVelocidad> getLimites() {
+        ControlVelocidad velocidad = this.velocidad;
+        return velocidad == null ? Optional.empty() : Optional.of(velocidad.getLimite());
+    }
+
+    public void addListener(MovimientoListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(MovimientoListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void addPersonaListener(PersonaListener listener) {
+        listenersPersona.add(listener);
+    }
+
+    public void removePersonaListener(PersonaListener listener) {
+        listenersPersona.remove(listener);
+    }
+
+    public Optional<Cuenta> findById(long id) {
+        return Optional.ofNullable(cuentasPorId.get(id));
     }
 
+    public Optional<Cuenta> findByPersona(String persona) {
+        List<Cuenta> titulares = cuentasPorPersona.get(persona);
+        return titulares == null || titulares.isEmpty() ? Optional.empty() : Optional.of(titulares.get(0));
+    }
+
+    public List<Cuenta> findAllByPersona(String persona) {
+        List<Cuenta> titulares = cuentasPorPersona.get(persona);
+        return titulares == null ? Collections.emptyList() : Collections.unmodifiableList(titulares);
+    }
+
+    // Con agregados la suma es O(1); con un almacén recorre sus columnas sin pasar por las cuentas
+    public BigDecimal saldoTotal() {
+        if(agregados != null) {
+            return agregados.saldoTotal();
+        }
+        if(almacen != null) {
+            return almacen.saldoTotal();
+        }
+        synchronized (cuentas) {
+            return cuentas.stream().map(Cuenta::getSaldo).reduce(BigDecimal.ZERO, BigDecimal::add);
+        }
+    }
+
+    // Lanza NotEnoughMoneyException o LimiteExcedidoException según el motivo del rechazo
     public void transferir(Cuenta origen, Cuenta destino, BigDecimal monto) {
-        origen.debito(monto);
-        destino.credito(monto);
+        ResultadoOperacion resultado = tryTransferir(origen, destino, monto);
+        if(!resultado.isExitosa()) {
+            throw resultado.error();
+        }
+    }
+
+    // Bloquea ambas cuentas siempre en el mismo orden (ver compararBloqueo) para que dos
+    // transferencias en sentidos opuestos no se bloqueen mutuamente. Un rechazo no lanza excepciones.
+    // Si las cuentas son de bancos distintos y hay una cámara, queda como obligación pendiente.
+    public ResultadoOperacion tryTransferir(Cuenta origen, Cuenta destino, BigDecimal monto) {
+        CamaraCompensacion camara = this.camara;
+        if(camara != null && origen.getBanco() != null && destino.getBanco() != null && origen.getBanco() != destino.getBanco()) {
+            return camara.transferir(origen, destino, monto);
+        }
+        return tryTransferirDirecto(origen, destino, monto);
+    }
+
+    /**
+     * Como {@link #tryTransferir} pero sin desviar a la cámara las transferencias hacia otro
+     * banco: mueve el saldo directamente, con el mismo bloqueo ordenado y el débito
+     * devuelto si el crédito falla. La usa {@link CamaraCompensacion} para la parte de clientes
+     * de una transferencia entre bancos, llamándola sobre el banco de origen.
+     */
+    public ResultadoOperacion tryTransferirDirecto(Cuenta origen, Cuenta destino, BigDecimal monto) {
+        int orden = compararBloqueo(origen, destino);
+        long inicio = metricas.iniciar();
+        ResultadoOperacion resultado;
+        if(orden != 0 || origen == destino) {
+            resultado = transferirBloqueando(origen, destino, monto, orden <= 0 ? origen : destino);
+        } else {
+            synchronized (DESEMPATE) {
+                resultado = transferirBloqueando(origen, destino, monto, origen);
+            }
+        }
+        if(!resultado.isExitosa()) {
+            return resultado;
+        }
+        origen.confirmar();
+        destino.confirmar();
+        metricas.registrarTransferencia(inicio);
+        return ResultadoOperacion.EXITOSA;
+    }
+
+    /**
+     * Orden global en que se toman los monitores de dos cuentas. Los ids sólo son únicos dentro
+     * de un banco (dos bancos recuperados o importados pueden tener cada uno su cuenta 1), así
+     * que a igual id decide {@link System#identityHashCode}. Devuelve 0 para cuentas distintas
+     * sólo si también empatan ahí; en ese caso hay que tomar antes {@code DESEMPATE}.
+     */
+    private static int compararBloqueo(Cuenta a, Cuenta b) {
+        int orden = Long.compare(a.getId(), b.getId());
+        return orden != 0 ? orden : Integer.compare(System.identityHashCode(a), System.identityHashCode(b));
+    }
+
+    private ResultadoOperacion transferirBloqueando(Cuenta origen, Cuenta destino, BigDecimal monto, Cuenta primera) {
+        Cuenta segunda = primera == origen ? destino : origen;
+        ControlInstantaneas instantaneas = this.instantaneas;
+        // Si el destino es de otro banco, cada pata entra a la época de su propio banco
+        Banco bancoDestino = destino.getBanco();
+        ControlInstantaneas instantaneasDestino = bancoDestino == null || bancoDestino == this ? null : bancoDestino.instantaneas;
+        synchronized (primera) {
+            synchronized (segunda) {
+                // Ambas patas en la misma época, para que ninguna instantánea las vea por separado
+                long epoca;
+                long epocaDestino = 0;
+                if(instantaneasDestino == null) {
+                    epoca = instantaneas == null ? 0 : instantaneas.entrar(origen, destino);
+                } else {
+                    epoca = instantaneas == null ? 0 : instantaneas.entrar(origen);
+                    epocaDestino = instantaneasDestino.entrar(destino);
+                }
+                try {
+                    // Un monto que el destino no puede representar o registrar se rechaza antes de debitar
+                    destino.validarMonto(monto);
+                    ResultadoOperacion resultado = origen.intentarDebito(monto, destino);
+                    if(!resultado.isExitosa()) {
+                        return resultado;
+                    }
+                    try {
+                        destino.aplicarCredito(monto, origen);
+                    } catch(RuntimeException e) {
+                        // Si el crédito falla igual (por ejemplo el journal), se devuelve el débito
+                        try {
+                            origen.devolverDebito(monto, destino);
+                        } catch(RuntimeException s) {
+                            e.addSuppressed(s);
+                        }
+                        throw e;
+                    }
+                    return ResultadoOperacion.EXITOSA;
+                } finally {
+                    if(instantaneas != null) {
+                        instantaneas.salir(epoca);
+                    }
+                    if(instantaneasDestino != null) {
+                        instantaneasDestino.salir(epocaDestino);
+                    }
+                }
+            }
+        }
+    }
+
+    // Las transferencias que comparten cuentas se aplican en el orden recibido; las que no
+    // comparten ninguna se ejecutan en paralelo. Los errores se informan por transferencia.
+    public List<TransferResult> transferirBatch(List<Transfer> transferencias) {
+        return transferirBatch(transferencias, ForkJoinPool.commonPool());
+    }
+
+    public List<TransferResult> transferirBatch(List<Transfer> transferencias, ForkJoinPool pool) {
+        return new LoteTransferencias(this, transferencias).ejecutar(pool);
+    }
+
+    void reindexarPersona(Cuenta cuenta, String personaAnterior) {
+        if(almacen != null && cuenta.getSaldoInterno() instanceof FilaSaldo fila) {
+            almacen.setPersona(fila.getFila(), cuenta.getPersona());
+        }
+        if(personaAnterior != null) {
+            cuentasPorPersona.computeIfPresent(personaAnterior, (persona, titulares) -> {
+                titulares.removeIf(c -> c == cuenta);
+                return titulares.isEmpty() ? null : titulares;
+            });
+        }
+        indexarPersona(cuenta);
+    }
+
+    private void indexarPersona(Cuenta cuenta) {
+        if(cuenta.getPersona() != null) {
+            cuentasPorPersona.compute(cuenta.getPersona(), (persona, titulares) -> {
+                List<Cuenta> actualizados = titulares == null ? new CopyOnWriteArrayList<>() : titulares;
+                actualizados.add(cuenta);
+                return actualizados;
+            });
+        }
+    }
+
+    ControlVelocidad getControlVelocidad() {
+        return velocidad;
+    }
+
+    ControlInstantaneas getControlInstantaneas() {
+        return instantaneas;
+    }
+
+    boolean tieneListeners() {
+        return !listeners.isEmpty();
+    }
+
+    void prepararMovimiento(Cuenta cuenta, BigDecimal monto) {
+        for(MovimientoListener listener : listeners) {
+            listener.antesDeMovimiento(cuenta, monto);
+        }
+    }
+
+    void prepararSaldo(Cuenta cuenta, BigDecimal nuevo) {
+        for(MovimientoListener listener : listeners) {
+            listener.antesDeSaldo(cuenta, nuevo);
+        }
+    }
+
+    // También valida la persona contra el almacén, que la guarda en la fila de la cuenta
+    void prepararPersona(Cuenta cuenta, String nueva) {
+        if(almacen != null && cuenta.getSaldoInterno() instanceof FilaSaldo) {
+            almacen.validarPersona(nueva);
+        }
+        for(MovimientoListener listener : listeners) {
+            listener.antesDePersona(cuenta, nueva);
+        }
+    }
+
+    // Si un listener falla, el débito ya aplicado se deshace: el saldo vuelve atrás y los
+    // listeners que ya lo vieron reciben deshacerDebito, así ninguno queda con un movimiento
+    // que no ocurrió. Se llama con el monitor de la cuenta tomado.
+    void notificarDebito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        ListIterator<MovimientoListener> notificados = listeners.listIterator();
+        try {
+            while(notificados.hasNext()) {
+                notificados.next().onDebito(cuenta, monto, contraparte);
+            }
+        } catch(RuntimeException e) {
+            cuenta.getSaldoInterno().credito(monto);
+            notificados.previous();
+            while(notificados.hasPrevious()) {
+                try {
+                    notificados.previous().deshacerDebito(cuenta, monto, contraparte);
+                } catch(RuntimeException s) {
+                    e.addSuppressed(s);
+                }
+            }
+            throw e;
+        }
+    }
+
+    // Como notificarDebito. Con listeners toda escritura toma el monitor de la cuenta, así que
+    // el débito que deshace el crédito siempre alcanza.
+    void notificarCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        ListIterator<MovimientoListener> notificados = listeners.listIterator();
+        try {
+            while(notificados.hasNext()) {
+                notificados.next().onCredito(cuenta, monto, contraparte);
+            }
+        } catch(RuntimeException e) {
+            cuenta.getSaldoInterno().tryDebito(monto);
+            notificados.previous();
+            while(notificados.hasPrevious()) {
+                try {
+                    notificados.previous().deshacerCredito(cuenta, monto, contraparte);
+                } catch(RuntimeException s) {
+                    e.addSuppressed(s);
+                }
+            }
+            throw e;
+        }
+    }
+
+    // La devolución de un débito no se deshace: se notifica a todos los listeners aunque alguno
+    // falle, y después se lanza el primer error
+    void notificarDevolucion(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        RuntimeException error = null;
+        for(MovimientoListener listener : listeners) {
+            try {
+                listener.onCredito(cuenta, monto, contraparte);
+            } catch(RuntimeException e) {
+                if(error == null) {
+                    error = e;
+                } else {
+                    error.addSuppressed(e);
+                }
+            }
+        }
+        if(error != null) {
+            throw error;
+        }
+    }
+
+    void notificarSaldo(Cuenta cuenta, BigDecimal anterior, BigDecimal nuevo) {
+        for(MovimientoListener listener : listeners) {
+            listener.onSaldo(cuenta, anterior, nuevo);
+        }
+    }
+
+    void notificarPersona(Cuenta cuenta, String anterior) {
+        for(MovimientoListener listener : listeners) {
+            listener.onPersona(cuenta, anterior);
+        }
+        for(PersonaListener listener : listenersPersona) {
+            listener.onPersona(cuenta, anterior);
+        }
+    }
+
+    void confirmar(Cuenta cuenta) {
+        for(MovimientoListener listener : listeners) {
+            listener.confirmar(cuenta);
+        }
+    }
+
+    private void indexar(Cuenta cuenta) {
+        cuentasPorId.put(cuenta.getId(), cuenta);
+        indexarPersona(cuenta);
     }
 }
@@ -0,0 +1,96 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Épocas de escritura de un {@link Banco} con instantáneas habilitadas. Cada escritura entra
+ * a la época vigente con el monitor de sus cuentas tomado y, si hay instantáneas con un corte
+ * anterior, les guarda el saldo previo de la cuenta la primera vez que la modifica.
+ *
+ * <p>Abrir una instantánea avanza la época y espera a que terminen las escrituras de la época
+ * anterior; las escrituras nunca esperan a los lectores. Los contadores de escrituras en curso
+ * están repartidos por hilo para no competir por una misma línea de caché.
+ */
+final class ControlInstantaneas {
+    private static final int SEPARACION = 16;
+    private static final int CELDAS = 32;
+
+    // Los hilos reciben números consecutivos, así se reparten parejo entre las celdas
+    private static final AtomicInteger SIGUIENTE_HILO = new AtomicInteger();
+    private static final ThreadLocal<Integer> HILO = ThreadLocal.withInitial(SIGUIENTE_HILO::getAndIncrement);
+
+    private volatile long epoca;
+    // Escrituras en curso por paridad de época y por hilo
+    private final AtomicLongArray enCurso = new AtomicLongArray(2 * CELDAS * SEPARACION);
+
+    private final List<InstantaneaBanco> abiertas = new CopyOnWriteArrayList<>();
+
+    /**
+     * Entra a la época vigente y captura el saldo previo de las cuentas para las instantáneas
+     * que lo necesiten. Debe llamarse con el monitor de las cuentas tomado.
+     */
+    long entrar(Cuenta cuenta) {
+        long actual = entrar();
+        capturar(cuenta, actual);
+        return actual;
+    }
+
+    long entrar(Cuenta origen, Cuenta destino) {
+        long actual = entrar();
+        capturar(origen, actual);
+        capturar(destino, actual);
+        return actual;
+    }
+
+    void salir(long epoca) {
+        enCurso.decrementAndGet(celda(epoca));
+    }
+
+    // Los lectores se serializan entre sí, pero nunca bloquean a las escrituras
+    synchronized InstantaneaBanco abrir(List<Cuenta> cuentas) {
+        long corte = epoca;
+        InstantaneaBanco instantanea = new InstantaneaBanco(this, corte, cuentas, cuentas.size());
+        abiertas.add(instantanea);
+        epoca = corte + 1;
+        int base = (int) (corte & 1) * CELDAS * SEPARACION;
+        for(int i = 0; i < CELDAS; i++) {
+            while(enCurso.get(base + i * SEPARACION) != 0) {
+                Thread.onSpinWait();
+            }
+        }
+        return instantanea;
+    }
+
+    void cerrar(InstantaneaBanco instantanea) {
+        abiertas.remove(instantanea);
+    }
+
+    private long entrar() {
+        while(true) {
+            long actual = epoca;
+            int celda = celda(actual);
+            enCurso.incrementAndGet(celda);
+            if(epoca == actual) {
+                return actual;
+            }
+            enCurso.decrementAndGet(celda);
+        }
+    }
+
+    private void capturar(Cuenta cuenta, long actual) {
+        for(InstantaneaBanco instantanea : abiertas) {
+            if(instantanea.corte < actual) {
+                instantanea.capturar(cuenta);
+            }
+        }
+    }
+
+    // El mismo hilo siempre usa la misma celda para una paridad de época
+    private static int celda(long epoca) {
+        int indice = HILO.get() & (CELDAS - 1);
+        return ((int) (epoca & 1) * CELDAS + indice) * SEPARACION;
+    }
+}
@@ -0,0 +1,125 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.function.LongSupplier;
+
+/**
+ * Aplica un {@link LimiteVelocidad} a los débitos de las cuentas de un banco. Cada cuenta lleva
+ * {@link #CUBETAS} cubetas de un séptimo de la ventana (redondeado hacia arriba), en un único {@code long[]}
+ * que se reserva la primera vez que la cuenta debita y después no vuelve a pedir memoria; el
+ * arreglo cuelga directo de la cuenta y es su propio lock, para no sumar otra indirección. Una
+ * cubeta guarda su número de cubeta y la cantidad de débitos empaquetados en un long, y el monto
+ * en unidades en el siguiente.
+ *
+ * <p>La ventana avanza de a una cubeta: un débito cuenta en su cubeta y en las
+ * {@code CUBETAS - 1} siguientes, que suman al menos {@code ventana} desde cualquier instante
+ * de su cubeta y a lo sumo {@code ventana} más una cubeta. El límite es conservador: nunca
+ * permite más de lo configurado dentro de una ventana, aunque puede rechazar hasta un octavo
+ * de ventana de más.
+ */
+class ControlVelocidad {
+    static final int CUBETAS = 8;
+    static final int CANTIDAD_MAXIMA = (1 << 24) - 1;
+
+    private static final int BITS_CANTIDAD = 24;
+    private static final long MASCARA_NUMERO = (1L << (Long.SIZE - BITS_CANTIDAD)) - 1;
+
+    private final LimiteVelocidad limite;
+    private final LongSupplier reloj;
+    private final long anchoCubeta;
+    private final int escala;
+    private final long montoMaximo;
+
+    ControlVelocidad(LimiteVelocidad limite, LongSupplier reloj) {
+        this.limite = limite;
+        this.reloj = reloj;
+        // Las CUBETAS - 1 cubetas posteriores a la del débito tienen que cubrir la ventana entera
+        this.anchoCubeta = Math.max(1, (limite.ventana().toNanos() + CUBETAS - 2) / (CUBETAS - 1));
+        this.escala = Math.max(0, limite.montoMaximo().scale());
+        this.montoMaximo = limite.montoMaximo().movePointRight(escala).longValueExact();
+    }
+
+    LimiteVelocidad getLimite() {
+        return limite;
+    }
+
+    // Número de cubeta del instante actual; nanoTime puede ser negativo, y las cubetas se comparan módulo 2^40
+    long ahora() {
+        return Math.floorDiv(reloj.getAsLong(), anchoCubeta);
+    }
+
+    long unidades(BigDecimal monto) {
+        return monto.movePointRight(escala).setScale(0, RoundingMode.CEILING).longValueExact();
+    }
+
+    /**
+     * Cuenta el débito en la ventana de la cuenta si entra en el límite. Devuelve false sin
+     * modificar nada si lo excede.
+     */
+    boolean reservar(Cuenta cuenta, long unidades, long cubeta) {
+        long[] ventana = cuenta.getVentanaVelocidad();
+        if(ventana == null) {
+            ventana = crearVentana(cuenta);
+        }
+        int cantidadMaxima = limite.cantidadMaxima();
+        synchronized (ventana) {
+            long monto = 0;
+            long cantidad = 0;
+            for(int i = 0; i < CUBETAS * 2; i += 2) {
+                long cabecera = ventana[i];
+                if(vigente(cabecera, cubeta)) {
+                    cantidad += cabecera & CANTIDAD_MAXIMA;
+                    monto += ventana[i + 1];
+                }
+            }
+            if(cantidad >= cantidadMaxima || unidades > montoMaximo - monto) {
+                return false;
+            }
+            int i = posicion(cubeta);
+            long numero = cubeta & MASCARA_NUMERO;
+            if(ventana[i] >>> BITS_CANTIDAD != numero) {
+                ventana[i] = numero << BITS_CANTIDAD;
+                ventana[i + 1] = 0;
+            }
+            ventana[i]++;
+            ventana[i + 1] += unidades;
+            return true;
+        }
+    }
+
+    // Deshace una reserva cuyo débito se rechazó después por falta de fondos
+    void liberar(Cuenta cuenta, long unidades, long cubeta) {
+        long[] ventana = cuenta.getVentanaVelocidad();
+        int i = posicion(cubeta);
+        synchronized (ventana) {
+            // Si la cubeta ya se reutilizó para otro período, la reserva ya no cuenta
+            if(ventana[i] >>> BITS_CANTIDAD == (cubeta & MASCARA_NUMERO)) {
+                ventana[i]--;
+                ventana[i + 1] -= unidades;
+            }
+        }
+    }
+
+    // Para cada cubeta i: [2i] = número de cubeta << 24 | cantidad, [2i + 1] = monto en unidades.
+    // Las cubetas sin usar tienen cantidad y monto 0, así que no importa si parecen vigentes.
+    private static long[] crearVentana(Cuenta cuenta) {
+        synchronized (cuenta) {
+            long[] ventana = cuenta.getVentanaVelocidad();
+            if(ventana == null) {
+                ventana = new long[CUBETAS * 2];
+                cuenta.setVentanaVelocidad(ventana);
+            }
+            return ventana;
+        }
+    }
+
+    private static int posicion(long cubeta) {
+        return (int) (cubeta & (CUBETAS - 1)) * 2;
+    }
+
+    // Vigente si es la cubeta actual o una de las CUBETAS - 1 anteriores
+    private static boolean vigente(long cabecera, long cubeta) {
+        return ((cubeta - (cabecera >>> BITS_CANTIDAD)) & MASCARA_NUMERO) < CUBETAS;
+    }
+}
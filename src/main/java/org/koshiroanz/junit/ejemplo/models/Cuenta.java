@@ -1,34 +1,100 @@
 package org.koshiroanz.junit.ejemplo.models;
 
-import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
-
 import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Cuenta {
+    private static final AtomicLong SECUENCIA = new AtomicLong();
+
+    // Único dentro de un banco; también ordena el bloqueo en las transferencias (ver Banco.compararBloqueo)
+    private final long id;
+
     private String persona;
-    private BigDecimal saldo;
+    private volatile Saldo saldo;
 
     private Banco banco;
 
+    // null mientras el banco no tenga el historial habilitado
+    private volatile HistorialMovimientos historial;
+
+    // Débitos recientes, si el banco tiene límites de velocidad y la cuenta ya debitó
+    private volatile long[] ventanaVelocidad;
+
     public Cuenta(String persona, BigDecimal saldo) {
+        this(persona, new SaldoDecimal(saldo));
+    }
+
+    public Cuenta(String persona, Saldo saldo) {
+        this(SECUENCIA.incrementAndGet(), persona, saldo);
+    }
+
+    // Para cuentas recuperadas desde un almacenamiento persistente, que conservan su id. El
+    // banco rechaza un id repetido en addCuenta.
+    public Cuenta(long id, String persona, Saldo saldo) {
+        SECUENCIA.accumulateAndGet(id, Math::max);
+        this.id = id;
         this.persona = persona;
         this.saldo = saldo;
     }
 
+    public long getId() {
+        return id;
+    }
+
     public String getPersona() {
         return persona;
     }
 
     public void setPersona(String persona) {
-        this.persona = persona;
+        String anterior;
+        synchronized (this) {
+            if(banco != null) {
+                banco.prepararPersona(this, persona);
+            }
+            anterior = this.persona;
+            this.persona = persona;
+            if(banco != null) {
+                banco.reindexarPersona(this, anterior);
+                banco.notificarPersona(this, anterior);
+            }
+        }
+        confirmar();
     }
 
     public BigDecimal getSaldo() {
-        return saldo;
+        return saldo.get();
     }
 
     public void setSaldo(BigDecimal saldo) {
-        this.saldo = saldo;
+        ControlInstantaneas instantaneas = instantaneas();
+        if(instantaneas != null) {
+            synchronized (this) {
+                long epoca = instantaneas.entrar(this);
+                try {
+                    aplicarSaldo(saldo);
+                } finally {
+                    instantaneas.salir(epoca);
+                }
+            }
+        } else {
+            aplicarSaldo(saldo);
+        }
+        confirmar();
+    }
+
+    private void aplicarSaldo(BigDecimal saldo) {
+        Banco banco = this.banco;
+        if(banco == null || !banco.tieneListeners()) {
+            this.saldo.set(saldo);
+            return;
+        }
+        synchronized (this) {
+            banco.prepararSaldo(this, saldo);
+            BigDecimal anterior = this.saldo.get();
+            this.saldo.set(saldo);
+            banco.notificarSaldo(this, anterior, saldo);
+        }
     }
 
     public Banco getBanco() {
@@ -39,17 +105,215 @@ public class Cuenta {
         this.banco = banco;
     }
 
+    public Optional<HistorialMovimientos> getHistorial() {
+        return Optional.ofNullable(historial);
+    }
+
+    // Lanza NotEnoughMoneyException o, si el banco tiene límites de velocidad, LimiteExcedidoException
     public void debito(BigDecimal monto) {
-        BigDecimal newBalance = this.saldo.subtract(monto);
-        if(newBalance.compareTo(BigDecimal.ZERO) < 0) {
-            throw new NotEnoughMoneyException("Not enough money");
+        ResultadoOperacion resultado = tryDebito(monto);
+        if(!resultado.isExitosa()) {
+            throw resultado.error();
         }
+    }
+
+    // Como debito, pero informa el rechazo con el resultado en lugar de lanzar una excepción
+    public ResultadoOperacion tryDebito(BigDecimal monto) {
+        return tryDebito(monto, true);
+    }
+
+    // Débito de una liquidación entre bancos (lo usa CamaraCompensacion): no cuenta en los
+    // límites de velocidad, que son para los débitos de los clientes
+    public ResultadoOperacion tryDebitoLiquidacion(BigDecimal monto) {
+        return tryDebito(monto, false);
+    }
 
-        this.saldo = newBalance;
+    private ResultadoOperacion tryDebito(BigDecimal monto, boolean limitar) {
+        ControlInstantaneas instantaneas = instantaneas();
+        ResultadoOperacion resultado;
+        if(instantaneas != null) {
+            synchronized (this) {
+                long epoca = instantaneas.entrar(this);
+                try {
+                    resultado = intentarDebito(monto, null, limitar);
+                } finally {
+                    instantaneas.salir(epoca);
+                }
+            }
+        } else {
+            resultado = intentarDebito(monto, null, limitar);
+        }
+        if(resultado.isExitosa()) {
+            confirmar();
+        }
+        return resultado;
     }
 
     public void credito(BigDecimal monto) {
-        this.saldo = saldo.add(monto);
+        ControlInstantaneas instantaneas = instantaneas();
+        if(instantaneas != null) {
+            synchronized (this) {
+                long epoca = instantaneas.entrar(this);
+                try {
+                    aplicarCredito(monto, null);
+                } finally {
+                    instantaneas.salir(epoca);
+                }
+            }
+        } else {
+            aplicarCredito(monto, null);
+        }
+        confirmar();
+    }
+
+    void aplicarDebito(BigDecimal monto, Cuenta contraparte) {
+        ResultadoOperacion resultado = intentarDebito(monto, contraparte);
+        if(!resultado.isExitosa()) {
+            throw resultado.error();
+        }
+    }
+
+    // Sin listeners en el banco el saldo se actualiza sin tomar el monitor de la cuenta.
+    // Con límites de velocidad el débito se reserva en la ventana antes de tocar el saldo y se
+    // libera si después falta saldo, así dos débitos concurrentes no pueden pasar juntos el límite.
+    ResultadoOperacion intentarDebito(BigDecimal monto, Cuenta contraparte) {
+        return intentarDebito(monto, contraparte, true);
+    }
+
+    private ResultadoOperacion intentarDebito(BigDecimal monto, Cuenta contraparte, boolean limitar) {
+        Banco banco = this.banco;
+        if(banco == null) {
+            return saldo.tryDebito(monto) ? ResultadoOperacion.EXITOSA : ResultadoOperacion.SIN_FONDOS;
+        }
+        ControlVelocidad velocidad = limitar ? banco.getControlVelocidad() : null;
+        long unidades = 0;
+        long cubeta = 0;
+        if(velocidad != null) {
+            unidades = velocidad.unidades(monto);
+            cubeta = velocidad.ahora();
+            if(!velocidad.reservar(this, unidades, cubeta)) {
+                banco.getMetricas().registrarRechazo();
+                return ResultadoOperacion.LIMITE_EXCEDIDO;
+            }
+        }
+        boolean debitado;
+        try {
+            if(!banco.tieneListeners()) {
+                debitado = saldo.tryDebito(monto);
+            } else {
+                synchronized (this) {
+                    banco.prepararMovimiento(this, monto);
+                    debitado = saldo.tryDebito(monto);
+                    if(debitado) {
+                        // Si un listener falla, notificarDebito deshace el débito
+                        banco.notificarDebito(this, monto, contraparte);
+                    }
+                }
+            }
+        } catch(RuntimeException e) {
+            if(velocidad != null) {
+                velocidad.liberar(this, unidades, cubeta);
+            }
+            throw e;
+        }
+        if(debitado) {
+            banco.getMetricas().registrarDebito();
+            return ResultadoOperacion.EXITOSA;
+        }
+        if(velocidad != null) {
+            velocidad.liberar(this, unidades, cubeta);
+        }
+        banco.getMetricas().registrarRechazo();
+        return ResultadoOperacion.SIN_FONDOS;
+    }
+
+    void aplicarCredito(BigDecimal monto, Cuenta contraparte) {
+        Banco banco = this.banco;
+        if(banco == null) {
+            saldo.credito(monto);
+            return;
+        }
+        if(!banco.tieneListeners()) {
+            saldo.credito(monto);
+        } else {
+            synchronized (this) {
+                banco.prepararMovimiento(this, monto);
+                saldo.credito(monto);
+                banco.notificarCredito(this, monto, contraparte);
+            }
+        }
+        banco.getMetricas().registrarCredito();
+    }
+
+    // Devuelve el débito de una transferencia que no se completó. A diferencia de aplicarCredito,
+    // el saldo queda restituido aunque falle un listener, para que el dinero no se pierda.
+    void devolverDebito(BigDecimal monto, Cuenta contraparte) {
+        Banco banco = this.banco;
+        if(banco == null || !banco.tieneListeners()) {
+            saldo.credito(monto);
+            return;
+        }
+        synchronized (this) {
+            saldo.credito(monto);
+            banco.notificarDevolucion(this, monto, contraparte);
+        }
+    }
+
+    // Lanza ArithmeticException si el saldo de la cuenta no puede representar el monto, o la
+    // excepción del listener que no podría registrar el movimiento
+    void validarMonto(BigDecimal monto) {
+        saldo.validar(monto);
+        Banco banco = this.banco;
+        if(banco != null && banco.tieneListeners()) {
+            synchronized (this) {
+                banco.prepararMovimiento(this, monto);
+            }
+        }
+    }
+
+    // Con instantáneas habilitadas cada escritura entra a una época con el monitor tomado
+    private ControlInstantaneas instantaneas() {
+        Banco banco = this.banco;
+        return banco == null ? null : banco.getControlInstantaneas();
+    }
+
+    HistorialMovimientos getHistorialInterno() {
+        return historial;
+    }
+
+    void setHistorial(HistorialMovimientos historial) {
+        this.historial = historial;
+    }
+
+    long[] getVentanaVelocidad() {
+        return ventanaVelocidad;
+    }
+
+    void setVentanaVelocidad(long[] ventanaVelocidad) {
+        this.ventanaVelocidad = ventanaVelocidad;
+    }
+
+    Saldo getSaldoInterno() {
+        return saldo;
+    }
+
+    // Copia el saldo a una fila del almacén y pasa a operar sobre ella
+    void moverA(AlmacenSaldos almacen) {
+        synchronized (this) {
+            if(almacen.contiene(saldo)) {
+                return;
+            }
+            FilaSaldo fila = almacen.agregar(id, persona, saldo.get());
+            this.persona = almacen.getPersona(fila.getFila());
+            this.saldo = fila;
+        }
+    }
+
+    void confirmar() {
+        Banco banco = this.banco;
+        if(banco != null && banco.tieneListeners()) {
+            banco.confirmar(this);
+        }
     }
 
     @Override
@@ -59,10 +323,11 @@ public class Cuenta {
         }
 
         Cuenta c = (Cuenta) obj;
-        if(this.persona == null || this.saldo == null) {
+        BigDecimal saldo = this.getSaldo();
+        if(this.persona == null || saldo == null) {
             return false;
         }
 
-        return this.persona.equals(c.getPersona()) && this.saldo.equals(c.getSaldo());
+        return this.persona.equals(c.getPersona()) && saldo.equals(c.getSaldo());
     }
 }
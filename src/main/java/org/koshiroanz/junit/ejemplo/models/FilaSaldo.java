@@ -0,0 +1,8 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+/**
+ * {@link Saldo} guardado en una fila de un {@link AlmacenSaldos}.
+ */
+public interface FilaSaldo extends Saldo {
+    int getFila();
+}
@@ -0,0 +1,277 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Historial de movimientos de una cuenta, sólo de agregado. Los movimientos se guardan en
+ * bloques de arreglos primitivos (tiempo, monto en unidades de la escala y contraparte) y los
+ * tiempos no decrecen, así que los rangos se ubican con búsqueda binaria. Un bloque nuevo
+ * empieza con lugar para {@link #TAMANO_INICIAL} movimientos y duplica sus arreglos hasta
+ * {@link #TAMANO_BLOQUE}, así una cuenta con pocos movimientos no reserva un bloque entero.
+ *
+ * <p>La memoria está acotada en dos niveles: cuando hay más de {@code maxBloques} bloques con
+ * detalle, el más viejo se compacta en un resumen (créditos, débitos y cantidad de su tramo de
+ * tiempo); cuando hay más de {@code maxResumenes} resúmenes, se fusionan de a pares. Las
+ * consultas paginadas sólo devuelven movimientos con detalle; {@link #resumir} también
+ * incluye los tramos compactados.
+ */
+public class HistorialMovimientos {
+    public static final int TAMANO_BLOQUE = 1024;
+    public static final int TAMANO_INICIAL = 16;
+
+    private final int escala;
+    private final int maxBloques;
+    private final int maxResumenes;
+
+    // Protegidos por el monitor del historial
+    private final ArrayList<Bloque> bloques = new ArrayList<>();
+    private final ArrayDeque<Bloque> libres = new ArrayDeque<>();
+    private long cantidad;
+    private long ultimoTiempo = Long.MIN_VALUE;
+
+    private long[] resumenInicio = new long[8];
+    private long[] resumenFin = new long[8];
+    private long[] resumenCreditos = new long[8];
+    private long[] resumenDebitos = new long[8];
+    private long[] resumenCantidad = new long[8];
+    private int resumenes;
+
+    public HistorialMovimientos(int escala, int maxBloques, int maxResumenes) {
+        if(maxBloques < 1 || maxResumenes < 2) {
+            throw new IllegalArgumentException("Se necesita al menos un bloque y dos resúmenes");
+        }
+        this.escala = escala;
+        this.maxBloques = maxBloques;
+        this.maxResumenes = maxResumenes;
+    }
+
+    public int getEscala() {
+        return escala;
+    }
+
+    // Movimientos registrados desde el inicio, incluidos los compactados
+    public synchronized long getCantidad() {
+        return cantidad;
+    }
+
+    // Índice del movimiento más viejo que conserva su detalle
+    public synchronized long getPrimerDetalle() {
+        return bloques.isEmpty() ? cantidad : bloques.get(0).primerIndice;
+    }
+
+    /**
+     * Agrega un movimiento. Si el tiempo es anterior al último registrado se toma el último,
+     * para que el historial quede ordenado aunque el reloj retroceda.
+     */
+    public synchronized void registrar(long tiempo, long unidades, long contraparte) {
+        ultimoTiempo = Math.max(ultimoTiempo, tiempo);
+        Bloque bloque = bloques.isEmpty() ? null : bloques.get(bloques.size() - 1);
+        if(bloque == null || bloque.tamano == TAMANO_BLOQUE) {
+            if(bloques.size() == maxBloques) {
+                compactar(bloques.remove(0));
+            }
+            bloque = libres.isEmpty() ? new Bloque() : libres.poll();
+            bloque.primerIndice = cantidad;
+            bloque.tamano = 0;
+            bloques.add(bloque);
+        }
+        int i = bloque.tamano;
+        if(i == bloque.tiempos.length) {
+            bloque.crecer();
+        }
+        bloque.tiempos[i] = ultimoTiempo;
+        bloque.montos[i] = unidades;
+        bloque.contrapartes[i] = contraparte;
+        bloque.tamano = i + 1;
+        cantidad++;
+    }
+
+    /**
+     * Quita el último movimiento registrado, que siempre conserva su detalle. Lo usa
+     * {@link RegistroHistorial} cuando un movimiento se deshace después de registrarlo.
+     */
+    synchronized void descartarUltimo() {
+        if(bloques.isEmpty()) {
+            return;
+        }
+        Bloque bloque = bloques.get(bloques.size() - 1);
+        bloque.tamano--;
+        cantidad--;
+        if(bloque.tamano == 0) {
+            libres.push(bloques.remove(bloques.size() - 1));
+        }
+    }
+
+    /**
+     * Movimientos con detalle en [desde, hasta), empezando por el cursor (0 para el primero).
+     * Devuelve a lo sumo {@code limite} movimientos, que debe ser positivo.
+     */
+    public synchronized PaginaMovimientos consultar(long desde, long hasta, long cursor, int limite) {
+        if(limite < 1) {
+            throw new IllegalArgumentException("El límite debe ser positivo: " + limite);
+        }
+        List<Movimiento> movimientos = new ArrayList<>(Math.min(limite, TAMANO_BLOQUE));
+        long indice = Math.max(cursor, primerIndiceDesde(desde));
+        int b = bloqueDe(indice);
+        while(b < bloques.size()) {
+            Bloque bloque = bloques.get(b);
+            for(int i = (int) (indice - bloque.primerIndice); i < bloque.tamano; i++, indice++) {
+                if(bloque.tiempos[i] >= hasta) {
+                    return new PaginaMovimientos(movimientos, -1);
+                }
+                if(movimientos.size() == limite) {
+                    return new PaginaMovimientos(movimientos, indice);
+                }
+                movimientos.add(new Movimiento(indice, bloque.tiempos[i], BigDecimal.valueOf(bloque.montos[i], escala),
+                        bloque.contrapartes[i]));
+            }
+            b++;
+        }
+        return new PaginaMovimientos(movimientos, -1);
+    }
+
+    public synchronized ResumenMovimientos resumir(long desde, long hasta) {
+        long creditos = 0;
+        long debitos = 0;
+        long movimientos = 0;
+        boolean exacto = true;
+        for(int r = 0; r < resumenes; r++) {
+            if(resumenFin[r] < desde || resumenInicio[r] >= hasta) {
+                continue;
+            }
+            exacto &= resumenInicio[r] >= desde && resumenFin[r] < hasta;
+            creditos += resumenCreditos[r];
+            debitos += resumenDebitos[r];
+            movimientos += resumenCantidad[r];
+        }
+        long indice = primerIndiceDesde(desde);
+        for(int b = bloqueDe(indice); b < bloques.size(); b++) {
+            Bloque bloque = bloques.get(b);
+            for(int i = (int) Math.max(0, indice - bloque.primerIndice); i < bloque.tamano && bloque.tiempos[i] < hasta; i++) {
+                if(bloque.montos[i] >= 0) {
+                    creditos += bloque.montos[i];
+                } else {
+                    debitos -= bloque.montos[i];
+                }
+                movimientos++;
+            }
+        }
+        return new ResumenMovimientos(BigDecimal.valueOf(creditos, escala), BigDecimal.valueOf(debitos, escala), movimientos, exacto);
+    }
+
+    // Índice absoluto del primer movimiento con detalle y tiempo >= desde
+    private long primerIndiceDesde(long desde) {
+        // Primer bloque cuyo último tiempo alcanza "desde"
+        int bajo = 0;
+        int alto = bloques.size();
+        while(bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            Bloque bloque = bloques.get(medio);
+            if(bloque.tiempos[bloque.tamano - 1] < desde) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        if(bajo == bloques.size()) {
+            return cantidad;
+        }
+        Bloque bloque = bloques.get(bajo);
+        int inicio = 0;
+        int fin = bloque.tamano;
+        while(inicio < fin) {
+            int medio = (inicio + fin) >>> 1;
+            if(bloque.tiempos[medio] < desde) {
+                inicio = medio + 1;
+            } else {
+                fin = medio;
+            }
+        }
+        return bloque.primerIndice + inicio;
+    }
+
+    // Posición en la lista del bloque que contiene el índice; todos salvo el último están llenos
+    private int bloqueDe(long indice) {
+        if(bloques.isEmpty()) {
+            return 0;
+        }
+        return (int) Math.max(0, (indice - bloques.get(0).primerIndice) / TAMANO_BLOQUE);
+    }
+
+    private void compactar(Bloque bloque) {
+        if(resumenes == maxResumenes) {
+            fusionarResumenes();
+        }
+        if(resumenes == resumenInicio.length) {
+            int capacidad = Math.min(maxResumenes, resumenes * 2);
+            resumenInicio = Arrays.copyOf(resumenInicio, capacidad);
+            resumenFin = Arrays.copyOf(resumenFin, capacidad);
+            resumenCreditos = Arrays.copyOf(resumenCreditos, capacidad);
+            resumenDebitos = Arrays.copyOf(resumenDebitos, capacidad);
+            resumenCantidad = Arrays.copyOf(resumenCantidad, capacidad);
+        }
+        long creditos = 0;
+        long debitos = 0;
+        for(int i = 0; i < bloque.tamano; i++) {
+            if(bloque.montos[i] >= 0) {
+                creditos += bloque.montos[i];
+            } else {
+                debitos -= bloque.montos[i];
+            }
+        }
+        resumenInicio[resumenes] = bloque.tiempos[0];
+        resumenFin[resumenes] = bloque.tiempos[bloque.tamano - 1];
+        resumenCreditos[resumenes] = creditos;
+        resumenDebitos[resumenes] = debitos;
+        resumenCantidad[resumenes] = bloque.tamano;
+        resumenes++;
+        libres.push(bloque);
+    }
+
+    // Cada par de resúmenes contiguos pasa a ser uno solo, con el doble de tramo
+    private void fusionarResumenes() {
+        int destino = 0;
+        for(int r = 0; r < resumenes; r += 2, destino++) {
+            resumenInicio[destino] = resumenInicio[r];
+            resumenFin[destino] = resumenFin[r];
+            resumenCreditos[destino] = resumenCreditos[r];
+            resumenDebitos[destino] = resumenDebitos[r];
+            resumenCantidad[destino] = resumenCantidad[r];
+            if(r + 1 < resumenes) {
+                resumenFin[destino] = resumenFin[r + 1];
+                resumenCreditos[destino] += resumenCreditos[r + 1];
+                resumenDebitos[destino] += resumenDebitos[r + 1];
+                resumenCantidad[destino] += resumenCantidad[r + 1];
+            }
+        }
+        resumenes = destino;
+    }
+
+    // Lugares reservados en los bloques con detalle
+    synchronized int getCapacidad() {
+        int capacidad = 0;
+        for(Bloque bloque : bloques) {
+            capacidad += bloque.tiempos.length;
+        }
+        return capacidad;
+    }
+
+    private static final class Bloque {
+        long[] tiempos = new long[TAMANO_INICIAL];
+        long[] montos = new long[TAMANO_INICIAL];
+        long[] contrapartes = new long[TAMANO_INICIAL];
+        int tamano;
+        long primerIndice;
+
+        void crecer() {
+            int capacidad = Math.min(TAMANO_BLOQUE, tiempos.length * 2);
+            tiempos = Arrays.copyOf(tiempos, capacidad);
+            montos = Arrays.copyOf(montos, capacidad);
+            contrapartes = Arrays.copyOf(contrapartes, capacidad);
+        }
+    }
+}
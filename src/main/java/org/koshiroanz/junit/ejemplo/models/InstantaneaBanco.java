@@ -0,0 +1,74 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vista consistente de los saldos de un {@link Banco} en un único instante lógico: ninguna
+ * transferencia aparece a medias. Se abre con {@link Banco#abrirInstantanea()} y mientras esté
+ * abierta las escrituras guardan el saldo previo de cada cuenta que modifican por primera vez,
+ * así que su costo es proporcional a las cuentas que cambiaron y no al total de cuentas.
+ * Hay que cerrarla para dejar de acumular saldos previos.
+ */
+public class InstantaneaBanco implements AutoCloseable {
+    private final ControlInstantaneas control;
+    private final List<Cuenta> cuentas;
+    private final int cantidad;
+
+    // Escrituras de épocas posteriores al corte guardan saldos previos
+    final long corte;
+    private final Map<Long, BigDecimal> saldosPrevios = new ConcurrentHashMap<>();
+
+    InstantaneaBanco(ControlInstantaneas control, long corte, List<Cuenta> cuentas, int cantidad) {
+        this.control = control;
+        this.corte = corte;
+        this.cuentas = cuentas;
+        this.cantidad = cantidad;
+    }
+
+    // Las cuentas del banco al abrir la instantánea; las altas posteriores no se incluyen
+    public List<Cuenta> getCuentas() {
+        List<Cuenta> resultado = new ArrayList<>(cantidad);
+        for(int i = 0; i < cantidad; i++) {
+            resultado.add(cuentas.get(i));
+        }
+        return Collections.unmodifiableList(resultado);
+    }
+
+    public BigDecimal getSaldo(Cuenta cuenta) {
+        // Se lee el saldo antes que el previo: si ya cambió, el previo se guardó antes del cambio
+        BigDecimal actual = cuenta.getSaldo();
+        BigDecimal previo = saldosPrevios.get(cuenta.getId());
+        return previo != null ? previo : actual;
+    }
+
+    public BigDecimal saldoTotal() {
+        BigDecimal total = BigDecimal.ZERO;
+        // Por índice: las cuentas sólo se agregan al final, así que las primeras no cambian
+        for(int i = 0; i < cantidad; i++) {
+            total = total.add(getSaldo(cuentas.get(i)));
+        }
+        return total;
+    }
+
+    // Cuentas modificadas desde el corte
+    public int getCambios() {
+        return saldosPrevios.size();
+    }
+
+    @Override
+    public void close() {
+        control.cerrar(this);
+    }
+
+    // Se llama con el monitor de la cuenta tomado
+    void capturar(Cuenta cuenta) {
+        if(!saldosPrevios.containsKey(cuenta.getId())) {
+            saldosPrevios.put(cuenta.getId(), cuenta.getSaldo());
+        }
+    }
+}
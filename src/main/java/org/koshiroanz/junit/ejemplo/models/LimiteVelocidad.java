@@ -0,0 +1,24 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Límite de débitos por cuenta: a lo sumo {@code montoMaximo} debitado y {@code cantidadMaxima}
+ * débitos dentro de cualquier ventana de duración {@code ventana}. Los montos se cuentan en la
+ * escala de {@code montoMaximo}; un monto con más decimales se redondea hacia arriba.
+ */
+public record LimiteVelocidad(Duration ventana, BigDecimal montoMaximo, int cantidadMaxima) {
+
+    public LimiteVelocidad {
+        if(ventana.isNegative() || ventana.isZero()) {
+            throw new IllegalArgumentException("La ventana debe ser positiva: " + ventana);
+        }
+        if(montoMaximo.signum() < 0 || cantidadMaxima < 0) {
+            throw new IllegalArgumentException("Los máximos no pueden ser negativos");
+        }
+        if(cantidadMaxima > ControlVelocidad.CANTIDAD_MAXIMA) {
+            throw new IllegalArgumentException("Cantidad máxima demasiado grande: " + cantidadMaxima);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Agrupa un lote de transferencias en componentes sin cuentas en común (union-find sobre
+ * las cuentas de cada transferencia). Cada componente se ejecuta en orden de llegada y los
+ * componentes entre sí se ejecutan en paralelo.
+ */
+class LoteTransferencias {
+    private final Banco banco;
+    private final List<Transfer> transferencias;
+    private final TransferResult[] resultados;
+
+    LoteTransferencias(Banco banco, List<Transfer> transferencias) {
+        this.banco = banco;
+        this.transferencias = transferencias;
+        this.resultados = new TransferResult[transferencias.size()];
+    }
+
+    List<TransferResult> ejecutar(ForkJoinPool pool) {
+        List<int[]> componentes = agrupar();
+        if(componentes.size() == 1) {
+            ejecutarComponente(componentes.get(0));
+        } else if(!componentes.isEmpty()) {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    List<RecursiveAction> tareas = new ArrayList<>(componentes.size());
+                    for(int[] componente : componentes) {
+                        tareas.add(new RecursiveAction() {
+                            @Override
+                            protected void compute() {
+                                ejecutarComponente(componente);
+                            }
+                        });
+                    }
+                    ForkJoinTask.invokeAll(tareas);
+                }
+            });
+        }
+        return List.of(resultados);
+    }
+
+    private void ejecutarComponente(int[] indices) {
+        for(int indice : indices) {
+            Transfer transfer = transferencias.get(indice);
+            RuntimeException error = null;
+            try {
+                banco.transferir(transfer.origen(), transfer.destino(), transfer.monto());
+            } catch(RuntimeException e) {
+                error = e;
+            }
+            resultados[indice] = new TransferResult(transfer, error);
+        }
+    }
+
+    // Devuelve, por componente, los índices de sus transferencias en orden de llegada
+    private List<int[]> agrupar() {
+        Map<Long, Integer> nodos = new HashMap<>();
+        int[] padres = new int[transferencias.size() * 2];
+        int[] origenes = new int[transferencias.size()];
+
+        for(int i = 0; i < transferencias.size(); i++) {
+            Transfer transfer = transferencias.get(i);
+            int origen = nodo(nodos, padres, transfer.origen());
+            int destino = nodo(nodos, padres, transfer.destino());
+            padres[raiz(padres, origen)] = raiz(padres, destino);
+            origenes[i] = origen;
+        }
+
+        Map<Integer, List<Integer>> porRaiz = new HashMap<>();
+        List<List<Integer>> orden = new ArrayList<>();
+        for(int i = 0; i < origenes.length; i++) {
+            List<Integer> componente = porRaiz.computeIfAbsent(raiz(padres, origenes[i]), r -> {
+                List<Integer> nuevo = new ArrayList<>();
+                orden.add(nuevo);
+                return nuevo;
+            });
+            componente.add(i);
+        }
+
+        List<int[]> componentes = new ArrayList<>(orden.size());
+        for(List<Integer> componente : orden) {
+            componentes.add(componente.stream().mapToInt(Integer::intValue).toArray());
+        }
+        return componentes;
+    }
+
+    private static int nodo(Map<Long, Integer> nodos, int[] padres, Cuenta cuenta) {
+        return nodos.computeIfAbsent(cuenta.getId(), id -> {
+            int nodo = nodos.size();
+            padres[nodo] = nodo;
+            return nodo;
+        });
+    }
+
+    private static int raiz(int[] padres, int nodo) {
+        while(padres[nodo] != nodo) {
+            padres[nodo] = padres[padres[nodo]];
+            nodo = padres[nodo];
+        }
+        return nodo;
+    }
+}
@@ -0,0 +1,11 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Un movimiento del historial de una cuenta. El monto es positivo para créditos y negativo
+ * para débitos; {@code contraparte} es el id de la otra cuenta de la transferencia, o 0.
+ * {@code indice} es la posición absoluta en el historial y sirve como cursor.
+ */
+public record Movimiento(long indice, long tiempo, BigDecimal monto, long contraparte) {
+}
@@ -0,0 +1,56 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Observa los cambios de las cuentas de un {@link Banco}. Los eventos se notifican después de
+ * aplicar el cambio y con el monitor de la cuenta tomado, por lo que para una misma cuenta
+ * llegan en el mismo orden en que se aplicaron. {@link #confirmar(Cuenta)} se invoca ya
+ * liberados los monitores, y es el lugar para esperas largas (por ejemplo un fsync).
+ *
+ * <p>Los métodos {@code antesDe...} se invocan con el mismo monitor pero antes de aplicar el
+ * cambio, que no se aplica si lanzan una excepción: un listener que persiste los cambios valida
+ * ahí lo que después va a escribir. El alta se notifica antes de que la cuenta quede en el banco.
+ *
+ * <p>Un {@code onDebito} u {@code onCredito} que lanza una excepción deshace el movimiento: el
+ * saldo vuelve atrás y los listeners que ya lo habían recibido reciben {@code deshacerDebito} o
+ * {@code deshacerCredito}. Aun así, lo que pueda fallar conviene validarlo en {@code antesDe...}.
+ */
+public interface MovimientoListener {
+    default void onAlta(Cuenta cuenta) {
+    }
+
+    default void antesDeMovimiento(Cuenta cuenta, BigDecimal monto) {
+    }
+
+    default void antesDeSaldo(Cuenta cuenta, BigDecimal nuevo) {
+    }
+
+    default void antesDePersona(Cuenta cuenta, String nueva) {
+    }
+
+    // contraparte es null cuando el movimiento no forma parte de una transferencia
+    default void onDebito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+    }
+
+    default void onCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+    }
+
+    // Por defecto se notifica como el movimiento opuesto
+    default void deshacerDebito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        onCredito(cuenta, monto, contraparte);
+    }
+
+    default void deshacerCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        onDebito(cuenta, monto, contraparte);
+    }
+
+    default void onSaldo(Cuenta cuenta, BigDecimal anterior, BigDecimal nuevo) {
+    }
+
+    default void onPersona(Cuenta cuenta, String anterior) {
+    }
+
+    default void confirmar(Cuenta cuenta) {
+    }
+}
@@ -0,0 +1,14 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.util.List;
+
+/**
+ * Página de una consulta del historial. {@code siguiente} es el cursor para pedir la próxima
+ * página, o -1 si no hay más movimientos en el rango.
+ */
+public record PaginaMovimientos(List<Movimiento> movimientos, long siguiente) {
+
+    public boolean hayMas() {
+        return siguiente >= 0;
+    }
+}
@@ -0,0 +1,16 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+/**
+ * Observa las altas y los cambios de persona de las cuentas de un {@link Banco}, por ejemplo
+ * para invalidar una cache por persona. A diferencia de un {@link MovimientoListener},
+ * registrarlo no hace que débitos y créditos tomen el monitor de la cuenta. El alta se notifica
+ * con la cuenta ya publicada en el banco, y el cambio de persona con el monitor de la cuenta
+ * tomado y los índices ya actualizados.
+ */
+public interface PersonaListener {
+    default void onAlta(Cuenta cuenta) {
+    }
+
+    default void onPersona(Cuenta cuenta, String anterior) {
+    }
+}
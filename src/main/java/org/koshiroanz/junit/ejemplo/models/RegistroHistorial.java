@@ -0,0 +1,78 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.function.LongSupplier;
+
+/**
+ * Listener que agrega cada débito, crédito y ajuste de saldo al {@link HistorialMovimientos} de
+ * la cuenta. Como los eventos llegan con el monitor de la cuenta tomado, el historial de cada
+ * cuenta se escribe en el mismo orden en que se aplicaron los movimientos.
+ */
+class RegistroHistorial implements MovimientoListener {
+    private final int escala;
+    private final int maxBloques;
+    private final int maxResumenes;
+    private final LongSupplier reloj;
+
+    RegistroHistorial(int escala, int maxBloques, int maxResumenes, LongSupplier reloj) {
+        this.escala = escala;
+        this.maxBloques = maxBloques;
+        this.maxResumenes = maxResumenes;
+        this.reloj = reloj;
+    }
+
+    @Override
+    public void onAlta(Cuenta cuenta) {
+        historial(cuenta);
+    }
+
+    @Override
+    public void onDebito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        historial(cuenta).registrar(reloj.getAsLong(), -unidades(monto), id(contraparte));
+    }
+
+    @Override
+    public void onCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        historial(cuenta).registrar(reloj.getAsLong(), unidades(monto), id(contraparte));
+    }
+
+    // Un movimiento deshecho no llegó a ocurrir: se descarta en lugar de registrar el opuesto
+    @Override
+    public void deshacerDebito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        historial(cuenta).descartarUltimo();
+    }
+
+    @Override
+    public void deshacerCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+        historial(cuenta).descartarUltimo();
+    }
+
+    // Un ajuste de saldo queda como un movimiento por la diferencia, sin contraparte
+    @Override
+    public void onSaldo(Cuenta cuenta, BigDecimal anterior, BigDecimal nuevo) {
+        long diferencia = unidades(nuevo.subtract(anterior));
+        if(diferencia != 0) {
+            historial(cuenta).registrar(reloj.getAsLong(), diferencia, 0);
+        }
+    }
+
+    // Llamado con el monitor de la cuenta tomado, así que no hay dos historiales para una cuenta
+    HistorialMovimientos historial(Cuenta cuenta) {
+        HistorialMovimientos historial = cuenta.getHistorialInterno();
+        if(historial == null) {
+            historial = new HistorialMovimientos(escala, maxBloques, maxResumenes);
+            cuenta.setHistorial(historial);
+        }
+        return historial;
+    }
+
+    // Los montos con más decimales que la escala del historial se redondean
+    private long unidades(BigDecimal monto) {
+        return monto.setScale(escala, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    private static long id(Cuenta contraparte) {
+        return contraparte == null ? 0 : contraparte.getId();
+    }
+}
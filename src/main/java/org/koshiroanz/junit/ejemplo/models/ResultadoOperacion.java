@@ -0,0 +1,27 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import org.koshiroanz.junit.ejemplo.exceptions.LimiteExcedidoException;
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+
+/**
+ * Resultado de {@link Cuenta#tryDebito} y {@link Banco#tryTransferir}, que informan el
+ * rechazo sin lanzar excepciones.
+ */
+public enum ResultadoOperacion {
+    EXITOSA,
+    SIN_FONDOS,
+    LIMITE_EXCEDIDO;
+
+    public boolean isExitosa() {
+        return this == EXITOSA;
+    }
+
+    // La excepción que lanzan las variantes que no devuelven resultado; null si fue exitosa
+    public RuntimeException error() {
+        return switch(this) {
+            case EXITOSA -> null;
+            case SIN_FONDOS -> NotEnoughMoneyException.sinFondos();
+            case LIMITE_EXCEDIDO -> LimiteExcedidoException.limiteExcedido();
+        };
+    }
+}
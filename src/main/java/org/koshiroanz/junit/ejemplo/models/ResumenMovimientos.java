@@ -0,0 +1,10 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Totales de los movimientos de un rango de tiempo. Es {@code exacto} salvo que el rango corte
+ * por la mitad un tramo ya compactado, en cuyo caso ese tramo se cuenta entero.
+ */
+public record ResumenMovimientos(BigDecimal creditos, BigDecimal debitos, long cantidad, boolean exacto) {
+}
@@ -0,0 +1,30 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+
+import java.math.BigDecimal;
+
+/**
+ * Representación del saldo de una {@link Cuenta}. Las implementaciones deben ser seguras
+ * ante accesos concurrentes y rechazar un débito que dejaría el saldo por debajo de cero.
+ */
+public interface Saldo {
+    BigDecimal get();
+
+    void set(BigDecimal valor);
+
+    // Devuelve false sin modificar el saldo si no alcanza
+    boolean tryDebito(BigDecimal monto);
+
+    default void debito(BigDecimal monto) {
+        if(!tryDebito(monto)) {
+            throw NotEnoughMoneyException.sinFondos();
+        }
+    }
+
+    void credito(BigDecimal monto);
+
+    // Lanza ArithmeticException si el monto no se puede operar en este saldo, sin modificarlo
+    default void validar(BigDecimal monto) {
+    }
+}
@@ -0,0 +1,109 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Saldo en unidades mínimas con escala fija pensado para cuentas "calientes" que reciben
+ * muchos créditos concurrentes. Los créditos se suman sin bloqueos en celdas repartidas por
+ * hilo y se pliegan en el saldo base recién en {@link #get()}, {@link #set(BigDecimal)} o
+ * {@link #tryDebito(BigDecimal)}, que toman el monitor del saldo.
+ *
+ * <p>Como el débito pliega todas las celdas antes de comparar y los créditos sólo pueden
+ * aumentar el saldo, la regla de {@link NotEnoughMoneyException} se sigue cumpliendo de forma
+ * exacta: un débito ve todo crédito que terminó antes de que empezara.
+ */
+public class SaldoCaliente implements Saldo {
+    // 16 longs = 128 bytes entre celdas para que no compartan línea de caché
+    private static final int SEPARACION = 16;
+
+    // Los hilos reciben números consecutivos, así se reparten parejo entre las celdas
+    private static final AtomicInteger SIGUIENTE_HILO = new AtomicInteger();
+    private static final ThreadLocal<Integer> HILO = ThreadLocal.withInitial(SIGUIENTE_HILO::getAndIncrement);
+
+    private final int escala;
+    private final AtomicLongArray celdas;
+    private final int mascara;
+
+    // Sólo se accede con el monitor tomado
+    private long base;
+
+    public SaldoCaliente(BigDecimal valor, int escala) {
+        this(valor, escala, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public SaldoCaliente(BigDecimal valor, int escala, int celdas) {
+        int cantidad = Integer.highestOneBit(Math.max(1, celdas - 1)) << 1;
+        this.escala = escala;
+        this.base = SaldoEscalado.aUnidades(valor, escala);
+        this.celdas = new AtomicLongArray(cantidad * SEPARACION);
+        this.mascara = cantidad - 1;
+    }
+
+    public int getEscala() {
+        return escala;
+    }
+
+    @Override
+    public synchronized BigDecimal get() {
+        plegar();
+        return BigDecimal.valueOf(base, escala);
+    }
+
+    @Override
+    public synchronized void set(BigDecimal valor) {
+        long unidades = SaldoEscalado.aUnidades(valor, escala);
+        for(int i = 0; i <= mascara; i++) {
+            celdas.getAndSet(i * SEPARACION, 0);
+        }
+        base = unidades;
+    }
+
+    @Override
+    public synchronized boolean tryDebito(BigDecimal monto) {
+        long unidades = SaldoEscalado.aUnidades(monto, escala);
+        plegar();
+        long nuevo = Math.subtractExact(base, unidades);
+        if(nuevo < 0) {
+            return false;
+        }
+        base = nuevo;
+        return true;
+    }
+
+    @Override
+    public void credito(BigDecimal monto) {
+        credito(SaldoEscalado.aUnidades(monto, escala));
+    }
+
+    @Override
+    public void validar(BigDecimal monto) {
+        SaldoEscalado.aUnidades(monto, escala);
+    }
+
+    // Lanza ArithmeticException si la celda se desborda, igual que SaldoEscalado
+    public void credito(long unidades) {
+        int celda = celda();
+        long actual;
+        do {
+            actual = celdas.get(celda);
+        } while(!celdas.compareAndSet(celda, actual, Math.addExact(actual, unidades)));
+    }
+
+    // Mueve lo acumulado en las celdas al saldo base
+    private void plegar() {
+        for(int i = 0; i <= mascara; i++) {
+            int indice = i * SEPARACION;
+            if(celdas.get(indice) != 0) {
+                base = Math.addExact(base, celdas.getAndSet(indice, 0));
+            }
+        }
+    }
+
+    private int celda() {
+        return (HILO.get() & mascara) * SEPARACION;
+    }
+}
@@ -0,0 +1,41 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+
+/**
+ * Saldo por defecto: un {@link BigDecimal} inmutable que se reemplaza en cada operación.
+ * Conserva la escala de los montos operados.
+ */
+public class SaldoDecimal implements Saldo {
+    private volatile BigDecimal valor;
+
+    public SaldoDecimal(BigDecimal valor) {
+        this.valor = valor;
+    }
+
+    @Override
+    public BigDecimal get() {
+        return valor;
+    }
+
+    @Override
+    public synchronized void set(BigDecimal valor) {
+        this.valor = valor;
+    }
+
+    @Override
+    public synchronized boolean tryDebito(BigDecimal monto) {
+        BigDecimal newBalance = this.valor.subtract(monto);
+        if(newBalance.compareTo(BigDecimal.ZERO) < 0) {
+            return false;
+        }
+
+        this.valor = newBalance;
+        return true;
+    }
+
+    @Override
+    public synchronized void credito(BigDecimal monto) {
+        this.valor = valor.add(monto);
+    }
+}
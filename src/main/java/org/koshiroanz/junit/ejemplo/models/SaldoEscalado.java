@@ -0,0 +1,101 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+
+/**
+ * Saldo sin bloqueos respaldado por un {@code long} en unidades mínimas con escala fija
+ * (por ejemplo escala 2 guarda centavos). Las operaciones se aplican con CAS y sólo se
+ * crea un {@link BigDecimal} en {@link #get()}.
+ */
+public class SaldoEscalado implements Saldo {
+    private static final VarHandle UNIDADES;
+
+    static {
+        try {
+            UNIDADES = MethodHandles.lookup().findVarHandle(SaldoEscalado.class, "unidades", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int escala;
+
+    private volatile long unidades;
+
+    public SaldoEscalado(long unidades, int escala) {
+        this.unidades = unidades;
+        this.escala = escala;
+    }
+
+    public SaldoEscalado(BigDecimal valor, int escala) {
+        this(aUnidades(valor, escala), escala);
+    }
+
+    public int getEscala() {
+        return escala;
+    }
+
+    public long getUnidades() {
+        return unidades;
+    }
+
+    @Override
+    public BigDecimal get() {
+        return BigDecimal.valueOf(unidades, escala);
+    }
+
+    @Override
+    public void set(BigDecimal valor) {
+        this.unidades = aUnidades(valor, escala);
+    }
+
+    @Override
+    public boolean tryDebito(BigDecimal monto) {
+        return tryDebito(aUnidades(monto, escala));
+    }
+
+    @Override
+    public void credito(BigDecimal monto) {
+        credito(aUnidades(monto, escala));
+    }
+
+    @Override
+    public void validar(BigDecimal monto) {
+        aUnidades(monto, escala);
+    }
+
+    public void debito(long monto) {
+        if(!tryDebito(monto)) {
+            throw NotEnoughMoneyException.sinFondos();
+        }
+    }
+
+    public boolean tryDebito(long monto) {
+        long actual;
+        long nuevo;
+        do {
+            actual = (long) UNIDADES.getVolatile(this);
+            nuevo = Math.subtractExact(actual, monto);
+            if(nuevo < 0) {
+                return false;
+            }
+        } while(!UNIDADES.compareAndSet(this, actual, nuevo));
+        return true;
+    }
+
+    public void credito(long monto) {
+        long actual;
+        do {
+            actual = (long) UNIDADES.getVolatile(this);
+        } while(!UNIDADES.compareAndSet(this, actual, Math.addExact(actual, monto)));
+    }
+
+    // Lanza ArithmeticException si el monto tiene más decimales que la escala o no entra en un long
+    static long aUnidades(BigDecimal valor, int escala) {
+        return valor.movePointRight(escala).longValueExact();
+    }
+}
@@ -0,0 +1,6 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import java.math.BigDecimal;
+
+public record Transfer(Cuenta origen, Cuenta destino, BigDecimal monto) {
+}
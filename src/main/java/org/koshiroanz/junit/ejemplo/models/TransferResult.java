@@ -0,0 +1,12 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+/**
+ * Resultado de una transferencia ejecutada en lote. Si falló, {@code error} contiene la
+ * excepción (por ejemplo {@link org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException}).
+ */
+public record TransferResult(Transfer transfer, RuntimeException error) {
+
+    public boolean isExitosa() {
+        return error == null;
+    }
+}
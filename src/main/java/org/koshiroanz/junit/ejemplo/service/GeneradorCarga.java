@@ -0,0 +1,71 @@
+package org.koshiroanz.junit.ejemplo.service;
+
+import org.koshiroanz.junit.ejemplo.exceptions.ServicioSaturadoException;
+import org.koshiroanz.junit.ejemplo.metrics.Histograma;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Genera carga de lazo abierto contra un {@link ServicioTransferencias}: envía solicitudes a
+ * una tasa fija sin esperar las respuestas, de modo que la latencia medida incluye el tiempo
+ * de espera cuando el servicio se atrasa.
+ */
+public class GeneradorCarga {
+    private final List<Cuenta> cuentas;
+    private final BigDecimal monto;
+    private final long semilla;
+
+    public GeneradorCarga(List<Cuenta> cuentas, BigDecimal monto, long semilla) {
+        this.cuentas = cuentas;
+        this.monto = monto;
+        this.semilla = semilla;
+    }
+
+    public ResultadoCarga ejecutar(String nombre, ServicioTransferencias servicio, int solicitudes, int porSegundo) {
+        Histograma latencias = new Histograma();
+        LongAdder completadas = new LongAdder();
+        LongAdder rechazadas = new LongAdder();
+        LongAdder fallidas = new LongAdder();
+        SplittableRandom random = new SplittableRandom(semilla);
+        CompletableFuture<?>[] pendientes = new CompletableFuture<?>[solicitudes];
+
+        long intervalo = TimeUnit.SECONDS.toNanos(1) / porSegundo;
+        long inicio = System.nanoTime();
+        for(int i = 0; i < solicitudes; i++) {
+            // Cada solicitud tiene su instante programado; la latencia se mide desde ese instante
+            long programada = inicio + i * intervalo;
+            long espera = programada - System.nanoTime();
+            if(espera > 0) {
+                LockSupport.parkNanos(espera);
+            }
+            Cuenta origen = cuentas.get(random.nextInt(cuentas.size()));
+            Cuenta destino = cuentas.get(random.nextInt(cuentas.size()));
+            pendientes[i] = servicio.transferir(origen, destino, monto).whenComplete((ok, error) -> {
+                // Los rechazos son inmediatos: se cuentan aparte para no bajar los percentiles
+                if(error instanceof ServicioSaturadoException) {
+                    rechazadas.increment();
+                    return;
+                }
+                latencias.registrar(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - programada));
+                if(error == null) {
+                    completadas.increment();
+                } else {
+                    fallidas.increment();
+                }
+            });
+        }
+        CompletableFuture.allOf(pendientes).exceptionally(e -> null).join();
+
+        return new ResultadoCarga(nombre, solicitudes, completadas.sum(), rechazadas.sum(), fallidas.sum(),
+                latencias.percentil(50), latencias.percentil(99), latencias.percentil(99.9),
+                Duration.ofNanos(System.nanoTime() - inicio));
+    }
+}
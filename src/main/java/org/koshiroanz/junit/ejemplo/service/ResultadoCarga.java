@@ -0,0 +1,16 @@
+package org.koshiroanz.junit.ejemplo.service;
+
+import java.time.Duration;
+
+/**
+ * Resultado de una corrida de {@link GeneradorCarga}. Las latencias están en microsegundos.
+ */
+public record ResultadoCarga(String nombre, long solicitudes, long completadas, long rechazadas, long fallidas,
+                             long p50, long p99, long p999, Duration duracion) {
+
+    @Override
+    public String toString() {
+        return String.format("%-12s solicitudes=%d completadas=%d rechazadas=%d fallidas=%d p50=%dus p99=%dus p999=%dus duración=%dms",
+                nombre, solicitudes, completadas, rechazadas, fallidas, p50, p99, p999, duracion.toMillis());
+    }
+}
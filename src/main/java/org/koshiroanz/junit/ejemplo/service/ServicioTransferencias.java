@@ -0,0 +1,98 @@
+package org.koshiroanz.junit.ejemplo.service;
+
+import org.koshiroanz.junit.ejemplo.exceptions.ServicioSaturadoException;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servicio en proceso que ejecuta cada solicitud de {@link Banco#transferir} en su propio
+ * hilo. La admisión está acotada: si ya hay {@code capacidad} solicitudes admitidas y sin
+ * terminar, la siguiente se rechaza en el acto con {@link ServicioSaturadoException} en vez de
+ * esperar en una cola sin límite.
+ *
+ * <p>Con el perfil {@code java21} se puede crear con hilos virtuales mediante
+ * {@code HilosVirtuales.servicio(banco, capacidad)}.
+ */
+public class ServicioTransferencias implements AutoCloseable {
+    private final Banco banco;
+    private final ExecutorService executor;
+    private final Semaphore admision;
+    private final int capacidad;
+
+    private final LongAdder rechazadas = new LongAdder();
+
+    public ServicioTransferencias(Banco banco, int capacidad, ExecutorService executor) {
+        this.banco = banco;
+        this.capacidad = capacidad;
+        this.executor = executor;
+        this.admision = new Semaphore(capacidad);
+    }
+
+    public static ServicioTransferencias conHilosDePlataforma(Banco banco, int capacidad, int hilos) {
+        return new ServicioTransferencias(banco, capacidad, Executors.newFixedThreadPool(hilos));
+    }
+
+    public CompletableFuture<Void> transferir(Cuenta origen, Cuenta destino, BigDecimal monto) {
+        if(!admision.tryAcquire()) {
+            rechazadas.increment();
+            return CompletableFuture.failedFuture(new ServicioSaturadoException("Servicio saturado"));
+        }
+        CompletableFuture<Void> resultado = new CompletableFuture<>();
+        try {
+            // El permiso se libera antes de completar, para que quien encadene otra transferencia
+            // al resultado no sea rechazado por un lugar que ya quedó libre
+            executor.execute(() -> {
+                RuntimeException error = null;
+                try {
+                    banco.transferir(origen, destino, monto);
+                } catch(RuntimeException e) {
+                    error = e;
+                } finally {
+                    admision.release();
+                }
+                if(error == null) {
+                    resultado.complete(null);
+                } else {
+                    resultado.completeExceptionally(error);
+                }
+            });
+        } catch(RejectedExecutionException e) {
+            admision.release();
+            resultado.completeExceptionally(e);
+        }
+        return resultado;
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    public int getEnCurso() {
+        return capacidad - admision.availablePermits();
+    }
+
+    public long getRechazadas() {
+        return rechazadas.sum();
+    }
+
+    // Si se interrumpe la espera se cancelan las solicitudes pendientes y se restablece la interrupción
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch(InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
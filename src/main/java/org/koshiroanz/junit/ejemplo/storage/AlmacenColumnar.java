@@ -0,0 +1,223 @@
+package org.koshiroanz.junit.ejemplo.storage;
+
+import org.koshiroanz.junit.ejemplo.models.AlmacenSaldos;
+import org.koshiroanz.junit.ejemplo.models.FilaSaldo;
+import org.koshiroanz.junit.ejemplo.models.Saldo;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Almacén columnar en el heap: los saldos viven en bloques {@code long[]} en unidades mínimas
+ * con escala fija y las personas en una columna {@code int[]} de códigos de diccionario. Los
+ * bloques nunca se mueven al crecer, así que las actualizaciones con CAS no se pierden y los
+ * recorridos como {@link #saldoTotal()} leen memoria contigua.
+ *
+ * <p>Las cuentas no se vuelven flyweights: cada {@link org.koshiroanz.junit.ejemplo.models.Cuenta}
+ * sigue siendo un objeto del heap (id, referencia al banco, entradas en los índices) y suma una
+ * {@code Fila} por cuenta, así que la memoria por cuenta no baja. Una vista armada por fila no
+ * serviría: las transferencias se sincronizan sobre la propia cuenta y los índices, listeners e
+ * historial la guardan por referencia, así que cada cuenta tiene que ser un único objeto. Lo que
+ * se gana es que los recorridos de saldos no pasan por las cuentas.
+ */
+public class AlmacenColumnar implements AlmacenSaldos {
+    private static final int BITS_BLOQUE = 16;
+    private static final int TAMANIO_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int MASCARA = TAMANIO_BLOQUE - 1;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // Código de una persona null, que no entra en el diccionario
+    private static final int SIN_PERSONA = -1;
+
+    private final int escala;
+
+    private volatile long[][] saldos = new long[0][];
+    private volatile int[][] personas = new int[0][];
+    private volatile int filas;
+
+    private final Map<String, Integer> codigos = new ConcurrentHashMap<>();
+    private volatile String[][] diccionario = new String[0][];
+    private int siguienteCodigo;
+
+    public AlmacenColumnar(int escala) {
+        this.escala = escala;
+    }
+
+    public int getEscala() {
+        return escala;
+    }
+
+    // El id de la cuenta no se guarda: dentro del almacén la cuenta se identifica por su fila
+    @Override
+    public synchronized FilaSaldo agregar(long cuentaId, String persona, BigDecimal saldo) {
+        int fila = filas;
+        if((fila & MASCARA) == 0 && fila >>> BITS_BLOQUE == saldos.length) {
+            saldos = agregarBloque(saldos, new long[TAMANIO_BLOQUE]);
+            personas = agregarBloque(personas, new int[TAMANIO_BLOQUE]);
+        }
+        long[] bloque = saldos[fila >>> BITS_BLOQUE];
+        LONGS.setVolatile(bloque, fila & MASCARA, saldo.movePointRight(escala).longValueExact());
+        INTS.setVolatile(personas[fila >>> BITS_BLOQUE], fila & MASCARA, codificar(persona));
+        filas = fila + 1;
+        return new Fila(bloque, fila);
+    }
+
+    @Override
+    public boolean contiene(Saldo saldo) {
+        return saldo instanceof Fila fila && fila.almacen() == this;
+    }
+
+    @Override
+    public String getPersona(int fila) {
+        int codigo = (int) INTS.getVolatile(personas[fila >>> BITS_BLOQUE], fila & MASCARA);
+        return decodificar(codigo);
+    }
+
+    @Override
+    public synchronized void setPersona(int fila, String persona) {
+        INTS.setVolatile(personas[fila >>> BITS_BLOQUE], fila & MASCARA, codificar(persona));
+    }
+
+    @Override
+    public int size() {
+        return filas;
+    }
+
+    // filas se lee antes que los bloques: agregar publica el bloque nuevo antes de contar la fila
+    @Override
+    public BigDecimal saldoTotal() {
+        int total = filas;
+        long[][] bloques = saldos;
+        long suma = 0;
+        for(int b = 0; b * TAMANIO_BLOQUE < total; b++) {
+            long[] bloque = bloques[b];
+            int hasta = Math.min(TAMANIO_BLOQUE, total - b * TAMANIO_BLOQUE);
+            for(int i = 0; i < hasta; i++) {
+                suma = Math.addExact(suma, (long) LONGS.getOpaque(bloque, i));
+            }
+        }
+        return BigDecimal.valueOf(suma, escala);
+    }
+
+    /**
+     * Suma los saldos de todas las cuentas de una persona comparando sólo códigos enteros.
+     */
+    public BigDecimal saldoTotal(String persona) {
+        Integer codigo = persona == null ? Integer.valueOf(SIN_PERSONA) : codigos.get(persona);
+        if(codigo == null) {
+            return BigDecimal.valueOf(0, escala);
+        }
+        int total = filas;
+        long[][] bloques = saldos;
+        int[][] columnas = personas;
+        long suma = 0;
+        for(int b = 0; b * TAMANIO_BLOQUE < total; b++) {
+            long[] bloque = bloques[b];
+            int[] columna = columnas[b];
+            int hasta = Math.min(TAMANIO_BLOQUE, total - b * TAMANIO_BLOQUE);
+            for(int i = 0; i < hasta; i++) {
+                if(columna[i] == codigo) {
+                    suma = Math.addExact(suma, (long) LONGS.getOpaque(bloque, i));
+                }
+            }
+        }
+        return BigDecimal.valueOf(suma, escala);
+    }
+
+    // Llamado con el monitor del almacén tomado
+    private int codificar(String persona) {
+        if(persona == null) {
+            return SIN_PERSONA;
+        }
+        Integer existente = codigos.get(persona);
+        if(existente != null) {
+            return existente;
+        }
+        int codigo = siguienteCodigo++;
+        if((codigo & MASCARA) == 0 && codigo >>> BITS_BLOQUE == diccionario.length) {
+            diccionario = agregarBloque(diccionario, new String[TAMANIO_BLOQUE]);
+        }
+        diccionario[codigo >>> BITS_BLOQUE][codigo & MASCARA] = persona;
+        codigos.put(persona, codigo);
+        return codigo;
+    }
+
+    private String decodificar(int codigo) {
+        if(codigo == SIN_PERSONA) {
+            return null;
+        }
+        return diccionario[codigo >>> BITS_BLOQUE][codigo & MASCARA];
+    }
+
+    private static <T> T[] agregarBloque(T[] bloques, T bloque) {
+        T[] nuevos = Arrays.copyOf(bloques, bloques.length + 1);
+        nuevos[bloques.length] = bloque;
+        return nuevos;
+    }
+
+    private class Fila implements FilaSaldo {
+        private final long[] bloque;
+        private final int fila;
+
+        Fila(long[] bloque, int fila) {
+            this.bloque = bloque;
+            this.fila = fila;
+        }
+
+        AlmacenColumnar almacen() {
+            return AlmacenColumnar.this;
+        }
+
+        @Override
+        public int getFila() {
+            return fila;
+        }
+
+        @Override
+        public BigDecimal get() {
+            return BigDecimal.valueOf((long) LONGS.getVolatile(bloque, fila & MASCARA), escala);
+        }
+
+        @Override
+        public void set(BigDecimal valor) {
+            LONGS.setVolatile(bloque, fila & MASCARA, valor.movePointRight(escala).longValueExact());
+        }
+
+        @Override
+        public void validar(BigDecimal monto) {
+            monto.movePointRight(escala).longValueExact();
+        }
+
+        @Override
+        public boolean tryDebito(BigDecimal monto) {
+            long unidades = monto.movePointRight(escala).longValueExact();
+            int indice = fila & MASCARA;
+            long actual;
+            long nuevo;
+            do {
+                actual = (long) LONGS.getVolatile(bloque, indice);
+                nuevo = Math.subtractExact(actual, unidades);
+                if(nuevo < 0) {
+                    return false;
+                }
+            } while(!LONGS.compareAndSet(bloque, indice, actual, nuevo));
+            return true;
+        }
+
+        @Override
+        public void credito(BigDecimal monto) {
+            long unidades = monto.movePointRight(escala).longValueExact();
+            int indice = fila & MASCARA;
+            long actual;
+            do {
+                actual = (long) LONGS.getVolatile(bloque, indice);
+            } while(!LONGS.compareAndSet(bloque, indice, actual, Math.addExact(actual, unidades)));
+        }
+    }
+}
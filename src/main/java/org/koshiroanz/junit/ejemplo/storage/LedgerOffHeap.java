@@ -0,0 +1,338 @@
+package org.koshiroanz.junit.ejemplo.storage;
+
+import org.koshiroanz.junit.ejemplo.models.AlmacenSaldos;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.FilaSaldo;
+import org.koshiroanz.junit.ejemplo.models.Saldo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Ledger de saldos fuera del heap: registros de ancho fijo en buffers directos, que el GC no
+ * recorre. Los saldos se actualizan con operaciones atómicas de {@link VarHandle} sobre el
+ * buffer. Si se crea con {@link #mapear(Path, int, int)} los buffers son un archivo mapeado en
+ * memoria y el ledger sobrevive a un reinicio sin deserializar nada: {@link #recuperar()}
+ * vuelve a armar el banco apuntando a los mismos registros.
+ *
+ * <pre>
+ * cabecera (64 bytes): int MAGIA, int VERSION, int escala, int capacidad, int filas
+ * registro (64 bytes):
+ *  0  long  saldo en unidades mínimas
+ *  8  long  id de la cuenta
+ * 16  short bytes de persona (-1 si la persona es null)
+ * 18  46 bytes de persona en UTF-8
+ * </pre>
+ */
+public class LedgerOffHeap implements AlmacenSaldos, Closeable {
+    static final int TAMANIO_CABECERA = 64;
+    static final int TAMANIO_REGISTRO = 64;
+    static final int BYTES_PERSONA = 46;
+
+    private static final int MAGIA = 0x4C454447;
+    private static final int VERSION = 1;
+    private static final int CABECERA_ESCALA = 8;
+    private static final int CABECERA_CAPACIDAD = 12;
+    private static final int CABECERA_FILAS = 16;
+
+    private static final int SALDO = 0;
+    private static final int ID = 8;
+    private static final int LONGITUD = 16;
+    private static final int PERSONA = 18;
+
+    // 2^24 registros de 64 bytes: bloques de 1 GiB, por debajo del límite de un ByteBuffer
+    private static final int BITS_BLOQUE = 24;
+    private static final int FILAS_POR_BLOQUE = 1 << BITS_BLOQUE;
+    private static final int MASCARA = FILAS_POR_BLOQUE - 1;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final FileChannel canal;
+    private final ByteBuffer cabecera;
+    private final int escala;
+    private final int capacidad;
+
+    private volatile ByteBuffer[] bloques = new ByteBuffer[0];
+
+    private LedgerOffHeap(FileChannel canal, ByteBuffer cabecera, int escala, int capacidad) {
+        this.canal = canal;
+        this.cabecera = cabecera;
+        this.escala = escala;
+        this.capacidad = capacidad;
+    }
+
+    public static LedgerOffHeap enMemoria(int capacidad, int escala) {
+        ByteBuffer cabecera = ByteBuffer.allocateDirect(TAMANIO_CABECERA).order(ByteOrder.nativeOrder());
+        inicializar(cabecera, escala, capacidad);
+        return new LedgerOffHeap(null, cabecera, escala, capacidad);
+    }
+
+    /**
+     * Abre el ledger guardado en {@code archivo}, o lo crea con la capacidad y escala dadas.
+     */
+    public static LedgerOffHeap mapear(Path archivo, int capacidad, int escala) {
+        try {
+            FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean nuevo = canal.size() == 0;
+            MappedByteBuffer cabecera = canal.map(FileChannel.MapMode.READ_WRITE, 0, TAMANIO_CABECERA);
+            cabecera.order(ByteOrder.nativeOrder());
+            if(nuevo) {
+                inicializar(cabecera, escala, capacidad);
+            } else if(cabecera.getInt(0) != MAGIA || cabecera.getInt(4) != VERSION) {
+                canal.close();
+                throw new IllegalStateException("El archivo no es un ledger válido: " + archivo);
+            }
+            LedgerOffHeap ledger = new LedgerOffHeap(canal, cabecera, cabecera.getInt(CABECERA_ESCALA), cabecera.getInt(CABECERA_CAPACIDAD));
+            for(int fila = 0; fila < ledger.size(); fila += FILAS_POR_BLOQUE) {
+                ledger.agregarBloque();
+            }
+            return ledger;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int getEscala() {
+        return escala;
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    public long getCuentaId(int fila) {
+        return bloque(fila).getLong(desplazamiento(fila) + ID);
+    }
+
+    /**
+     * Arma un banco con una cuenta por cada registro del ledger; las cuentas operan
+     * directamente sobre los registros existentes.
+     */
+    public Banco recuperar() {
+        Banco banco = new Banco(this);
+        int filas = size();
+        for(int fila = 0; fila < filas; fila++) {
+            banco.addCuenta(new Cuenta(getCuentaId(fila), getPersona(fila), new Fila(bloque(fila), fila)));
+        }
+        return banco;
+    }
+
+    @Override
+    public synchronized FilaSaldo agregar(long cuentaId, String persona, BigDecimal saldo) {
+        byte[] bytes = codificar(persona);
+        int fila = size();
+        if(fila == capacidad) {
+            throw new IllegalStateException("Ledger lleno: " + capacidad + " cuentas");
+        }
+        if(fila >>> BITS_BLOQUE == bloques.length) {
+            agregarBloque();
+        }
+        ByteBuffer bloque = bloque(fila);
+        int base = desplazamiento(fila);
+        bloque.putLong(base + ID, cuentaId);
+        escribirPersona(bloque, base, bytes);
+        LONGS.setVolatile(bloque, base + SALDO, saldo.movePointRight(escala).longValueExact());
+        INTS.setVolatile(cabecera, CABECERA_FILAS, fila + 1);
+        return new Fila(bloque, fila);
+    }
+
+    @Override
+    public boolean contiene(Saldo saldo) {
+        return saldo instanceof Fila fila && fila.ledger() == this;
+    }
+
+    @Override
+    public String getPersona(int fila) {
+        ByteBuffer bloque = bloque(fila);
+        int base = desplazamiento(fila);
+        short longitud = bloque.getShort(base + LONGITUD);
+        if(longitud < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        bloque.get(base + PERSONA, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void validarPersona(String persona) {
+        codificar(persona);
+    }
+
+    @Override
+    public synchronized void setPersona(int fila, String persona) {
+        escribirPersona(bloque(fila), desplazamiento(fila), codificar(persona));
+    }
+
+    @Override
+    public int size() {
+        return (int) INTS.getVolatile(cabecera, CABECERA_FILAS);
+    }
+
+    // size() se lee antes que los bloques: agregar mapea el bloque nuevo antes de contar la fila
+    @Override
+    public BigDecimal saldoTotal() {
+        int filas = size();
+        ByteBuffer[] actuales = bloques;
+        long suma = 0;
+        for(int fila = 0; fila < filas; fila++) {
+            suma = Math.addExact(suma, (long) LONGS.getOpaque(actuales[fila >>> BITS_BLOQUE], desplazamiento(fila) + SALDO));
+        }
+        return BigDecimal.valueOf(suma, escala);
+    }
+
+    /**
+     * Fuerza a disco los cambios de un ledger mapeado.
+     */
+    public void forzar() {
+        if(canal != null) {
+            ((MappedByteBuffer) cabecera).force();
+            for(ByteBuffer bloque : bloques) {
+                ((MappedByteBuffer) bloque).force();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if(canal != null) {
+            forzar();
+            try {
+                canal.close();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static void inicializar(ByteBuffer cabecera, int escala, int capacidad) {
+        cabecera.putInt(0, MAGIA);
+        cabecera.putInt(4, VERSION);
+        cabecera.putInt(CABECERA_ESCALA, escala);
+        cabecera.putInt(CABECERA_CAPACIDAD, capacidad);
+        INTS.setVolatile(cabecera, CABECERA_FILAS, 0);
+    }
+
+    // null para una persona null
+    private static byte[] codificar(String persona) {
+        if(persona == null) {
+            return null;
+        }
+        byte[] bytes = persona.getBytes(StandardCharsets.UTF_8);
+        if(bytes.length > BYTES_PERSONA) {
+            throw new IllegalArgumentException("La persona no entra en un registro del ledger: " + persona);
+        }
+        return bytes;
+    }
+
+    private static void escribirPersona(ByteBuffer bloque, int base, byte[] bytes) {
+        if(bytes == null) {
+            bloque.putShort(base + LONGITUD, (short) -1);
+            return;
+        }
+        bloque.put(base + PERSONA, bytes);
+        bloque.putShort(base + LONGITUD, (short) bytes.length);
+    }
+
+    private void agregarBloque() {
+        int numero = bloques.length;
+        int filas = Math.min(FILAS_POR_BLOQUE, capacidad - numero * FILAS_POR_BLOQUE);
+        ByteBuffer bloque;
+        if(canal == null) {
+            bloque = ByteBuffer.allocateDirect(filas * TAMANIO_REGISTRO);
+        } else {
+            try {
+                long posicion = TAMANIO_CABECERA + (long) numero * FILAS_POR_BLOQUE * TAMANIO_REGISTRO;
+                bloque = canal.map(FileChannel.MapMode.READ_WRITE, posicion, (long) filas * TAMANIO_REGISTRO);
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        bloque.order(ByteOrder.nativeOrder());
+        ByteBuffer[] nuevos = Arrays.copyOf(bloques, numero + 1);
+        nuevos[numero] = bloque;
+        bloques = nuevos;
+    }
+
+    private ByteBuffer bloque(int fila) {
+        return bloques[fila >>> BITS_BLOQUE];
+    }
+
+    private static int desplazamiento(int fila) {
+        return (fila & MASCARA) * TAMANIO_REGISTRO;
+    }
+
+    private class Fila implements FilaSaldo {
+        private final ByteBuffer bloque;
+        private final int fila;
+        private final int saldo;
+
+        Fila(ByteBuffer bloque, int fila) {
+            this.bloque = bloque;
+            this.fila = fila;
+            this.saldo = desplazamiento(fila) + SALDO;
+        }
+
+        LedgerOffHeap ledger() {
+            return LedgerOffHeap.this;
+        }
+
+        @Override
+        public int getFila() {
+            return fila;
+        }
+
+        @Override
+        public BigDecimal get() {
+            return BigDecimal.valueOf((long) LONGS.getVolatile(bloque, saldo), escala);
+        }
+
+        @Override
+        public void set(BigDecimal valor) {
+            LONGS.setVolatile(bloque, saldo, valor.movePointRight(escala).longValueExact());
+        }
+
+        @Override
+        public void validar(BigDecimal monto) {
+            monto.movePointRight(escala).longValueExact();
+        }
+
+        @Override
+        public boolean tryDebito(BigDecimal monto) {
+            long unidades = monto.movePointRight(escala).longValueExact();
+            long actual;
+            long nuevo;
+            do {
+                actual = (long) LONGS.getVolatile(bloque, saldo);
+                nuevo = Math.subtractExact(actual, unidades);
+                if(nuevo < 0) {
+                    return false;
+                }
+            } while(!LONGS.compareAndSet(bloque, saldo, actual, nuevo));
+            return true;
+        }
+
+        @Override
+        public void credito(BigDecimal monto) {
+            long unidades = monto.movePointRight(escala).longValueExact();
+            long actual;
+            do {
+                actual = (long) LONGS.getVolatile(bloque, saldo);
+            } while(!LONGS.compareAndSet(bloque, saldo, actual, Math.addExact(actual, unidades)));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.koshiroanz.junit.ejemplo.service;
+
+import org.koshiroanz.junit.ejemplo.journal.Durabilidad;
+import org.koshiroanz.junit.ejemplo.journal.Journal;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compara latencias p50/p99/p999 del servicio con hilos de plataforma y con hilos virtuales,
+ * sobre un banco con journal en modo {@link Durabilidad#GRUPO} para que cada transferencia
+ * espere su fsync.
+ *
+ * <pre>
+ * mvn -P java21 compile exec:java -Dexec.mainClass=org.koshiroanz.junit.ejemplo.service.ComparacionCarga \
+ *     -Dexec.args="solicitudes porSegundo capacidad hilosPlataforma"
+ * </pre>
+ */
+public class ComparacionCarga {
+    public static void main(String[] args) throws Exception {
+        int solicitudes = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int porSegundo = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int capacidad = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        int hilosPlataforma = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+
+        System.out.println(correr("plataforma", solicitudes, porSegundo,
+                banco -> ServicioTransferencias.conHilosDePlataforma(banco, capacidad, hilosPlataforma)));
+        System.out.println(correr("virtual", solicitudes, porSegundo,
+                banco -> HilosVirtuales.servicio(banco, capacidad)));
+    }
+
+    interface FabricaServicio {
+        ServicioTransferencias crear(Banco banco);
+    }
+
+    private static ResultadoCarga correr(String nombre, int solicitudes, int porSegundo, FabricaServicio fabrica) throws Exception {
+        Path directorio = Files.createTempDirectory("carga-" + nombre);
+        try(Journal journal = Journal.abrir(directorio, Durabilidad.GRUPO)) {
+            Banco banco = journal.recuperar(new Banco());
+            List<Cuenta> cuentas = new ArrayList<>();
+            for(int i = 0; i < 10_000; i++) {
+                Cuenta cuenta = new Cuenta("Persona " + i, new BigDecimal("1000000"));
+                banco.addCuenta(cuenta);
+                cuentas.add(cuenta);
+            }
+            try(ServicioTransferencias servicio = fabrica.crear(banco)) {
+                return new GeneradorCarga(cuentas, BigDecimal.ONE, 42).ejecutar(nombre, servicio, solicitudes, porSegundo);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.koshiroanz.junit.ejemplo.service;
+
+import org.koshiroanz.junit.ejemplo.models.Banco;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Servicio de transferencias con un hilo virtual por solicitud. Sólo se compila con el
+ * perfil {@code java21}.
+ */
+public final class HilosVirtuales {
+    private HilosVirtuales() {
+    }
+
+    public static ServicioTransferencias servicio(Banco banco, int capacidad) {
+        return new ServicioTransferencias(banco, capacidad, Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
@@ -0,0 +1,183 @@
+package org.koshiroanz.junit.ejemplo.cache;
+
+import org.junit.jupiter.api.*;
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class CacheCuentasTest {
+    Banco banco;
+    Cuenta cuenta1;
+    Cuenta cuenta2;
+
+    @BeforeEach
+    void init() {
+        banco = new Banco();
+        cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+        cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000"));
+        banco.addCuenta(cuenta1);
+        banco.addCuenta(cuenta2);
+    }
+
+    @Test
+    @DisplayName("Test hits, misses and LRU evictions are counted")
+    void testEstadisticas() {
+        AtomicInteger cargas = new AtomicInteger();
+        try(CacheCuentas cache = new CacheCuentas(banco, 1, persona -> {
+            cargas.incrementAndGet();
+            return banco.findByPersona(persona);
+        })) {
+            assertSame(cuenta1, cache.findByPersona("John Doe").orElseThrow());
+            assertSame(cuenta1, cache.findByPersona("John Doe").orElseThrow());
+            assertSame(cuenta2, cache.findByPersona("Jane Doe").orElseThrow());
+            assertSame(cuenta1, cache.findByPersona("John Doe").orElseThrow());
+            assertEquals(Optional.empty(), cache.findByPersona("Pepe"));
+
+            EstadisticasCache estadisticas = cache.estadisticas();
+            assertAll(
+                    () -> assertEquals(1, estadisticas.aciertos()),
+                    () -> assertEquals(4, estadisticas.fallos()),
+                    () -> assertEquals(2, estadisticas.desalojos()),
+                    () -> assertEquals(1, estadisticas.tamano()),
+                    () -> assertEquals(0.2, estadisticas.tasaAciertos(), 1e-9),
+                    () -> assertEquals(4, cargas.get())
+            );
+        }
+    }
+
+    @Test
+    @DisplayName("Test balances write through and persona changes invalidate")
+    void testEscrituraEInvalidacion() {
+        try(CacheCuentas cache = new CacheCuentas(banco, 10)) {
+            Cuenta cacheada = cache.findByPersona("John Doe").orElseThrow();
+            banco.transferir(cuenta1, cuenta2, new BigDecimal("500"));
+            assertEquals("2000", cache.findByPersona("John Doe").orElseThrow().getSaldo().toPlainString());
+
+            cuenta1.setPersona("Andrés");
+            assertEquals(Optional.empty(), cache.findByPersona("John Doe"));
+            assertSame(cacheada, cache.findByPersona("Andrés").orElseThrow());
+
+            Cuenta nueva = new Cuenta("John Doe", BigDecimal.TEN);
+            banco.addCuenta(nueva);
+            assertSame(nueva, cache.findByPersona("John Doe").orElseThrow());
+            assertEquals(1, cache.estadisticas().invalidaciones());
+        }
+    }
+
+    @Test
+    @DisplayName("Test eviction drops the least recently used entries")
+    void testDesalojoLru() {
+        for(int i = 0; i < 17; i++) {
+            banco.addCuenta(new Cuenta("Persona " + i, BigDecimal.TEN));
+        }
+        try(CacheCuentas cache = new CacheCuentas(banco, 16)) {
+            for(int i = 0; i < 16; i++) {
+                cache.findByPersona("Persona " + i);
+            }
+            for(int i = 0; i < 8; i++) {
+                cache.findByPersona("Persona " + i);
+            }
+            // Pasar la capacidad baja a 14 entradas quitando las 3 de acceso más viejo: 8, 9 y 10
+            cache.findByPersona("Persona 16");
+            assertEquals(14, cache.estadisticas().tamano());
+            assertEquals(3, cache.estadisticas().desalojos());
+
+            long aciertos = cache.estadisticas().aciertos();
+            for(int i = 0; i < 8; i++) {
+                cache.findByPersona("Persona " + i);
+            }
+            assertEquals(aciertos + 8, cache.estadisticas().aciertos());
+            long fallos = cache.estadisticas().fallos();
+            cache.findByPersona("Persona 8");
+            assertEquals(fallos + 1, cache.estadisticas().fallos());
+        }
+    }
+
+    @Test
+    @DisplayName("Test the cache does not put account writes behind the account monitor")
+    void testEscriturasSinMonitor() throws InterruptedException {
+        try(CacheCuentas cache = new CacheCuentas(banco, 10)) {
+            CountDownLatch tomado = new CountDownLatch(1);
+            CountDownLatch soltar = new CountDownLatch(1);
+            Thread hilo = new Thread(() -> {
+                synchronized (cuenta1) {
+                    tomado.countDown();
+                    try {
+                        soltar.await();
+                    } catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            hilo.start();
+            tomado.await();
+            try {
+                assertTimeoutPreemptively(ofSeconds(5), () -> cuenta1.debito(BigDecimal.ONE));
+            } finally {
+                soltar.countDown();
+                hilo.join();
+            }
+            assertSame(cuenta1, cache.findByPersona("John Doe").orElseThrow());
+        }
+    }
+
+    @Test
+    @DisplayName("Test lookups stay correct under concurrent transfers and renames")
+    void testConcurrencia() throws InterruptedException {
+        List<Cuenta> cuentas = new ArrayList<>();
+        for(int i = 0; i < 16; i++) {
+            Cuenta cuenta = new Cuenta("Persona " + i, new BigDecimal("1000"));
+            banco.addCuenta(cuenta);
+            cuentas.add(cuenta);
+        }
+        List<AssertionError> errores = new ArrayList<>();
+        try(CacheCuentas cache = new CacheCuentas(banco, 8)) {
+            Thread[] hilos = new Thread[4];
+            for(int h = 0; h < hilos.length; h++) {
+                int hilo = h;
+                hilos[h] = new Thread(() -> {
+                    for(int i = 0; i < 5_000; i++) {
+                        int n = (i * 7 + hilo) % 16;
+                        if(hilo == 0 && i % 50 == 0) {
+                            // Alterna el nombre y lo restaura para que las búsquedas deban invalidarse
+                            Cuenta cuenta = cuentas.get(n);
+                            cuenta.setPersona("Temporal " + n);
+                            cuenta.setPersona("Persona " + n);
+                        }
+                        try {
+                            banco.transferir(cuentas.get(n), cuentas.get((n + 1) % 16), BigDecimal.ONE);
+                        } catch(NotEnoughMoneyException e) {
+                            // Se ignora
+                        }
+                        Optional<Cuenta> encontrada = cache.findByPersona("Persona " + n);
+                        if(encontrada.isPresent() && encontrada.get() != cuentas.get(n)) {
+                            synchronized (errores) {
+                                errores.add(new AssertionError("Persona " + n + " resolvió otra cuenta"));
+                            }
+                        }
+                    }
+                });
+                hilos[h].start();
+            }
+            for(Thread hilo : hilos) {
+                hilo.join();
+            }
+            assertEquals(List.of(), errores);
+            for(int i = 0; i < 16; i++) {
+                assertSame(cuentas.get(i), cache.findByPersona("Persona " + i).orElseThrow());
+            }
+            assertEquals(new BigDecimal("19500"), banco.saldoTotal());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package org.koshiroanz.junit.ejemplo.clearing;
+
+import org.junit.jupiter.api.*;
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.LimiteVelocidad;
+import org.koshiroanz.junit.ejemplo.models.MovimientoListener;
+import org.koshiroanz.junit.ejemplo.models.ResultadoOperacion;
+import org.koshiroanz.junit.ejemplo.models.SaldoDecimal;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class CamaraCompensacionTest {
+    CamaraCompensacion camara;
+    Banco santander;
+    Banco galicia;
+    Banco nacion;
+    Cuenta john;
+    Cuenta jane;
+    Cuenta pepe;
+
+    @BeforeEach
+    void init() {
+        camara = new CamaraCompensacion(2);
+        santander = banco("Santander Rio");
+        galicia = banco("Galicia");
+        nacion = banco("Nacion");
+        john = new Cuenta("John Doe", new BigDecimal("2500"));
+        jane = new Cuenta("Jane Doe", new BigDecimal("1000"));
+        pepe = new Cuenta("Pepe", new BigDecimal("500"));
+        santander.addCuenta(john);
+        galicia.addCuenta(jane);
+        nacion.addCuenta(pepe);
+    }
+
+    Banco banco(String nombre) {
+        Banco banco = new Banco();
+        banco.setNombre(nombre);
+        camara.registrarBanco(banco, new Cuenta("Liquidación " + nombre, new BigDecimal("10000")));
+        return banco;
+    }
+
+    @Test
+    @DisplayName("Test interbank transfer moves customer money and leaves an obligation")
+    void testTransferenciaEntreBancos() {
+        santander.transferir(john, jane, new BigDecimal("500"));
+
+        assertEquals("2000", john.getSaldo().toPlainString());
+        assertEquals("1500", jane.getSaldo().toPlainString());
+        assertEquals(1, camara.getPendientes());
+        assertEquals(ResultadoOperacion.SIN_FONDOS, santander.tryTransferir(pepe, john, new BigDecimal("501")));
+        assertEquals(1, camara.getPendientes());
+    }
+
+    @Test
+    @DisplayName("Test interbank transfer returns the debit when the credit fails")
+    void testTransferenciaCreditoFallido() {
+        galicia.addListener(new MovimientoListener() {
+            @Override
+            public void onCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+                throw new IllegalStateException("Crédito rechazado");
+            }
+        });
+
+        assertThrows(IllegalStateException.class, () -> santander.transferir(john, jane, new BigDecimal("500")));
+
+        assertEquals("2500", john.getSaldo().toPlainString());
+        assertEquals("1000", jane.getSaldo().toPlainString());
+        assertEquals(0, camara.getPendientes());
+        assertEquals(0, santander.getMetricas().instantanea().transferencias());
+
+    }
+
+    @Test
+    @DisplayName("Test opposite interbank transfers between accounts with the same id do not deadlock")
+    void testTransferenciasOpuestasMismoId() {
+        Cuenta x = new Cuenta(1, "X", new SaldoDecimal(new BigDecimal("10000")));
+        Cuenta y = new Cuenta(1, "Y", new SaldoDecimal(new BigDecimal("10000")));
+        santander.addCuenta(x);
+        galicia.addCuenta(y);
+
+        assertTimeoutPreemptively(ofSeconds(10), () -> {
+            Thread ida = new Thread(() -> {
+                for(int i = 0; i < 20_000; i++) {
+                    santander.transferir(x, y, BigDecimal.ONE);
+                }
+            });
+            Thread vuelta = new Thread(() -> {
+                for(int i = 0; i < 20_000; i++) {
+                    galicia.transferir(y, x, BigDecimal.ONE);
+                }
+            });
+            ida.start();
+            vuelta.start();
+            ida.join();
+            vuelta.join();
+        });
+
+        assertEquals("20000", x.getSaldo().add(y.getSaldo()).toPlainString());
+    }
+
+    @Test
+    @DisplayName("Test interbank transfers are counted in the origin bank metrics")
+    void testMetricasEntreBancos() {
+        santander.transferir(john, jane, new BigDecimal("500"));
+        galicia.transferir(jane, pepe, new BigDecimal("100"));
+
+        assertEquals(1, santander.getMetricas().instantanea().transferencias());
+        assertEquals(1, galicia.getMetricas().instantanea().transferencias());
+    }
+
+    @Test
+    @DisplayName("Test clearing nets obligations multilaterally")
+    void testCompensacionMultilateral() {
+        // Circuito: cada banco debe 100 y recibe 100, no hace falta mover nada
+        santander.transferir(john, jane, new BigDecimal("100"));
+        galicia.transferir(jane, pepe, new BigDecimal("100"));
+        nacion.transferir(pepe, john, new BigDecimal("100"));
+        // Santander termina debiendo 300 a Galicia
+        for(int i = 0; i < 3; i++) {
+            santander.transferir(john, jane, new BigDecimal("100"));
+        }
+
+        ResultadoCompensacion resultado = camara.compensar();
+
+        assertAll(
+                () -> assertEquals(6, resultado.obligaciones()),
+                () -> assertEquals(new BigDecimal("600.00"), resultado.bruto()),
+                () -> assertEquals(new BigDecimal("300.00"), resultado.neto()),
+                () -> assertEquals(List.of(new Liquidacion(santander, galicia, new BigDecimal("300.00"))), resultado.liquidaciones()),
+                () -> assertEquals(0, camara.getPendientes()),
+                () -> assertEquals("9700.00", liquidacion(santander).getSaldo().toPlainString()),
+                () -> assertEquals("10300.00", liquidacion(galicia).getSaldo().toPlainString()),
+                () -> assertEquals("10000", liquidacion(nacion).getSaldo().toPlainString())
+        );
+    }
+
+    @Test
+    @DisplayName("Test failed settlement stays pending for the next cycle")
+    void testLiquidacionFallida() {
+        camara.registrarObligacion(nacion, santander, new BigDecimal("15000"));
+
+        ResultadoCompensacion resultado = camara.compensar();
+
+        assertEquals(List.of(), resultado.liquidaciones());
+        assertEquals(1, resultado.fallidas().size());
+        assertInstanceOf(NotEnoughMoneyException.class, resultado.fallidas().get(0).error());
+        assertEquals(1, camara.getPendientes());
+
+        liquidacion(nacion).credito(new BigDecimal("5000"));
+        assertEquals(1, camara.compensar().liquidaciones().size());
+        assertEquals("0.00", liquidacion(nacion).getSaldo().toPlainString());
+    }
+
+    @Test
+    @DisplayName("Test settlement postings are not subject to velocity limits")
+    void testLiquidacionSinLimites() {
+        santander.habilitarLimites(new LimiteVelocidad(Duration.ofHours(1), new BigDecimal("100"), 1));
+        santander.transferir(john, jane, new BigDecimal("100"));
+        assertEquals(ResultadoOperacion.LIMITE_EXCEDIDO, santander.tryTransferir(john, jane, new BigDecimal("100")));
+        camara.registrarObligacion(santander, galicia, new BigDecimal("5000"));
+
+        ResultadoCompensacion resultado = camara.compensar();
+
+        assertEquals(List.of(), resultado.fallidas());
+        assertEquals(List.of(new Liquidacion(santander, galicia, new BigDecimal("5100.00"))), resultado.liquidaciones());
+        assertEquals("4900.00", liquidacion(santander).getSaldo().toPlainString());
+        assertEquals(ResultadoOperacion.LIMITE_EXCEDIDO, john.tryDebito(BigDecimal.ONE));
+    }
+
+    @Test
+    @DisplayName("Test clearing many random obligations keeps settlement money and needs few postings")
+    void testCompensacionMasiva() {
+        Banco[] bancos = {santander, galicia, nacion};
+        Random random = new Random(42);
+        for(int i = 0; i < 200_000; i++) {
+            camara.registrarObligacion(bancos[random.nextInt(3)], bancos[random.nextInt(3)], new BigDecimal("0.01"));
+        }
+
+        ResultadoCompensacion resultado = assertTimeout(ofSeconds(5), () -> camara.compensar());
+
+        assertEquals(200_000, resultado.obligaciones());
+        assertTrue(resultado.liquidaciones().size() <= 2);
+        BigDecimal total = liquidacion(santander).getSaldo().add(liquidacion(galicia).getSaldo()).add(liquidacion(nacion).getSaldo());
+        assertEquals(0, new BigDecimal("30000").compareTo(total));
+    }
+
+    Cuenta liquidacion(Banco banco) {
+        return banco.findByPersona("Liquidación " + banco.getNombre()).orElseThrow();
+    }
+}
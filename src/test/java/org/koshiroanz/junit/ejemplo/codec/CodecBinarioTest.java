@@ -0,0 +1,205 @@
+package org.koshiroanz.junit.ejemplo.codec;
+
+import org.junit.jupiter.api.*;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.Transfer;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Tag("banco")
+class CodecBinarioTest {
+    ByteBuffer buffer;
+
+    @BeforeEach
+    void init() {
+        buffer = ByteBuffer.allocate(256);
+    }
+
+    @Nested
+    @DisplayName("Test de ida y vuelta")
+    class CodecBinarioTestIdaYVuelta {
+        @Test
+        @DisplayName("Test account round trip with non-ASCII names")
+        void testCuenta() {
+            Cuenta cuenta = new Cuenta("Andrés Núñez 😀", new BigDecimal("1000.50"));
+            CodecBinario.escribirCuenta(buffer, cuenta, 2);
+            CodecBinario.escribirCuenta(buffer, Long.MAX_VALUE, "", -1, 0);
+            buffer.flip();
+
+            RegistroCuenta registro = new RegistroCuenta();
+            assertEquals(CodecBinario.TIPO_CUENTA, CodecBinario.tipo(buffer));
+            CodecBinario.leerCuenta(buffer, registro);
+            assertAll(
+                    () -> assertEquals(cuenta.getId(), registro.getId()),
+                    () -> assertEquals("Andrés Núñez 😀", registro.getPersona().toString()),
+                    () -> assertEquals(100050, registro.getUnidades()),
+                    () -> assertEquals(cuenta.getSaldo(), registro.aCuenta().getSaldo())
+            );
+
+            CodecBinario.leerCuenta(buffer, registro);
+            assertEquals(Long.MAX_VALUE, registro.getId());
+            assertEquals("", registro.getPersona().toString());
+            assertEquals(-1, registro.getUnidades());
+            assertFalse(buffer.hasRemaining());
+        }
+
+        @Test
+        @DisplayName("Test transfer round trip resolves accounts in the bank")
+        void testTransferencia() {
+            Banco banco = new Banco();
+            Cuenta origen = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta destino = new Cuenta("Jane Doe", new BigDecimal("1000"));
+            banco.addCuenta(origen);
+            banco.addCuenta(destino);
+
+            CodecBinario.escribirTransferencia(buffer, new Transfer(origen, destino, new BigDecimal("12.5")), 2);
+            buffer.flip();
+            assertEquals(CodecBinario.TIPO_TRANSFERENCIA, CodecBinario.tipo(buffer));
+
+            Transfer transfer = CodecBinario.leerTransferencia(buffer, new RegistroTransferencia()).aTransfer(banco);
+            assertSame(origen, transfer.origen());
+            assertSame(destino, transfer.destino());
+            assertEquals(new BigDecimal("12.50"), transfer.monto());
+        }
+
+        @Test
+        @DisplayName("Test null persona is written as empty")
+        void testPersonaNula() {
+            CodecBinario.escribirCuenta(buffer, 7, null, 100, 2);
+            buffer.flip();
+
+            RegistroCuenta registro = CodecBinario.leerCuenta(buffer, new RegistroCuenta());
+            assertEquals(7, registro.getId());
+            assertEquals("", registro.getPersona().toString());
+            assertFalse(buffer.hasRemaining());
+        }
+
+        @Test
+        @DisplayName("Test small ids use one byte varints")
+        void testVarint() {
+            CodecBinario.escribirTransferencia(buffer, 1, 127, 5, 2);
+            assertEquals(2 + 1 + 1 + 1 + Long.BYTES, buffer.position());
+            assertEquals(1, CodecBinario.largoVarint(0));
+            assertEquals(2, CodecBinario.largoVarint(128));
+            assertEquals(10, CodecBinario.largoVarint(-1));
+        }
+    }
+
+    @Nested
+    @DisplayName("Test de errores")
+    class CodecBinarioTestErrores {
+        @Test
+        @DisplayName("Test full buffer is left untouched")
+        void testBufferLleno() {
+            ByteBuffer chico = ByteBuffer.allocate(10);
+            assertThrows(BufferOverflowException.class, () -> CodecBinario.escribirCuenta(chico, 1, "John Doe", 100, 2));
+            assertEquals(0, chico.position());
+        }
+
+        @Test
+        @DisplayName("Test unknown version and wrong record type are rejected")
+        void testVersionYTipo() {
+            CodecBinario.escribirTransferencia(buffer, 1, 2, 3, 2);
+            buffer.flip();
+            assertThrows(IllegalArgumentException.class, () -> CodecBinario.leerCuenta(buffer, new RegistroCuenta()));
+
+            buffer.put(0, (byte) 2);
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> CodecBinario.tipo(buffer));
+            assertEquals("Versión de formato no soportada: 2", exception.getMessage());
+        }
+
+        @Test
+        @DisplayName("Test partial records leave the position unchanged")
+        void testRegistroIncompleto() {
+            CodecBinario.escribirCuenta(buffer, 300, "Andrés", 100, 2);
+            CodecBinario.escribirTransferencia(buffer, 1, 300, 5, 2);
+            int finCuenta = 2 + 2 + 1 + Long.BYTES + 1 + "Andrés".getBytes(StandardCharsets.UTF_8).length;
+            int total = buffer.position();
+            buffer.flip();
+
+            RegistroCuenta cuenta = new RegistroCuenta();
+            RegistroTransferencia transferencia = new RegistroTransferencia();
+            for(int limite = 0; limite < finCuenta; limite++) {
+                buffer.limit(limite);
+                assertThrows(BufferUnderflowException.class, () -> CodecBinario.leerCuenta(buffer, cuenta));
+                assertEquals(0, buffer.position());
+            }
+            buffer.limit(total);
+            CodecBinario.leerCuenta(buffer, cuenta);
+            assertEquals(finCuenta, buffer.position());
+
+            // Como llegaría de la red: se compacta y se agrega el resto
+            byte ultimo = buffer.get(total - 1);
+            buffer.limit(total - 1);
+            assertThrows(BufferUnderflowException.class, () -> CodecBinario.leerTransferencia(buffer, transferencia));
+            assertEquals(finCuenta, buffer.position());
+            buffer.compact();
+            buffer.put(ultimo).flip();
+            CodecBinario.leerTransferencia(buffer, transferencia);
+            assertEquals(300, transferencia.getDestino());
+            assertFalse(buffer.hasRemaining());
+        }
+
+        @Test
+        @DisplayName("Test negative scale is rejected when reading")
+        void testEscalaNegativa() {
+            CodecBinario.escribirCuenta(buffer, 1, "John Doe", 100, 2);
+            CodecBinario.escribirTransferencia(buffer, 1, 2, 3, 2);
+            buffer.flip();
+            buffer.put(3, (byte) -1);
+
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> CodecBinario.leerCuenta(buffer, new RegistroCuenta()));
+            assertEquals("Escala fuera de rango: -1", exception.getMessage());
+            assertEquals(0, buffer.position());
+
+            buffer.put(3, (byte) 2);
+            CodecBinario.leerCuenta(buffer, new RegistroCuenta());
+            int inicio = buffer.position();
+            buffer.put(inicio + 4, (byte) -128);
+            assertThrows(IllegalArgumentException.class, () -> CodecBinario.leerTransferencia(buffer, new RegistroTransferencia()));
+            assertEquals(inicio, buffer.position());
+        }
+    }
+
+    @Test
+    @DisplayName("Test encode and decode one million records without allocating")
+    void testRendimiento() {
+        RegistroCuenta registro = new RegistroCuenta();
+        ByteBuffer directo = ByteBuffer.allocateDirect(64);
+        // Calentamiento para que el JIT compile el camino completo
+        idaYVuelta(directo, registro, 200_000);
+
+        assertTimeout(ofSeconds(5), () -> idaYVuelta(directo, registro, 1_000_000));
+
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(hilos.isThreadAllocatedMemorySupported() && hilos.isThreadAllocatedMemoryEnabled());
+        long hilo = Thread.currentThread().getId();
+        long antes = hilos.getThreadAllocatedBytes(hilo);
+        idaYVuelta(directo, registro, 1_000_000);
+        long asignados = hilos.getThreadAllocatedBytes(hilo) - antes;
+        // Margen para la propia medición; una asignación por registro serían megabytes
+        assertTrue(asignados < 64 * 1024, () -> "Se asignaron " + asignados + " bytes");
+    }
+
+    private static void idaYVuelta(ByteBuffer buffer, RegistroCuenta registro, int veces) {
+        for(int i = 0; i < veces; i++) {
+            buffer.clear();
+            CodecBinario.escribirCuenta(buffer, i, "John Doe", i * 100L, 2);
+            buffer.flip();
+            CodecBinario.leerCuenta(buffer, registro);
+            if(registro.getId() != i) {
+                fail("Registro " + i + " mal decodificado");
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.koshiroanz.junit.ejemplo.engine;
+
+import org.junit.jupiter.api.*;
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.SaldoEscalado;
+import org.koshiroanz.junit.ejemplo.models.TransferResult;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class MotorShardsTest {
+    Banco banco;
+    List<Cuenta> cuentas;
+
+    @BeforeEach
+    void init() {
+        banco = new Banco();
+        cuentas = new ArrayList<>();
+        for(int i = 0; i < 8; i++) {
+            Cuenta cuenta = new Cuenta("Persona " + i, new SaldoEscalado(new BigDecimal("1000.00"), 2));
+            banco.addCuenta(cuenta);
+            cuentas.add(cuenta);
+        }
+    }
+
+    @Test
+    @DisplayName("Test cross-shard transfer debits origin and credits destination")
+    void testTransferenciaEntreShards() throws Exception {
+        Cuenta origen = cuentas.get(0);
+        Cuenta destino = cuentas.get(1);
+        try(MotorShards motor = new MotorShards(banco, 2)) {
+            assertNotEquals(motor.particion(origen), motor.particion(destino));
+
+            TransferResult resultado = motor.transferir(origen, destino, new BigDecimal("250.50")).get(5, TimeUnit.SECONDS);
+
+            assertTrue(resultado.isExitosa());
+        }
+        assertEquals(new BigDecimal("749.50"), origen.getSaldo());
+        assertEquals(new BigDecimal("1250.50"), destino.getSaldo());
+        assertEquals(1, banco.getMetricas().instantanea().transferencias());
+    }
+
+    @Test
+    @DisplayName("Test overdraft is reported in the result and nothing is credited")
+    void testSinFondos() throws Exception {
+        Cuenta origen = cuentas.get(0);
+        Cuenta destino = cuentas.get(1);
+        TransferResult resultado;
+        try(MotorShards motor = new MotorShards(banco, 2)) {
+            resultado = motor.transferir(origen, destino, new BigDecimal("5000")).get(5, TimeUnit.SECONDS);
+        }
+        assertFalse(resultado.isExitosa());
+        assertInstanceOf(NotEnoughMoneyException.class, resultado.error());
+        assertEquals(new BigDecimal("1000.00"), origen.getSaldo());
+        assertEquals(new BigDecimal("1000.00"), destino.getSaldo());
+    }
+
+    @Test
+    @DisplayName("Test failed credit returns the money to the origin and the shard keeps running")
+    void testCreditoFallido() throws Exception {
+        Cuenta origen = new Cuenta("John Doe", new SaldoEscalado(new BigDecimal("10.000"), 3));
+        banco.addCuenta(origen);
+        Cuenta destino = cuentas.get(1);
+        TransferResult fallido;
+        TransferResult siguiente;
+        try(MotorShards motor = new MotorShards(banco, 2)) {
+            fallido = motor.transferir(origen, destino, new BigDecimal("1.005")).get(5, TimeUnit.SECONDS);
+            siguiente = motor.transferir(origen, destino, new BigDecimal("1.000")).get(5, TimeUnit.SECONDS);
+        }
+        assertInstanceOf(ArithmeticException.class, fallido.error());
+        assertTrue(siguiente.isExitosa());
+        assertEquals("9.000", origen.getSaldo().toPlainString());
+        assertEquals(new BigDecimal("1001.00"), destino.getSaldo());
+    }
+
+    @Test
+    @DisplayName("Test concurrent producers preserve the total balance across shards")
+    void testConservaSaldoTotal() throws Exception {
+        BigDecimal total = banco.saldoTotal();
+        List<CompletableFuture<TransferResult>> resultados = new ArrayList<>();
+        // Buffers pequeños para forzar el camino de reintento entre particiones
+        try(MotorShards motor = new MotorShards(banco, 4, 64)) {
+            Thread[] productores = new Thread[4];
+            for(int p = 0; p < productores.length; p++) {
+                Random random = new Random(p);
+                List<CompletableFuture<TransferResult>> propios = new ArrayList<>();
+                productores[p] = new Thread(() -> {
+                    for(int i = 0; i < 5_000; i++) {
+                        Cuenta origen = cuentas.get(random.nextInt(cuentas.size()));
+                        Cuenta destino = cuentas.get(random.nextInt(cuentas.size()));
+                        propios.add(motor.transferir(origen, destino, new BigDecimal("3.25")));
+                    }
+                    synchronized(resultados) {
+                        resultados.addAll(propios);
+                    }
+                });
+                productores[p].start();
+            }
+            for(Thread productor : productores) {
+                productor.join();
+            }
+        }
+        assertEquals(20_000, resultados.size());
+        assertTrue(resultados.stream().allMatch(CompletableFuture::isDone));
+        assertEquals(total, banco.saldoTotal());
+        assertTrue(cuentas.stream().allMatch(c -> c.getSaldo().signum() >= 0));
+    }
+
+    @Test
+    @DisplayName("Test closed engine rejects new transfers")
+    void testMotorDetenido() throws Exception {
+        MotorShards motor = new MotorShards(banco, 2);
+        motor.close();
+        assertThrows(IllegalStateException.class, () -> motor.transferir(cuentas.get(0), cuentas.get(1), BigDecimal.ONE));
+    }
+
+    @Test
+    @DisplayName("Test closing from an interrupted thread still drains and keeps the interrupt")
+    void testCerrarInterrumpido() {
+        BigDecimal total = banco.saldoTotal();
+        MotorShards motor = new MotorShards(banco, 2);
+        List<CompletableFuture<TransferResult>> resultados = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            resultados.add(motor.transferir(cuentas.get(i % cuentas.size()), cuentas.get((i + 1) % cuentas.size()), BigDecimal.ONE));
+        }
+
+        Thread.currentThread().interrupt();
+        motor.close();
+        assertTrue(Thread.interrupted());
+        assertTrue(resultados.stream().allMatch(CompletableFuture::isDone));
+        assertEquals(total, banco.saldoTotal());
+    }
+}
@@ -0,0 +1,145 @@
+package org.koshiroanz.junit.ejemplo.importer;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.SaldoDecimal;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class ImportadorCsvTest {
+    @TempDir
+    Path dir;
+
+    Banco banco;
+
+    @BeforeEach
+    void init() {
+        banco = new Banco();
+    }
+
+    @Test
+    @DisplayName("Test import accounts and transfers across small read buffers")
+    void testImportarCuentasYTransferencias() throws IOException {
+        Path cuentas = Files.writeString(dir.resolve("cuentas.csv"),
+                "id,persona,saldo\r\n" +
+                "9001, John Doe ,2500\r\n" +
+                "9002,\"Doe, Jane \"\"JD\"\"\",1000.5\r\n" +
+                "\r\n" +
+                "9003,Pepe,0.07");
+        Path transferencias = Files.writeString(dir.resolve("transferencias.csv"),
+                "origen,destino,monto\n" +
+                "9001,9002,500.25\n" +
+                "9003,9001,1\n" +
+                "9002,9999,1\n" +
+                "9002,9003,0.930\n");
+
+        // Un buffer de 16 bytes obliga a que las filas crucen varias lecturas
+        ImportadorCsv importador = new ImportadorCsv(banco, 2, 16);
+        importador.setTamanoLote(2);
+
+        assertEquals(new ResultadoImportacion(3, 3, 0), importador.importarCuentas(cuentas));
+        assertEquals(new ResultadoImportacion(4, 2, 2), importador.importarTransferencias(transferencias));
+
+        Cuenta john = banco.findById(9001).orElseThrow();
+        Cuenta jane = banco.findById(9002).orElseThrow();
+        Cuenta pepe = banco.findById(9003).orElseThrow();
+        assertAll(
+                () -> assertEquals("John Doe", john.getPersona()),
+                () -> assertEquals("Doe, Jane \"JD\"", jane.getPersona()),
+                () -> assertEquals(new BigDecimal("1999.75"), john.getSaldo()),
+                () -> assertEquals(new BigDecimal("1499.82"), jane.getSaldo()),
+                () -> assertEquals(new BigDecimal("1.00"), pepe.getSaldo()),
+                () -> assertEquals(jane, banco.findByPersona("Doe, Jane \"JD\"").orElseThrow())
+        );
+    }
+
+    @Test
+    @DisplayName("Test invalid amounts are reported with their line")
+    void testImportesInvalidos() throws IOException {
+        ImportadorCsv importador = new ImportadorCsv(banco, 2);
+        importador.setEncabezado(false);
+
+        Path letras = Files.writeString(dir.resolve("letras.csv"), "1,John,10\n2,Jane,1O\n");
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> importador.importarCuentas(letras));
+        assertTrue(exception.getMessage().startsWith("Línea 2"), exception::getMessage);
+
+        Path decimales = Files.writeString(dir.resolve("decimales.csv"), "3,Pepe,10.001\n");
+        assertThrows(ArithmeticException.class, () -> importador.importarCuentas(decimales));
+
+        Path campos = Files.writeString(dir.resolve("campos.csv"), "4,Pepe\n");
+        assertThrows(IllegalArgumentException.class, () -> importador.importarCuentas(campos));
+    }
+
+    @Test
+    @DisplayName("Test an existing account id is rejected with its line")
+    void testIdExistente() throws IOException {
+        banco.addCuenta(new Cuenta(5001, "John", new SaldoDecimal(new BigDecimal("100"))));
+        ImportadorCsv importador = new ImportadorCsv(banco, 2);
+        importador.setEncabezado(false);
+
+        Path existente = Files.writeString(dir.resolve("existente.csv"), "5002,Jane,10\n5001,Otro,10\n");
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> importador.importarCuentas(existente));
+        assertTrue(exception.getMessage().startsWith("Línea 2"), exception::getMessage);
+        assertEquals("John", banco.findById(5001).orElseThrow().getPersona());
+
+        // También un id repetido dentro del mismo archivo; las filas anteriores ya quedan importadas
+        Path repetido = Files.writeString(dir.resolve("repetido.csv"), "5003,Pepe,10\n5004,Ana,10\n5003,Otro,10\n");
+        exception = assertThrows(IllegalArgumentException.class, () -> importador.importarCuentas(repetido));
+        assertTrue(exception.getMessage().startsWith("Línea 3"), exception::getMessage);
+        assertEquals("Pepe", banco.findById(5003).orElseThrow().getPersona());
+
+        // Y el de una cuenta creada fuera del importador que el banco ya tiene
+        Cuenta creada = new Cuenta("Creada", BigDecimal.ONE);
+        banco.addCuenta(creada);
+        Path ajena = Files.writeString(dir.resolve("ajena.csv"), creada.getId() + ",Otro,10\n");
+        exception = assertThrows(IllegalArgumentException.class, () -> importador.importarCuentas(ajena));
+        assertTrue(exception.getMessage().startsWith("Línea 1"), exception::getMessage);
+        assertSame(creada, banco.findById(creada.getId()).orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Test non-positive transfer amounts are rejected with their line")
+    void testMontoNoPositivo() throws IOException {
+        Path cuentas = Files.writeString(dir.resolve("cuentas.csv"), "1001,John,100\n1002,Jane,100\n");
+        ImportadorCsv importador = new ImportadorCsv(banco, 2);
+        importador.setEncabezado(false);
+        importador.importarCuentas(cuentas);
+
+        Path cero = Files.writeString(dir.resolve("cero.csv"), "1001,1002,1\n1001,1002,0.00\n");
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> importador.importarTransferencias(cero));
+        assertTrue(exception.getMessage().startsWith("Línea 2"), exception::getMessage);
+
+        Path negativo = Files.writeString(dir.resolve("negativo.csv"), "1001,1002,-5\n");
+        exception = assertThrows(IllegalArgumentException.class, () -> importador.importarTransferencias(negativo));
+        assertTrue(exception.getMessage().startsWith("Línea 1"), exception::getMessage);
+        assertEquals(new BigDecimal("100.00"), banco.findById(1002).orElseThrow().getSaldo());
+    }
+
+    @Test
+    @DisplayName("Test large transfer file is applied in batches")
+    void testArchivoGrande() throws IOException {
+        Path cuentas = Files.writeString(dir.resolve("cuentas.csv"), "1001,John,100000\n1002,Jane,100000\n");
+        Path transferencias = dir.resolve("transferencias.csv");
+        try(Writer writer = Files.newBufferedWriter(transferencias)) {
+            for(int i = 0; i < 100_000; i++) {
+                writer.write(i % 2 == 0 ? "1001,1002,0.01\n" : "1002,1001,0.02\n");
+            }
+        }
+        ImportadorCsv importador = new ImportadorCsv(banco, 2);
+        importador.setEncabezado(false);
+        importador.importarCuentas(cuentas);
+
+        assertEquals(new ResultadoImportacion(100_000, 100_000, 0), importador.importarTransferencias(transferencias));
+        assertEquals(new BigDecimal("100500.00"), banco.findById(1001).orElseThrow().getSaldo());
+        assertEquals(new BigDecimal("200000.00"), banco.saldoTotal());
+    }
+}
@@ -0,0 +1,195 @@
+package org.koshiroanz.junit.ejemplo.journal;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.MovimientoListener;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class JournalTest {
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("Test Banco is rebuilt by replaying the journal")
+    void testRecuperarBanco() {
+        long idJohn;
+        long idJane;
+        try(Journal journal = Journal.abrir(directorio)) {
+            Banco banco = journal.recuperar(new Banco());
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000.50"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            banco.transferir(cuenta1, cuenta2, new BigDecimal("500"));
+            cuenta2.debito(new BigDecimal("0.25"));
+            cuenta1.setSaldo(new BigDecimal("1999.99"));
+            cuenta1.setPersona("John Doe con un nombre bastante más largo que un registro");
+            idJohn = cuenta1.getId();
+            idJane = cuenta2.getId();
+        }
+
+        try(Journal journal = Journal.abrir(directorio)) {
+            Banco banco = journal.recuperar(new Banco());
+            Cuenta cuenta1 = banco.findById(idJohn).orElseThrow();
+            Cuenta cuenta2 = banco.findById(idJane).orElseThrow();
+
+            assertAll(
+                    () -> assertEquals(2, banco.getCuentas().size()),
+                    () -> assertEquals("1999.99", cuenta1.getSaldo().toPlainString()),
+                    () -> assertEquals("1500.25", cuenta2.getSaldo().toPlainString()),
+                    () -> assertEquals("John Doe con un nombre bastante más largo que un registro", cuenta1.getPersona()),
+                    () -> assertSame(banco, cuenta1.getBanco()));
+
+            // Después de recuperar se sigue escribiendo al final del mismo journal
+            cuenta2.credito(BigDecimal.ONE);
+        }
+
+        try(Journal journal = Journal.abrir(directorio)) {
+            Banco banco = journal.recuperar(new Banco());
+            assertEquals("1501.25", banco.findById(idJane).orElseThrow().getSaldo().toPlainString());
+        }
+    }
+
+    @Test
+    @DisplayName("Test a transfer is journaled as a single record with both resulting balances")
+    void testTransferenciaUnRegistro() {
+        Cuenta john = new Cuenta("John Doe", new BigDecimal("2500"));
+        Cuenta jane = new Cuenta("Jane Doe", new BigDecimal("1000"));
+        long secuencia;
+        try(Journal journal = new Journal(directorio, Durabilidad.DIFERIDA, 64, 1)) {
+            Banco banco = journal.recuperar(new Banco());
+            banco.addCuenta(john);
+            banco.addCuenta(jane);
+            secuencia = journal.getUltimaSecuencia();
+            banco.transferir(john, jane, new BigDecimal("500"));
+
+            // Un listener posterior rechaza el crédito: el débito devuelto también queda en un registro
+            banco.addListener(new MovimientoListener() {
+                @Override
+                public void onCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+                    if(cuenta == jane) {
+                        throw new IllegalStateException("Crédito rechazado");
+                    }
+                }
+            });
+            assertThrows(IllegalStateException.class, () -> banco.transferir(john, jane, new BigDecimal("100")));
+        }
+
+        List<RegistroJournal> registros = new ArrayList<>();
+        Journal.leer(directorio, secuencia, registros::add);
+        assertEquals(List.of(TipoRegistro.TRANSFERENCIA, TipoRegistro.TRANSFERENCIA, TipoRegistro.TRANSFERENCIA),
+                registros.stream().map(RegistroJournal::tipo).toList());
+        RegistroJournal transferencia = registros.get(0);
+        assertAll(
+                () -> assertEquals(john.getId(), transferencia.cuentaId()),
+                () -> assertEquals(jane.getId(), transferencia.contraparteId()),
+                () -> assertEquals("500", transferencia.monto().toPlainString()),
+                () -> assertEquals("2000", transferencia.saldo().toPlainString()),
+                () -> assertEquals("1500", transferencia.saldoContraparte().toPlainString()));
+
+        try(Journal journal = Journal.abrir(directorio)) {
+            Banco banco = journal.recuperar(new Banco());
+            assertEquals("2000", banco.findById(john.getId()).orElseThrow().getSaldo().toPlainString());
+            assertEquals("1500", banco.findById(jane.getId()).orElseThrow().getSaldo().toPlainString());
+        }
+    }
+
+    @Test
+    @DisplayName("Test a persona cut before its continuation records is dropped as a torn tail")
+    void testPersonaCortada() throws IOException {
+        Cuenta john = new Cuenta("John Doe", new BigDecimal("2500"));
+        Cuenta larga = new Cuenta("x".repeat(100), BigDecimal.ONE);
+        try(Journal journal = new Journal(directorio, Durabilidad.DIFERIDA, 64, 1)) {
+            Banco banco = journal.recuperar(new Banco());
+            banco.addCuenta(john);
+            banco.addCuenta(larga);
+        }
+        // El alta de larga ocupa los registros 1 a 4: se simula un corte después del primero
+        try(FileChannel canal = FileChannel.open(Journal.segmentos(directorio).get(0), StandardOpenOption.WRITE)) {
+            for(int registro = 2; registro <= 4; registro++) {
+                canal.write(ByteBuffer.allocate(Long.BYTES), (long) registro * SegmentoJournal.TAMANIO_REGISTRO);
+            }
+        }
+
+        try(Journal journal = Journal.abrir(directorio)) {
+            Banco banco = journal.recuperar(new Banco());
+            assertEquals(List.of(john.getId()), banco.getCuentas().stream().map(Cuenta::getId).toList());
+            // Lo nuevo se escribe detrás del alta cortada
+            banco.findById(john.getId()).orElseThrow().credito(BigDecimal.ONE);
+        }
+
+        try(Journal journal = Journal.abrir(directorio)) {
+            Banco banco = journal.recuperar(new Banco());
+            assertEquals(1, banco.getCuentas().size());
+            assertEquals("2501", banco.findById(john.getId()).orElseThrow().getSaldo().toPlainString());
+        }
+    }
+
+    @Test
+    @DisplayName("Test journal rolls over to new segments")
+    void testRotarSegmentos() {
+        Cuenta cuenta = new Cuenta("John Doe", BigDecimal.ZERO);
+        try(Journal journal = new Journal(directorio, Durabilidad.DIFERIDA, 16, 1)) {
+            Banco banco = journal.recuperar(new Banco());
+            banco.addCuenta(cuenta);
+            for(int i = 0; i < 100; i++) {
+                cuenta.credito(BigDecimal.ONE);
+            }
+            assertEquals(101, journal.getUltimaSecuencia());
+        }
+
+        List<RegistroJournal> registros = new ArrayList<>();
+        Journal.leer(directorio, 90, registros::add);
+        assertEquals(11, registros.size());
+        assertEquals(91, registros.get(0).secuencia());
+
+        try(Journal journal = Journal.abrir(directorio)) {
+            Banco banco = journal.recuperar(new Banco());
+            assertEquals("100", banco.findById(cuenta.getId()).orElseThrow().getSaldo().toPlainString());
+        }
+    }
+
+    @Test
+    @DisplayName("Test a change the journal cannot record is rejected before it is applied")
+    void testRechazoAntesDeAplicar() {
+        try(Journal journal = new Journal(directorio, Durabilidad.DIFERIDA, 2, 1)) {
+            Banco banco = journal.recuperar(new Banco());
+            Cuenta john = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta jane = new Cuenta("Jane Doe", new BigDecimal(Long.MAX_VALUE - 10));
+            banco.addCuenta(john);
+            banco.addCuenta(jane);
+            long secuencia = journal.getUltimaSecuencia();
+
+            // El saldo resultante de jane no entra en un long: no se debita a john ni se escribe nada
+            assertThrows(ArithmeticException.class, () -> banco.transferir(john, jane, new BigDecimal("100")));
+            assertThrows(ArithmeticException.class, () -> john.setSaldo(new BigDecimal(BigInteger.ONE, 40_000)));
+            assertThrows(IllegalArgumentException.class, () -> john.setPersona("x".repeat(100)));
+            Cuenta larga = new Cuenta("x".repeat(100), BigDecimal.ONE);
+            assertThrows(IllegalArgumentException.class, () -> banco.addCuenta(larga));
+
+            assertAll(
+                    () -> assertEquals("2500", john.getSaldo().toPlainString()),
+                    () -> assertEquals(String.valueOf(Long.MAX_VALUE - 10), jane.getSaldo().toPlainString()),
+                    () -> assertEquals("John Doe", john.getPersona()),
+                    () -> assertTrue(banco.findById(larga.getId()).isEmpty()),
+                    () -> assertNull(larga.getBanco()),
+                    () -> assertEquals(2, banco.getCuentas().size()),
+                    () -> assertEquals(secuencia, journal.getUltimaSecuencia()));
+        }
+    }
+}
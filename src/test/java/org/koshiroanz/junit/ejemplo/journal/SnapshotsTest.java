@@ -0,0 +1,133 @@
+package org.koshiroanz.junit.ejemplo.journal;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class SnapshotsTest {
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("Test null personas are stored like the journal does and bad balances fail before writing")
+    void testSnapshotCuentasInvalidas() throws IOException {
+        Path snapshotDir = directorio.resolve("snapshots");
+        try(Journal journal = new Journal(directorio.resolve("journal"), Durabilidad.DIFERIDA, 64, 1)) {
+            Banco banco = new Banco();
+            Cuenta anonima = new Cuenta((String) null, new BigDecimal("10.50"));
+            banco.addCuenta(anonima);
+            Snapshots snapshots = new Snapshots(snapshotDir, banco, journal);
+            Path archivo = snapshots.tomar();
+
+            banco.addCuenta(new Cuenta("Enorme", new BigDecimal("123456789012345678901234567890")));
+            assertThrows(ArithmeticException.class, snapshots::tomar);
+            try(Stream<Path> archivos = Files.list(snapshotDir)) {
+                assertEquals(List.of(archivo), archivos.toList());
+            }
+
+            Banco recuperado = new Banco();
+            Snapshots.recuperar(snapshotDir, journal, recuperado);
+            assertEquals("", recuperado.findById(anonima.getId()).orElseThrow().getPersona());
+            assertEquals("10.50", recuperado.findById(anonima.getId()).orElseThrow().getSaldo().toPlainString());
+        }
+    }
+
+    @Test
+    @DisplayName("Test startup loads the snapshot and replays only the journal tail")
+    void testRecuperarDesdeSnapshot() {
+        Path journalDir = directorio.resolve("journal");
+        Path snapshotDir = directorio.resolve("snapshots");
+        long idJohn;
+        try(Journal journal = new Journal(journalDir, Durabilidad.DIFERIDA, 64, 1)) {
+            Banco banco = journal.recuperar(new Banco());
+            banco.setNombre("Santander Rio");
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+            for(int i = 0; i < 500; i++) {
+                banco.transferir(cuenta1, cuenta2, BigDecimal.ONE);
+            }
+
+            new Snapshots(snapshotDir, banco, journal).tomar();
+
+            banco.transferir(cuenta2, cuenta1, new BigDecimal("100"));
+            idJohn = cuenta1.getId();
+        }
+
+        try(Journal journal = Journal.abrir(journalDir)) {
+            Banco banco = new Banco();
+            Recuperacion recuperacion = Snapshots.recuperar(snapshotDir, journal, banco);
+
+            assertAll(
+                    () -> assertEquals(2, recuperacion.cuentasSnapshot()),
+                    // La transferencia posterior al snapshot es un único registro
+                    () -> assertEquals(1, recuperacion.registrosReproducidos()),
+                    () -> assertEquals("Santander Rio", banco.getNombre()),
+                    () -> assertEquals("2100", banco.findById(idJohn).orElseThrow().getSaldo().toPlainString()),
+                    () -> assertEquals("1400", banco.findByPersona("Jane Doe").orElseThrow().getSaldo().toPlainString()),
+                    () -> assertTrue(recuperacion.duracion().compareTo(Duration.ofSeconds(5)) < 0));
+        }
+    }
+
+    @Test
+    @DisplayName("Test snapshots taken during transfers recover the final state")
+    void testSnapshotsSinPausarTransferencias() throws Exception {
+        Path journalDir = directorio.resolve("journal");
+        Path snapshotDir = directorio.resolve("snapshots");
+        Map<Long, BigDecimal> esperados;
+        try(Journal journal = new Journal(journalDir, Durabilidad.DIFERIDA, 256, 1)) {
+            Banco banco = journal.recuperar(new Banco());
+            List<Cuenta> cuentas = new ArrayList<>();
+            for(int i = 0; i < 20; i++) {
+                Cuenta cuenta = new Cuenta("Persona " + i, new BigDecimal("1000"));
+                banco.addCuenta(cuenta);
+                cuentas.add(cuenta);
+            }
+
+            AtomicBoolean activo = new AtomicBoolean(true);
+            Thread transferencias = new Thread(() -> {
+                for(int i = 0; activo.get(); i++) {
+                    banco.transferir(cuentas.get(i % 20), cuentas.get((i * 7 + 1) % 20), BigDecimal.ONE);
+                }
+            });
+            transferencias.start();
+            try(Snapshots snapshots = new Snapshots(snapshotDir, banco, journal)) {
+                for(int i = 0; i < 5; i++) {
+                    Thread.sleep(20);
+                    snapshots.tomar();
+                }
+            }
+            Thread.sleep(20);
+            activo.set(false);
+            transferencias.join();
+
+            esperados = cuentas.stream().collect(Collectors.toMap(Cuenta::getId, Cuenta::getSaldo));
+        }
+
+        try(Journal journal = Journal.abrir(journalDir)) {
+            Banco banco = new Banco();
+            Snapshots.recuperar(snapshotDir, journal, banco);
+
+            assertEquals(20, banco.getCuentas().size());
+            esperados.forEach((id, saldo) ->
+                    assertEquals(saldo, banco.findById(id).orElseThrow().getSaldo(), () -> "Saldo distinto en la cuenta " + id));
+        }
+    }
+}
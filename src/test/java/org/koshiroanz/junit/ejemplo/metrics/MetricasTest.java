@@ -0,0 +1,121 @@
+package org.koshiroanz.junit.ejemplo.metrics;
+
+import org.junit.jupiter.api.*;
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class MetricasTest {
+    Banco banco;
+    Cuenta cuenta1;
+    Cuenta cuenta2;
+
+    @BeforeEach
+    void init() {
+        banco = new Banco();
+        banco.setNombre("Santander Rio");
+        cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+        cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000"));
+        banco.addCuenta(cuenta1);
+        banco.addCuenta(cuenta2);
+    }
+
+    @Test
+    @DisplayName("Test transfers, movements and rejections are counted")
+    void testContadores() {
+        banco.transferir(cuenta1, cuenta2, new BigDecimal("500"));
+        cuenta2.credito(BigDecimal.ONE);
+        assertThrows(NotEnoughMoneyException.class, () -> banco.transferir(cuenta2, cuenta1, new BigDecimal("5000")));
+
+        MetricasSnapshot snapshot = banco.getMetricas().instantanea();
+        assertAll(
+                () -> assertEquals(1, snapshot.transferencias()),
+                () -> assertEquals(2, snapshot.creditos()),
+                () -> assertEquals(1, snapshot.debitos()),
+                () -> assertEquals(1, snapshot.rechazos()),
+                () -> assertTrue(snapshot.latenciaMaxima() > 0),
+                () -> assertTrue(snapshot.latenciaP50() <= snapshot.latenciaP99()));
+    }
+
+    @Test
+    @DisplayName("Test disabled metrics record nothing")
+    void testDeshabilitadas() {
+        banco.getMetricas().setHabilitadas(false);
+        banco.transferir(cuenta1, cuenta2, new BigDecimal("500"));
+
+        assertEquals(new MetricasSnapshot(0, 0, 0, 0, 0, 0, 0, 0), banco.getMetricas().instantanea());
+    }
+
+    @Test
+    @DisplayName("Test metrics are readable through JMX")
+    void testJmx() throws Exception {
+        ObjectName nombre = banco.getMetricas().registrarJmx(banco.getNombre());
+        banco.transferir(cuenta1, cuenta2, new BigDecimal("500"));
+
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        assertEquals(1L, servidor.getAttribute(nombre, "Transferencias"));
+        servidor.unregisterMBean(nombre);
+    }
+
+    @Test
+    @DisplayName("Test histogram percentiles stay within the bucket precision")
+    void testPercentiles() {
+        Histograma histograma = new Histograma();
+        for(long i = 1; i <= 100000; i++) {
+            histograma.registrar(i);
+        }
+
+        assertAll(
+                () -> assertEquals(100000, histograma.getCantidad()),
+                () -> assertEquals(50000, histograma.percentil(50), 50000 * 0.016),
+                () -> assertEquals(99000, histograma.percentil(99), 99000 * 0.016),
+                () -> assertEquals(99900, histograma.percentil(99.9), 99900 * 0.016),
+                () -> assertEquals(100000, histograma.percentil(100)));
+    }
+
+    @Test
+    @DisplayName("Test histogram merges the counts recorded by several threads")
+    void testPercentilesConcurrentes() throws InterruptedException {
+        Histograma histograma = new Histograma();
+        Thread[] hilos = new Thread[8];
+        for(int h = 0; h < hilos.length; h++) {
+            long desde = h * 10000L + 1;
+            hilos[h] = new Thread(() -> {
+                for(long i = desde; i < desde + 10000; i++) {
+                    histograma.registrar(i);
+                }
+            });
+            hilos[h].start();
+        }
+        for(Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        assertAll(
+                () -> assertEquals(80000, histograma.getCantidad()),
+                () -> assertEquals(40000, histograma.percentil(50), 40000 * 0.016),
+                () -> assertEquals(80000, histograma.percentil(100)));
+
+        histograma.reiniciar();
+        assertEquals(0, histograma.getCantidad());
+    }
+
+    @Test
+    @DisplayName("Test histogram buckets are contiguous")
+    void testBuckets() {
+        for(long valor = 0; valor < 1 << 20; valor++) {
+            int indice = Histograma.indice(valor);
+            assertTrue(valor <= Histograma.limiteSuperior(indice));
+            assertTrue(indice == 0 || valor > Histograma.limiteSuperior(indice - 1));
+        }
+        assertEquals(Long.MAX_VALUE, Histograma.limiteSuperior(Histograma.indice(Long.MAX_VALUE)));
+    }
+}
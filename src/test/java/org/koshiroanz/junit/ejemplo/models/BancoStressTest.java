@@ -0,0 +1,488 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pruebas de estrés: muchos hilos operando sobre grafos de transferencias aleatorios. Se
+ * ejecutan con {@code mvn -Pstress test}. Cada corrida usa una semilla ({@code -Dstress.semilla})
+ * de la que salen las cuentas, el grafo y la secuencia de operaciones de cada hilo, y deja el
+ * historial de operaciones en {@code target/stress} para poder reproducir una falla.
+ */
+@Tag("stress")
+class BancoStressTest {
+    private static final Path DIRECTORIO_HISTORIAL = Path.of("target", "stress");
+
+    long semilla;
+    int hilos;
+    int operaciones;
+    Random random;
+
+    @BeforeEach
+    void init(TestInfo testInfo) {
+        semilla = Long.getLong("stress.semilla", System.nanoTime());
+        hilos = Integer.getInteger("stress.hilos", 8);
+        operaciones = Integer.getInteger("stress.operaciones", 20000);
+        random = new Random(semilla);
+        System.out.println(testInfo.getDisplayName() + " - semilla: " + semilla);
+    }
+
+    @Test
+    @DisplayName("Test random transfer graph conserves money, never goes negative and loses no updates")
+    void testGrafoAleatorio() throws Exception {
+        Banco banco = new Banco();
+        List<Cuenta> cuentas = crearCuentas(banco, "decimal", 2 + random.nextInt(31));
+        int[][] grafo = crearGrafo(cuentas.size());
+        banco.habilitarInstantaneas();
+        BigDecimal total = banco.saldoTotal();
+        List<String> violaciones = new ArrayList<>();
+
+        // Mientras tanto, las instantáneas nunca deben ver dinero en tránsito ni saldos negativos
+        AtomicBoolean terminado = new AtomicBoolean();
+        Thread observador = new Thread(() -> {
+            while(!terminado.get()) {
+                try(InstantaneaBanco instantanea = banco.abrirInstantanea()) {
+                    if(instantanea.saldoTotal().compareTo(total) != 0) {
+                        violaciones.add("Total de instantánea " + instantanea.saldoTotal() + " distinto de " + total);
+                    }
+                    for(Cuenta cuenta : instantanea.getCuentas()) {
+                        if(instantanea.getSaldo(cuenta).signum() < 0) {
+                            violaciones.add("Saldo negativo en instantánea: cuenta " + cuenta.getId());
+                        }
+                    }
+                }
+            }
+        });
+        observador.start();
+        Historial historial;
+        try {
+            historial = ejecutar(cuentas, (hilo, r, registro) -> {
+                int[] arista = grafo[r.nextInt(grafo.length)];
+                Cuenta origen = cuentas.get(arista[0]);
+                Cuenta destino = cuentas.get(arista[1]);
+                BigDecimal monto = BigDecimal.valueOf(1 + r.nextInt(5000), 2);
+                long inicio = System.nanoTime();
+                ResultadoOperacion resultado = banco.tryTransferir(origen, destino, monto);
+                registro.agregar(inicio, Tipo.TRANSFERENCIA, arista[0], arista[1], monto, resultado.isExitosa());
+            });
+        } finally {
+            terminado.set(true);
+            observador.join();
+        }
+
+        Path archivo = historial.guardar("grafo-aleatorio", cuentas);
+        String contexto = "semilla=" + semilla + ", historial: " + archivo;
+        assertTrue(violaciones.isEmpty(), () -> contexto + " " + violaciones);
+        assertEquals(0, total.compareTo(banco.saldoTotal()), () -> "El total no se conserva, " + contexto);
+        verificarSaldos(cuentas, historial, contexto);
+    }
+
+    @ParameterizedTest(name = "Saldo {0}")
+    @ValueSource(strings = {"decimal", "escalado", "caliente"})
+    @DisplayName("Test mixed transfers, debits and credits match the replayed history")
+    void testOperacionesMixtas(String tipoSaldo) throws Exception {
+        Banco banco = new Banco();
+        List<Cuenta> cuentas = crearCuentas(banco, tipoSaldo, 2 + random.nextInt(15));
+        int[][] grafo = crearGrafo(cuentas.size());
+
+        Historial historial = ejecutar(cuentas, (hilo, r, registro) -> {
+            BigDecimal monto = BigDecimal.valueOf(1 + r.nextInt(5000), 2);
+            long inicio = System.nanoTime();
+            int operacion = r.nextInt(10);
+            if(operacion < 8) {
+                int[] arista = grafo[r.nextInt(grafo.length)];
+                boolean exitosa = banco.tryTransferir(cuentas.get(arista[0]), cuentas.get(arista[1]), monto).isExitosa();
+                registro.agregar(inicio, Tipo.TRANSFERENCIA, arista[0], arista[1], monto, exitosa);
+            } else if(operacion == 8) {
+                int cuenta = r.nextInt(cuentas.size());
+                boolean exitosa = cuentas.get(cuenta).tryDebito(monto).isExitosa();
+                registro.agregar(inicio, Tipo.DEBITO, cuenta, -1, monto, exitosa);
+            } else {
+                int cuenta = r.nextInt(cuentas.size());
+                cuentas.get(cuenta).credito(monto);
+                registro.agregar(inicio, Tipo.CREDITO, -1, cuenta, monto, true);
+            }
+        });
+
+        Path archivo = historial.guardar("mixtas-" + tipoSaldo, cuentas);
+        verificarSaldos(cuentas, historial, "semilla=" + semilla + ", historial: " + archivo);
+    }
+
+    @Test
+    @DisplayName("Test contended debits on one account succeed exactly as many times as the balance allows")
+    void testDebitosContendidos() throws Exception {
+        Banco banco = new Banco();
+        int unidades = 1000 + random.nextInt(1000);
+        Cuenta cuenta = new Cuenta("Persona", new BigDecimal(unidades));
+        banco.addCuenta(cuenta);
+        int intentos = Math.max(1, 2 * unidades / hilos + 1);
+
+        Historial historial = ejecutar(List.of(cuenta), intentos, (hilo, r, registro) -> {
+            long inicio = System.nanoTime();
+            boolean exitosa;
+            try {
+                cuenta.debito(BigDecimal.ONE);
+                exitosa = true;
+            } catch(NotEnoughMoneyException e) {
+                exitosa = false;
+            }
+            registro.agregar(inicio, Tipo.DEBITO, 0, -1, BigDecimal.ONE, exitosa);
+        });
+
+        Path archivo = historial.guardar("debitos-contendidos", List.of(cuenta));
+        String contexto = "semilla=" + semilla + ", historial: " + archivo;
+        assertEquals(unidades, historial.exitosas(), () -> "Débitos exitosos, " + contexto);
+        assertEquals(0, cuenta.getSaldo().signum(), () -> "Saldo final " + cuenta.getSaldo() + ", " + contexto);
+        assertEquals(unidades, banco.getMetricas().instantanea().debitos(), () -> "Débitos registrados, " + contexto);
+        verificarPrecedencia(historial, contexto);
+    }
+
+    @ParameterizedTest(name = "Saldo {0}")
+    @ValueSource(strings = {"decimal", "escalado", "caliente"})
+    @DisplayName("Test debits and credits on one account respect their real-time order")
+    void testDebitosYCreditosUnaCuenta(String tipoSaldo) throws Exception {
+        Banco banco = new Banco();
+        List<Cuenta> cuentas = crearCuentas(banco, tipoSaldo, 1);
+        Cuenta cuenta = cuentas.get(0);
+
+        // Más débitos que créditos para que el saldo ronde el cero y haya rechazos
+        Historial historial = ejecutar(cuentas, (hilo, r, registro) -> {
+            BigDecimal monto = BigDecimal.valueOf(1 + r.nextInt(5000), 2);
+            long inicio = System.nanoTime();
+            if(r.nextInt(5) < 3) {
+                boolean exitosa = cuenta.tryDebito(monto).isExitosa();
+                registro.agregar(inicio, Tipo.DEBITO, 0, -1, monto, exitosa);
+            } else {
+                cuenta.credito(monto);
+                registro.agregar(inicio, Tipo.CREDITO, -1, 0, monto, true);
+            }
+        });
+
+        Path archivo = historial.guardar("una-cuenta-" + tipoSaldo, cuentas);
+        String contexto = "semilla=" + semilla + ", historial: " + archivo;
+        verificarSaldos(cuentas, historial, contexto);
+        verificarPrecedencia(historial, contexto);
+    }
+
+    private void verificarPrecedencia(Historial historial, String contexto) {
+        List<String> violaciones = historial.verificarPrecedencia(0);
+        assertTrue(violaciones.isEmpty(), () -> violaciones.size() + " débitos sin orden posible, " + contexto + " "
+                + violaciones.subList(0, Math.min(10, violaciones.size())));
+    }
+
+    // Cada cuenta debe terminar en su saldo inicial más lo que el historial dice que se le aplicó
+    private void verificarSaldos(List<Cuenta> cuentas, Historial historial, String contexto) {
+        BigDecimal[] esperados = historial.reproducir();
+        for(int i = 0; i < cuentas.size(); i++) {
+            Cuenta cuenta = cuentas.get(i);
+            BigDecimal esperado = esperados[i];
+            assertTrue(cuenta.getSaldo().signum() >= 0, () -> "Saldo negativo en cuenta " + cuenta.getId() + ", " + contexto);
+            assertEquals(0, esperado.compareTo(cuenta.getSaldo()),
+                    () -> "Cuenta " + cuenta.getId() + ": esperado " + esperado + ", actual " + cuenta.getSaldo() + ", " + contexto);
+        }
+    }
+
+    private List<Cuenta> crearCuentas(Banco banco, String tipoSaldo, int cantidad) {
+        List<Cuenta> cuentas = new ArrayList<>();
+        for(int i = 0; i < cantidad; i++) {
+            BigDecimal saldo = BigDecimal.valueOf(random.nextInt(100000), 2);
+            Saldo valor = switch(tipoSaldo) {
+                case "escalado" -> new SaldoEscalado(saldo, 2);
+                case "caliente" -> new SaldoCaliente(saldo, 2);
+                default -> new SaldoDecimal(saldo);
+            };
+            Cuenta cuenta = new Cuenta("Persona " + i, valor);
+            banco.addCuenta(cuenta);
+            cuentas.add(cuenta);
+        }
+        return cuentas;
+    }
+
+    // Aristas dirigidas al azar, con al menos un ciclo que recorre todas las cuentas
+    private int[][] crearGrafo(int cuentas) {
+        List<int[]> aristas = new ArrayList<>();
+        for(int i = 0; i < cuentas; i++) {
+            aristas.add(new int[]{i, (i + 1) % cuentas});
+        }
+        int extra = random.nextInt(cuentas * 2);
+        for(int i = 0; i < extra; i++) {
+            int origen = random.nextInt(cuentas);
+            int destino = random.nextInt(cuentas);
+            if(origen != destino) {
+                aristas.add(new int[]{origen, destino});
+            }
+        }
+        return aristas.toArray(new int[0][]);
+    }
+
+    private Historial ejecutar(List<Cuenta> cuentas, Operacion operacion) throws Exception {
+        return ejecutar(cuentas, operaciones, operacion);
+    }
+
+    // Cada hilo tiene su propio Random derivado de la semilla y su propio registro, sin locks compartidos
+    private Historial ejecutar(List<Cuenta> cuentas, int iteraciones, Operacion operacion) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch inicio = new CountDownLatch(1);
+        Historial historial = new Historial(cuentas);
+        List<Future<?>> futuros = new ArrayList<>();
+        for(int h = 0; h < hilos; h++) {
+            int hilo = h;
+            Registro registro = historial.nuevoRegistro(hilo, iteraciones);
+            Random r = new Random(semilla + hilo + 1);
+            futuros.add(executor.submit(() -> {
+                inicio.await();
+                for(int i = 0; i < iteraciones; i++) {
+                    operacion.ejecutar(hilo, r, registro);
+                }
+                return null;
+            }));
+        }
+        inicio.countDown();
+        for(Future<?> futuro : futuros) {
+            futuro.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        return historial;
+    }
+
+    interface Operacion {
+        void ejecutar(int hilo, Random random, Registro registro);
+    }
+
+    enum Tipo {
+        TRANSFERENCIA, DEBITO, CREDITO
+    }
+
+    // Operaciones de un hilo en orden de programa; -1 en origen o destino cuando no aplica.
+    // El intervalo [inicio, fin] contiene el momento en que la operación tuvo efecto.
+    static class Registro {
+        final int hilo;
+        final long[] inicios;
+        final long[] fines;
+        final Tipo[] tipos;
+        final int[] origenes;
+        final int[] destinos;
+        final BigDecimal[] montos;
+        final boolean[] exitosas;
+        int cantidad;
+
+        Registro(int hilo, int capacidad) {
+            this.hilo = hilo;
+            this.inicios = new long[capacidad];
+            this.fines = new long[capacidad];
+            this.tipos = new Tipo[capacidad];
+            this.origenes = new int[capacidad];
+            this.destinos = new int[capacidad];
+            this.montos = new BigDecimal[capacidad];
+            this.exitosas = new boolean[capacidad];
+        }
+
+        void agregar(long inicio, Tipo tipo, int origen, int destino, BigDecimal monto, boolean exitosa) {
+            int i = cantidad++;
+            inicios[i] = inicio;
+            fines[i] = System.nanoTime();
+            tipos[i] = tipo;
+            origenes[i] = origen;
+            destinos[i] = destino;
+            montos[i] = monto;
+            exitosas[i] = exitosa;
+        }
+    }
+
+    class Historial {
+        private final List<Registro> registros = new ArrayList<>();
+        private final BigDecimal[] iniciales;
+
+        Historial(List<Cuenta> cuentas) {
+            iniciales = cuentas.stream().map(Cuenta::getSaldo).toArray(BigDecimal[]::new);
+        }
+
+        Registro nuevoRegistro(int hilo, int capacidad) {
+            Registro registro = new Registro(hilo, capacidad);
+            registros.add(registro);
+            return registro;
+        }
+
+        long exitosas() {
+            long exitosas = 0;
+            for(Registro registro : registros) {
+                for(int i = 0; i < registro.cantidad; i++) {
+                    exitosas += registro.exitosas[i] ? 1 : 0;
+                }
+            }
+            return exitosas;
+        }
+
+        /**
+         * Comprueba cada débito de la cuenta contra el orden real de las operaciones: lo que
+         * terminó antes de que un débito empezara se aplicó antes que él, y lo que empezó después
+         * de que terminara se aplicó después. Un débito rechazado cuando aun en el peor orden
+         * posible había saldo, o uno aceptado cuando ni en el mejor orden alcanzaba, no admite
+         * ningún orden lineal. Sólo vale si la cuenta no participó de transferencias.
+         */
+        List<String> verificarPrecedencia(int cuenta) {
+            Intervalos creditos = new Intervalos();
+            Intervalos debitos = new Intervalos();
+            for(Registro registro : registros) {
+                for(int i = 0; i < registro.cantidad; i++) {
+                    if(registro.exitosas[i] && registro.destinos[i] == cuenta) {
+                        creditos.agregar(registro.inicios[i], registro.fines[i], centavos(registro.montos[i]));
+                    } else if(registro.exitosas[i] && registro.origenes[i] == cuenta) {
+                        debitos.agregar(registro.inicios[i], registro.fines[i], centavos(registro.montos[i]));
+                    }
+                }
+            }
+            creditos.ordenar();
+            debitos.ordenar();
+
+            long inicial = centavos(iniciales[cuenta]);
+            List<String> violaciones = new ArrayList<>();
+            for(Registro registro : registros) {
+                for(int i = 0; i < registro.cantidad; i++) {
+                    if(registro.origenes[i] != cuenta) {
+                        continue;
+                    }
+                    long monto = centavos(registro.montos[i]);
+                    long inicio = registro.inicios[i];
+                    long fin = registro.fines[i];
+                    if(registro.exitosas[i]) {
+                        long maximo = inicial + creditos.empezadosHasta(fin) - debitos.terminadosAntesDe(inicio);
+                        if(maximo < monto) {
+                            violaciones.add("hilo " + registro.hilo + " op " + i + ": débito de " + monto + " aceptado con saldo máximo " + maximo);
+                        }
+                    } else {
+                        long minimo = inicial + creditos.terminadosAntesDe(inicio) - debitos.empezadosHasta(fin);
+                        if(minimo >= monto) {
+                            violaciones.add("hilo " + registro.hilo + " op " + i + ": débito de " + monto + " rechazado con saldo mínimo " + minimo);
+                        }
+                    }
+                }
+            }
+            return violaciones;
+        }
+
+        private static long centavos(BigDecimal monto) {
+            return monto.movePointRight(2).longValueExact();
+        }
+
+        // Los movimientos conmutan, así que el saldo final no depende del orden entre hilos
+        BigDecimal[] reproducir() {
+            BigDecimal[] saldos = iniciales.clone();
+            for(Registro registro : registros) {
+                for(int i = 0; i < registro.cantidad; i++) {
+                    if(!registro.exitosas[i]) {
+                        continue;
+                    }
+                    if(registro.origenes[i] >= 0) {
+                        saldos[registro.origenes[i]] = saldos[registro.origenes[i]].subtract(registro.montos[i]);
+                    }
+                    if(registro.destinos[i] >= 0) {
+                        saldos[registro.destinos[i]] = saldos[registro.destinos[i]].add(registro.montos[i]);
+                    }
+                }
+            }
+            return saldos;
+        }
+
+        /**
+         * Escribe el historial: la semilla, los saldos iniciales y finales de cada cuenta y una
+         * línea por operación, ordenadas por hilo. Devuelve la ruta del archivo.
+         */
+        Path guardar(String nombre, List<Cuenta> cuentas) throws IOException {
+            Files.createDirectories(DIRECTORIO_HISTORIAL);
+            Path archivo = DIRECTORIO_HISTORIAL.resolve(nombre + "-" + semilla + ".log");
+            try(Writer writer = Files.newBufferedWriter(archivo)) {
+                writer.write("# semilla=" + semilla + " hilos=" + registros.size() + " operaciones=" + registros.get(0).inicios.length + "\n");
+                for(int i = 0; i < cuentas.size(); i++) {
+                    writer.write("# cuenta " + i + " id=" + cuentas.get(i).getId() + " inicial=" + iniciales[i] + " final=" + cuentas.get(i).getSaldo() + "\n");
+                }
+                writer.write("# hilo inicio fin tipo origen destino monto exitosa\n");
+                for(Registro registro : registros) {
+                    for(int i = 0; i < registro.cantidad; i++) {
+                        writer.write(registro.hilo + " " + registro.inicios[i] + " " + registro.fines[i] + " " + registro.tipos[i] + " "
+                                + registro.origenes[i] + " " + registro.destinos[i] + " " + registro.montos[i] + " " + registro.exitosas[i] + "\n");
+                    }
+                }
+            }
+            return archivo;
+        }
+    }
+
+    // Montos ordenados por inicio y por fin con sumas acumuladas, para sumar en O(log n)
+    static class Intervalos {
+        private final List<long[]> operaciones = new ArrayList<>();
+        private long[] inicios;
+        private long[] sumasPorInicio;
+        private long[] fines;
+        private long[] sumasPorFin;
+
+        void agregar(long inicio, long fin, long monto) {
+            operaciones.add(new long[]{inicio, fin, monto});
+        }
+
+        void ordenar() {
+            long[][] ordenadas = operaciones.toArray(new long[0][]);
+            Arrays.sort(ordenadas, Comparator.comparingLong(o -> o[0]));
+            inicios = new long[ordenadas.length];
+            sumasPorInicio = acumular(ordenadas, inicios, 0);
+            Arrays.sort(ordenadas, Comparator.comparingLong(o -> o[1]));
+            fines = new long[ordenadas.length];
+            sumasPorFin = acumular(ordenadas, fines, 1);
+        }
+
+        // Suma de las operaciones que empezaron antes de t o justo en t, que pudieron aplicarse antes
+        long empezadosHasta(long t) {
+            return sumasPorInicio[contarMenores(inicios, t + 1)];
+        }
+
+        // Suma de las operaciones que terminaron antes de t, que seguro se aplicaron antes
+        long terminadosAntesDe(long t) {
+            return sumasPorFin[contarMenores(fines, t)];
+        }
+
+        private static long[] acumular(long[][] ordenadas, long[] claves, int campo) {
+            long[] sumas = new long[ordenadas.length + 1];
+            for(int i = 0; i < ordenadas.length; i++) {
+                claves[i] = ordenadas[i][campo];
+                sumas[i + 1] = sumas[i] + ordenadas[i][2];
+            }
+            return sumas;
+        }
+
+        private static int contarMenores(long[] ordenados, long limite) {
+            int desde = 0;
+            int hasta = ordenados.length;
+            while(desde < hasta) {
+                int medio = (desde + hasta) >>> 1;
+                if(ordenados[medio] < limite) {
+                    desde = medio + 1;
+                } else {
+                    hasta = medio;
+                }
+            }
+            return desde;
+        }
+    }
+}
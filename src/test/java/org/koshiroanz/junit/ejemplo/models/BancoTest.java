@@ -0,0 +1,616 @@
+package org.koshiroanz.junit.ejemplo.models;
+
+import org.junit.jupiter.api.*;
+import org.koshiroanz.junit.ejemplo.exceptions.LimiteExcedidoException;
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class BancoTest {
+    Banco banco;
+
+    @BeforeEach
+    void init() {
+        this.banco = new Banco();
+        this.banco.setNombre("Santander Rio");
+    }
+
+    @Nested
+    @DisplayName("Test de Búsqueda de Cuentas")
+    class BancoTestBusqueda {
+        @Test
+        @DisplayName("Test find accounts by id and persona")
+        void testFindByIdYPersona() {
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta cuenta2 = new Cuenta("John Doe", new BigDecimal("2500"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            assertAll(
+                    () -> assertSame(cuenta2, banco.findById(cuenta2.getId()).orElseThrow()),
+                    () -> assertSame(cuenta1, banco.findByPersona("John Doe").orElseThrow()),
+                    () -> assertEquals(2, banco.findAllByPersona("John Doe").size()),
+                    () -> assertTrue(banco.findByPersona("Jane Doe").isEmpty()),
+                    () -> assertTrue(banco.findById(-1).isEmpty()));
+        }
+
+        @Test
+        @DisplayName("Test adding an account with an existing id is rejected")
+        void testIdDuplicado() {
+            Cuenta cuenta1 = new Cuenta(1, "John Doe", new SaldoDecimal(new BigDecimal("2500")));
+            Cuenta cuenta2 = new Cuenta(1, "Jane Doe", new SaldoDecimal(new BigDecimal("1000")));
+            banco.addCuenta(cuenta1);
+
+            assertThrows(IllegalArgumentException.class, () -> banco.addCuenta(cuenta2));
+            assertThrows(IllegalArgumentException.class, () -> banco.addCuenta(cuenta1));
+            assertSame(cuenta1, banco.findById(1).orElseThrow());
+            assertEquals(1, banco.getCuentas().size());
+            assertTrue(banco.findByPersona("Jane Doe").isEmpty());
+            assertNull(cuenta2.getBanco());
+        }
+
+        @Test
+        @DisplayName("Test persona index follows renamed accounts")
+        void testReindexarPersona() {
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta cuenta2 = new Cuenta("John Doe", new BigDecimal("2500"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            cuenta1.setPersona("Jane Doe");
+
+            assertSame(cuenta1, banco.findByPersona("Jane Doe").orElseThrow());
+            assertSame(cuenta2, banco.findByPersona("John Doe").orElseThrow());
+            assertEquals(1, banco.findAllByPersona("John Doe").size());
+        }
+
+        @Test
+        @DisplayName("Test concurrent inserts are all indexed")
+        void testAltasConcurrentes() throws Exception {
+            ejecutarEnParalelo(4, 2500, i -> banco.addCuenta(new Cuenta("Persona " + (i % 100), BigDecimal.ONE)));
+
+            assertEquals(10000, banco.getCuentas().size());
+            assertEquals(10000, banco.getCuentas().stream()
+                    .filter(c -> banco.findById(c.getId()).isPresent())
+                    .count());
+        }
+    }
+
+    @Nested
+    @DisplayName("Test de Transferencias en Lote")
+    class BancoTestLote {
+        @Test
+        @DisplayName("Test batch applies transfers on the same account in order")
+        void testLoteEnOrden() {
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("100"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", BigDecimal.ZERO);
+            Cuenta cuenta3 = new Cuenta("Pepe", BigDecimal.ZERO);
+
+            // La segunda sólo tiene fondos si la primera se aplicó antes
+            List<TransferResult> resultados = banco.transferirBatch(List.of(
+                    new Transfer(cuenta1, cuenta2, new BigDecimal("100")),
+                    new Transfer(cuenta2, cuenta3, new BigDecimal("60")),
+                    new Transfer(cuenta2, cuenta3, new BigDecimal("60"))));
+
+            assertAll(
+                    () -> assertTrue(resultados.get(0).isExitosa()),
+                    () -> assertTrue(resultados.get(1).isExitosa()),
+                    () -> assertInstanceOf(NotEnoughMoneyException.class, resultados.get(2).error()),
+                    () -> assertEquals("0", cuenta1.getSaldo().toPlainString()),
+                    () -> assertEquals("40", cuenta2.getSaldo().toPlainString()),
+                    () -> assertEquals("60", cuenta3.getSaldo().toPlainString()));
+        }
+
+        @Test
+        @DisplayName("Test batch of independent transfers keeps the total")
+        void testLoteIndependiente() {
+            List<Cuenta> cuentas = new ArrayList<>();
+            for(int i = 0; i < 200; i++) {
+                cuentas.add(new Cuenta("Persona " + i, new BigDecimal("10")));
+            }
+            List<Transfer> transferencias = new ArrayList<>();
+            for(int i = 0; i < 10000; i++) {
+                transferencias.add(new Transfer(cuentas.get(i % 200), cuentas.get((i * 7 + 3) % 200), new BigDecimal("3")));
+            }
+
+            List<TransferResult> resultados = banco.transferirBatch(transferencias);
+
+            assertEquals(transferencias.size(), resultados.size());
+            for(int i = 0; i < resultados.size(); i++) {
+                assertSame(transferencias.get(i), resultados.get(i).transfer());
+            }
+            assertEquals("2000", cuentas.stream().map(Cuenta::getSaldo).reduce(BigDecimal.ZERO, BigDecimal::add).toPlainString());
+            assertTrue(cuentas.stream().allMatch(c -> c.getSaldo().signum() >= 0));
+        }
+    }
+
+    @Nested
+    @DisplayName("Test de Transferencias sin Excepciones")
+    class BancoTestTryTransferir {
+        @Test
+        @DisplayName("Test tryTransferir returns a result code and counts rejections")
+        void testTryTransferir() {
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            assertEquals(ResultadoOperacion.EXITOSA, banco.tryTransferir(cuenta1, cuenta2, new BigDecimal("500")));
+            assertEquals(ResultadoOperacion.SIN_FONDOS, banco.tryTransferir(cuenta2, cuenta1, new BigDecimal("5000")));
+
+            assertAll(
+                    () -> assertEquals("2000", cuenta1.getSaldo().toPlainString()),
+                    () -> assertEquals("1500", cuenta2.getSaldo().toPlainString()),
+                    () -> assertEquals(1, banco.getMetricas().instantanea().transferencias()),
+                    () -> assertEquals(1, banco.getMetricas().instantanea().rechazos())
+            );
+            assertThrows(NotEnoughMoneyException.class, () -> banco.transferir(cuenta2, cuenta1, new BigDecimal("5000")));
+        }
+    }
+
+    @Nested
+    @DisplayName("Test de Instantáneas de Banco")
+    class BancoTestInstantaneas {
+        @Test
+        @DisplayName("Test snapshot keeps balances at its cut and only stores changed accounts")
+        void testInstantanea() {
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000"));
+            Cuenta cuenta3 = new Cuenta("Pepe", new BigDecimal("300"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+            banco.addCuenta(cuenta3);
+            assertThrows(IllegalStateException.class, () -> banco.abrirInstantanea());
+            banco.habilitarInstantaneas();
+
+            try(InstantaneaBanco instantanea = banco.abrirInstantanea()) {
+                banco.transferir(cuenta1, cuenta2, new BigDecimal("500"));
+                cuenta1.setSaldo(BigDecimal.ZERO);
+                banco.addCuenta(new Cuenta("Nueva", new BigDecimal("999")));
+
+                assertAll(
+                        () -> assertEquals("2500", instantanea.getSaldo(cuenta1).toPlainString()),
+                        () -> assertEquals("1000", instantanea.getSaldo(cuenta2).toPlainString()),
+                        () -> assertEquals("300", instantanea.getSaldo(cuenta3).toPlainString()),
+                        () -> assertEquals(2, instantanea.getCambios()),
+                        () -> assertEquals(List.of(cuenta1, cuenta2, cuenta3), instantanea.getCuentas()),
+                        () -> assertEquals(new BigDecimal("3800"), instantanea.saldoTotal())
+                );
+
+                try(InstantaneaBanco posterior = banco.abrirInstantanea()) {
+                    cuenta2.debito(new BigDecimal("100"));
+                    assertEquals("1500", posterior.getSaldo(cuenta2).toPlainString());
+                    assertEquals("1000", instantanea.getSaldo(cuenta2).toPlainString());
+                    assertEquals(1, posterior.getCambios());
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Test snapshots opened during concurrent transfers never see money in flight")
+        void testInstantaneasConcurrentes() throws Exception {
+            List<Cuenta> cuentas = new ArrayList<>();
+            for(int i = 0; i < 8; i++) {
+                Cuenta cuenta = new Cuenta("Persona " + i, new BigDecimal("1000"));
+                banco.addCuenta(cuenta);
+                cuentas.add(cuenta);
+            }
+            banco.habilitarInstantaneas();
+            BigDecimal total = new BigDecimal("8000");
+            List<BigDecimal> totales = new ArrayList<>();
+
+            ejecutarEnParalelo(4, 3000, i -> {
+                if(i % 100 == 0) {
+                    try(InstantaneaBanco instantanea = banco.abrirInstantanea()) {
+                        synchronized (totales) {
+                            totales.add(instantanea.saldoTotal());
+                        }
+                    }
+                    return;
+                }
+                try {
+                    banco.transferir(cuentas.get(i % 8), cuentas.get((i * 5 + 1) % 8), new BigDecimal("7"));
+                } catch(NotEnoughMoneyException e) {
+                    // Se ignora
+                }
+            });
+
+            assertFalse(totales.isEmpty());
+            assertTrue(totales.stream().allMatch(t -> t.compareTo(total) == 0), () -> "Totales: " + totales);
+        }
+    }
+
+    @Nested
+    @DisplayName("Test de Concurrencia de Banco")
+    class BancoTestConcurrencia {
+        @Test
+        @DisplayName("Test opposite transfers do not deadlock and keep the total")
+        void testTransferenciasOpuestas() {
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("10000"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("10000"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                ejecutarEnParalelo(4, 5000, i -> {
+                    if(i % 2 == 0) {
+                        banco.transferir(cuenta1, cuenta2, BigDecimal.ONE);
+                    } else {
+                        banco.transferir(cuenta2, cuenta1, BigDecimal.ONE);
+                    }
+                });
+            });
+
+            assertEquals("20000", cuenta1.getSaldo().add(cuenta2.getSaldo()).toPlainString(),
+                    () -> "El total de dinero no se conserva");
+        }
+
+        @Test
+        @DisplayName("Test concurrent credits are not lost")
+        void testCreditosConcurrentes() throws Exception {
+            Cuenta cuenta = new Cuenta("John Doe", BigDecimal.ZERO);
+
+            ejecutarEnParalelo(4, 10000, i -> cuenta.credito(BigDecimal.ONE));
+
+            assertEquals(40000, cuenta.getSaldo().intValue(), () -> "Se perdieron créditos");
+        }
+    }
+
+    @Nested
+    @DisplayName("Test de Agregados de Banco")
+    class BancoTestAgregados {
+        @Test
+        @DisplayName("Test a movement undone by a failing listener leaves no trace in aggregates or history")
+        void testMovimientoDeshecho() {
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("100"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("100"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+            AgregadosBanco agregados = banco.habilitarAgregados(2);
+            banco.habilitarHistorial(2);
+            banco.addListener(new MovimientoListener() {
+                @Override
+                public void onDebito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+                    throw new IllegalStateException("Débito rechazado");
+                }
+
+                @Override
+                public void onCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+                    if(cuenta == cuenta2) {
+                        throw new IllegalStateException("Crédito rechazado");
+                    }
+                }
+            });
+
+            assertThrows(IllegalStateException.class, () -> cuenta1.debito(new BigDecimal("30")));
+            assertThrows(IllegalStateException.class, () -> cuenta2.credito(new BigDecimal("30")));
+            cuenta1.credito(BigDecimal.ONE);
+
+            assertAll(
+                    () -> assertEquals("101", cuenta1.getSaldo().toPlainString()),
+                    () -> assertEquals("100", cuenta2.getSaldo().toPlainString()),
+                    () -> assertEquals(0, new BigDecimal("201").compareTo(agregados.saldoTotal())),
+                    () -> assertEquals(0, new BigDecimal("101").compareTo(agregados.saldoTotal("John Doe"))),
+                    () -> assertEquals(1, cuenta1.getHistorial().orElseThrow().getCantidad()),
+                    () -> assertEquals(0, cuenta2.getHistorial().orElseThrow().getCantidad()),
+                    () -> assertEquals("1.00", cuenta1.getHistorial().orElseThrow()
+                            .consultar(Long.MIN_VALUE, Long.MAX_VALUE, 0, 10).movimientos().get(0).monto().toPlainString()));
+        }
+
+        @Test
+        @DisplayName("Test aggregates follow debits, credits, transfers and persona changes")
+        void testAgregadosIncrementales() {
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000"));
+            banco.addCuenta(cuenta1);
+            AgregadosBanco agregados = banco.habilitarAgregados(2);
+            banco.addCuenta(cuenta2);
+            Cuenta cuenta3 = new Cuenta("John Doe", new BigDecimal("300"));
+            banco.addCuenta(cuenta3);
+
+            banco.transferir(cuenta1, cuenta2, new BigDecimal("500"));
+            cuenta3.credito(new BigDecimal("0.50"));
+            cuenta2.debito(BigDecimal.TEN);
+
+            assertAll(
+                    () -> assertSame(agregados, banco.getAgregados().orElseThrow()),
+                    () -> assertEquals(0, new BigDecimal("3790.50").compareTo(banco.saldoTotal())),
+                    () -> assertEquals(3, agregados.cantidadCuentas()),
+                    () -> assertEquals(0, new BigDecimal("2300.50").compareTo(agregados.saldoTotal("John Doe"))),
+                    () -> assertEquals(List.of(cuenta1, cuenta2), agregados.topCuentas())
+            );
+
+            cuenta3.setPersona("Jane Doe");
+            assertEquals(0, new BigDecimal("1790.50").compareTo(agregados.saldoTotal("Jane Doe")));
+            assertEquals(0, new BigDecimal("2000").compareTo(agregados.saldoTotal("John Doe")));
+        }
+
+        @Test
+        @DisplayName("Test top-N is rebuilt when a ranked account drops")
+        void testTopConBajas() {
+            AgregadosBanco agregados = banco.habilitarAgregados(2);
+            Cuenta rica = new Cuenta("John Doe", new BigDecimal("5000"));
+            Cuenta media = new Cuenta("Jane Doe", new BigDecimal("3000"));
+            Cuenta pobre = new Cuenta("Pepe", new BigDecimal("1000"));
+            banco.addCuenta(rica);
+            banco.addCuenta(media);
+            banco.addCuenta(pobre);
+            assertEquals(List.of(rica, media), agregados.topCuentas());
+
+            rica.setSaldo(BigDecimal.ONE);
+            assertEquals(List.of(media, pobre), agregados.topCuentas());
+
+            pobre.credito(new BigDecimal("9000"));
+            assertEquals(List.of(pobre, media), agregados.topCuentas());
+        }
+
+        @Test
+        @DisplayName("Test top-N keeps spare candidates so drops do not rescan every account")
+        void testTopSinReconstruir() {
+            AgregadosBanco agregados = banco.habilitarAgregados(3);
+            List<Cuenta> cuentas = new ArrayList<>();
+            for(int i = 1; i <= 20; i++) {
+                Cuenta cuenta = new Cuenta("Persona " + i, new BigDecimal(i * 100));
+                banco.addCuenta(cuenta);
+                cuentas.add(cuenta);
+            }
+
+            // Con 6 candidatas, bajar tres cuentas del ranking todavía deja 3
+            for(int i = 19; i >= 17; i--) {
+                cuentas.get(i).setSaldo(BigDecimal.ONE);
+            }
+            assertEquals(List.of(cuentas.get(16), cuentas.get(15), cuentas.get(14)), agregados.topCuentas());
+            assertEquals(0, agregados.getReconstrucciones());
+
+            cuentas.get(0).credito(new BigDecimal("5000"));
+            cuentas.get(16).debito(new BigDecimal("1700"));
+            assertEquals(List.of(cuentas.get(0), cuentas.get(15), cuentas.get(14)), agregados.topCuentas());
+            assertEquals(0, agregados.getReconstrucciones());
+
+            cuentas.get(15).setSaldo(BigDecimal.ONE);
+            cuentas.get(14).setSaldo(BigDecimal.ONE);
+            assertEquals(List.of(cuentas.get(0), cuentas.get(13), cuentas.get(12)), agregados.topCuentas());
+            assertEquals(1, agregados.getReconstrucciones());
+        }
+
+        @Test
+        @DisplayName("Test aggregates stay exact under concurrent transfers")
+        void testAgregadosConcurrentes() throws Exception {
+            List<Cuenta> cuentas = new ArrayList<>();
+            for(int i = 0; i < 8; i++) {
+                Cuenta cuenta = new Cuenta("Persona " + (i % 2), new BigDecimal("1000"));
+                banco.addCuenta(cuenta);
+                cuentas.add(cuenta);
+            }
+            AgregadosBanco agregados = banco.habilitarAgregados(3);
+
+            ejecutarEnParalelo(4, 2000, i -> {
+                try {
+                    banco.transferir(cuentas.get(i % 8), cuentas.get((i * 7 + 3) % 8), new BigDecimal("1.25"));
+                } catch(NotEnoughMoneyException e) {
+                    // Se ignora, el total igual debe conservarse
+                }
+            });
+
+            BigDecimal persona0 = cuentas.stream().filter(c -> c.getPersona().equals("Persona 0"))
+                    .map(Cuenta::getSaldo).reduce(BigDecimal.ZERO, BigDecimal::add);
+            List<Cuenta> esperado = cuentas.stream()
+                    .sorted(Comparator.comparing(Cuenta::getSaldo).reversed().thenComparingLong(Cuenta::getId))
+                    .limit(3).toList();
+            assertEquals(0, new BigDecimal("8000").compareTo(agregados.saldoTotal()));
+            assertEquals(0, persona0.compareTo(agregados.saldoTotal("Persona 0")));
+            assertEquals(esperado, agregados.topCuentas());
+        }
+    }
+
+    @Nested
+    @DisplayName("Test de Historial de Movimientos")
+    class BancoTestHistorial {
+        @Test
+        @DisplayName("Test history records movements with counterparty and pages by time range")
+        void testHistorial() {
+            AtomicLong reloj = new AtomicLong();
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000"));
+            banco.addCuenta(cuenta1);
+            banco.habilitarHistorial(2, 4, 8, reloj::incrementAndGet);
+            banco.addCuenta(cuenta2);
+
+            banco.transferir(cuenta1, cuenta2, new BigDecimal("500"));
+            cuenta1.credito(new BigDecimal("100"));
+            cuenta1.setSaldo(new BigDecimal("2000"));
+            cuenta1.debito(new BigDecimal("50"));
+
+            HistorialMovimientos historial = cuenta1.getHistorial().orElseThrow();
+            PaginaMovimientos primera = historial.consultar(0, Long.MAX_VALUE, 0, 2);
+            PaginaMovimientos segunda = historial.consultar(0, Long.MAX_VALUE, primera.siguiente(), 2);
+            assertAll(
+                    () -> assertEquals(List.of(new Movimiento(0, 1, new BigDecimal("-500.00"), cuenta2.getId()),
+                            new Movimiento(1, 3, new BigDecimal("100.00"), 0)), primera.movimientos()),
+                    () -> assertTrue(primera.hayMas()),
+                    () -> assertEquals(List.of(2L, 3L), segunda.movimientos().stream().map(Movimiento::indice).toList()),
+                    () -> assertFalse(segunda.hayMas()),
+                    () -> assertEquals(List.of(3L, 4L), historial.consultar(3, 5, 0, 10).movimientos().stream()
+                            .map(Movimiento::tiempo).toList()),
+                    () -> assertEquals(new ResumenMovimientos(new BigDecimal("100.00"), new BigDecimal("650.00"), 4, true),
+                            historial.resumir(0, Long.MAX_VALUE)),
+                    () -> assertEquals(new Movimiento(0, 2, new BigDecimal("500.00"), cuenta1.getId()),
+                            cuenta2.getHistorial().orElseThrow().consultar(0, Long.MAX_VALUE, 0, 10).movimientos().get(0))
+            );
+        }
+
+        @Test
+        @DisplayName("Test old blocks are compacted into summaries that keep the totals")
+        void testHistorialCompactado() {
+            AtomicLong reloj = new AtomicLong();
+            Cuenta cuenta = new Cuenta("John Doe", BigDecimal.ZERO);
+            banco.addCuenta(cuenta);
+            banco.habilitarHistorial(2, 2, 4, reloj::incrementAndGet);
+            int movimientos = 10 * HistorialMovimientos.TAMANO_BLOQUE + 7;
+            for(int i = 0; i < movimientos; i++) {
+                cuenta.credito(BigDecimal.ONE);
+            }
+
+            HistorialMovimientos historial = cuenta.getHistorial().orElseThrow();
+            long primerDetalle = 9L * HistorialMovimientos.TAMANO_BLOQUE;
+            assertAll(
+                    () -> assertEquals(movimientos, historial.getCantidad()),
+                    () -> assertEquals(primerDetalle, historial.getPrimerDetalle()),
+                    () -> assertEquals(primerDetalle, historial.consultar(0, Long.MAX_VALUE, 0, 1).movimientos().get(0).indice()),
+                    () -> assertEquals(new ResumenMovimientos(new BigDecimal(movimientos + ".00"), new BigDecimal("0.00"), movimientos, true),
+                            historial.resumir(0, Long.MAX_VALUE)),
+                    () -> assertFalse(historial.resumir(500, primerDetalle + 100).exacto()),
+                    () -> assertEquals(new ResumenMovimientos(new BigDecimal("10.00"), new BigDecimal("0.00"), 10, true),
+                            historial.resumir(primerDetalle + 1, primerDetalle + 11))
+            );
+        }
+
+        @Test
+        @DisplayName("Test blocks start small and grow up to the full block size")
+        void testHistorialCrecimiento() {
+            HistorialMovimientos historial = new HistorialMovimientos(2, 4, 4);
+            historial.registrar(1, 100, 0);
+            assertEquals(HistorialMovimientos.TAMANO_INICIAL, historial.getCapacidad());
+
+            for(int i = 1; i <= HistorialMovimientos.TAMANO_BLOQUE; i++) {
+                historial.registrar(i + 1, 100, 0);
+            }
+            assertEquals(HistorialMovimientos.TAMANO_BLOQUE + HistorialMovimientos.TAMANO_INICIAL, historial.getCapacidad());
+            PaginaMovimientos pagina = historial.consultar(0, Long.MAX_VALUE, HistorialMovimientos.TAMANO_BLOQUE - 1, 10);
+            assertEquals(List.of(1023L, 1024L), pagina.movimientos().stream().map(Movimiento::indice).toList());
+        }
+
+        @Test
+        @DisplayName("Test a non-positive page limit is rejected")
+        void testHistorialLimiteInvalido() {
+            HistorialMovimientos historial = new HistorialMovimientos(2, 4, 4);
+            historial.registrar(1, 100, 0);
+
+            IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> historial.consultar(0, 10, 0, -1));
+            assertEquals("El límite debe ser positivo: -1", exception.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> historial.consultar(0, 10, 0, 0));
+        }
+    }
+
+    @Nested
+    @DisplayName("Test de Límites de Velocidad")
+    class BancoTestLimites {
+        @Test
+        @DisplayName("Test debits over the amount or count of the window are rejected until it rolls")
+        void testLimites() {
+            AtomicLong reloj = new AtomicLong();
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("5000"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("100"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+            assertThrows(IllegalArgumentException.class, () -> new LimiteVelocidad(Duration.ZERO, BigDecimal.TEN, 1));
+            LimiteVelocidad limite = new LimiteVelocidad(Duration.ofSeconds(1), new BigDecimal("1000.00"), 3);
+            banco.habilitarLimites(limite, reloj::get);
+
+            banco.transferir(cuenta1, cuenta2, new BigDecimal("600"));
+            assertEquals(ResultadoOperacion.LIMITE_EXCEDIDO, cuenta1.tryDebito(new BigDecimal("500")));
+            cuenta1.debito(new BigDecimal("400"));
+            assertThrows(LimiteExcedidoException.class, () -> banco.transferir(cuenta1, cuenta2, new BigDecimal("0.01")));
+
+            // Un rechazo por fondos no consume el límite, y los créditos no cuentan
+            assertEquals(ResultadoOperacion.SIN_FONDOS, cuenta2.tryDebito(new BigDecimal("1000")));
+            for(int i = 0; i < 3; i++) {
+                cuenta2.debito(new BigDecimal("0.01"));
+            }
+            assertThrows(LimiteExcedidoException.class, () -> cuenta2.debito(new BigDecimal("0.01")));
+
+            reloj.set(Duration.ofMillis(875).toNanos());
+            assertEquals(ResultadoOperacion.LIMITE_EXCEDIDO, banco.tryTransferir(cuenta1, cuenta2, BigDecimal.ONE));
+            // Los débitos de t=0 salen de la ventana después de un segundo más una cubeta (1/7 s)
+            reloj.set(Duration.ofMillis(1142).toNanos());
+            assertEquals(ResultadoOperacion.LIMITE_EXCEDIDO, banco.tryTransferir(cuenta1, cuenta2, BigDecimal.ONE));
+            reloj.set(Duration.ofMillis(1143).toNanos());
+            assertEquals(ResultadoOperacion.EXITOSA, banco.tryTransferir(cuenta1, cuenta2, new BigDecimal("1000")));
+
+            assertAll(
+                    () -> assertSame(limite, banco.getLimites().orElseThrow()),
+                    () -> assertEquals("3000", cuenta1.getSaldo().toPlainString()),
+                    () -> assertEquals("1699.97", cuenta2.getSaldo().toPlainString()),
+                    () -> assertEquals(6, banco.getMetricas().instantanea().rechazos())
+            );
+        }
+
+        @Test
+        @DisplayName("Test a debit late in a bucket still counts for a whole window")
+        void testLimitesFinDeCubeta() {
+            AtomicLong reloj = new AtomicLong();
+            Cuenta cuenta = new Cuenta("John Doe", new BigDecimal("5000"));
+            banco.addCuenta(cuenta);
+            banco.habilitarLimites(new LimiteVelocidad(Duration.ofSeconds(8), new BigDecimal("5000"), 1), reloj::get);
+
+            reloj.set(Duration.ofMillis(999).toNanos());
+            assertEquals(ResultadoOperacion.EXITOSA, cuenta.tryDebito(BigDecimal.ONE));
+            for(long millis : new long[]{8000, 8999}) {
+                reloj.set(Duration.ofMillis(millis).toNanos());
+                assertEquals(ResultadoOperacion.LIMITE_EXCEDIDO, cuenta.tryDebito(BigDecimal.ONE), () -> "t=" + millis + "ms");
+            }
+            reloj.set(Duration.ofMillis(9143).toNanos());
+            assertEquals(ResultadoOperacion.EXITOSA, cuenta.tryDebito(BigDecimal.ONE));
+        }
+
+        @Test
+        @DisplayName("Test concurrent debits never pass the count limit together")
+        void testLimitesConcurrentes() throws Exception {
+            Cuenta cuenta = new Cuenta("John Doe", new BigDecimal("100000"));
+            banco.addCuenta(cuenta);
+            banco.habilitarLimites(new LimiteVelocidad(Duration.ofHours(1), new BigDecimal("100000"), 150));
+            AtomicInteger rechazos = new AtomicInteger();
+
+            ejecutarEnParalelo(4, 100, i -> {
+                try {
+                    cuenta.debito(BigDecimal.ONE);
+                } catch(LimiteExcedidoException e) {
+                    rechazos.incrementAndGet();
+                }
+            });
+
+            assertEquals(250, rechazos.get());
+            assertEquals("99850", cuenta.getSaldo().toPlainString());
+        }
+    }
+
+    interface Operacion {
+        void ejecutar(int iteracion);
+    }
+
+    static void ejecutarEnParalelo(int hilos, int iteraciones, Operacion operacion) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch inicio = new CountDownLatch(1);
+        List<Future<?>> futuros = new ArrayList<>();
+        for(int h = 0; h < hilos; h++) {
+            int hilo = h;
+            futuros.add(executor.submit(() -> {
+                inicio.await();
+                for(int i = 0; i < iteraciones; i++) {
+                    operacion.ejecutar(hilo + i);
+                }
+                return null;
+            }));
+        }
+        inicio.countDown();
+        for(Future<?> futuro : futuros) {
+            futuro.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
@@ -13,6 +13,7 @@ import java.math.BigDecimal;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.time.Duration.ofMillis;
 import static java.time.Duration.ofSeconds;
@@ -164,6 +165,144 @@ class CuentaTest {
         }
     }
 
+    @Nested
+    @Tag("cuenta")
+    @DisplayName("Test de Saldo Escalado de Cuenta")
+    class CuentaTestSaldoEscalado {
+        @Test
+        @DisplayName("Test debit and credit a scaled account")
+        void testOperacionesSaldoEscalado() {
+            Cuenta cuenta = new Cuenta("John Doe", new SaldoEscalado(new BigDecimal("1000.123"), 3));
+            cuenta.debito(new BigDecimal("100"));
+            cuenta.credito(new BigDecimal("0.5"));
+            assertEquals("900.623", cuenta.getSaldo().toPlainString());
+        }
+
+        @Test
+        @DisplayName("Test NotEnoughMoney exception in a scaled account")
+        void testNotEnoughMoneySaldoEscalado() {
+            Cuenta cuenta = new Cuenta("John Doe", new SaldoEscalado(new BigDecimal("10.00"), 2));
+            Exception exception = assertThrows(NotEnoughMoneyException.class, () -> cuenta.debito(new BigDecimal("10.01")));
+            assertEquals("Not enough money", exception.getMessage());
+            assertEquals("10.00", cuenta.getSaldo().toPlainString(), () -> "El saldo no debe cambiar");
+        }
+
+        @Test
+        @DisplayName("Test amount with more decimals than the scale")
+        void testMontoFueraDeEscala() {
+            Cuenta cuenta = new Cuenta("John Doe", new SaldoEscalado(new BigDecimal("10.00"), 2));
+            assertThrows(ArithmeticException.class, () -> cuenta.credito(new BigDecimal("0.001")));
+        }
+
+        @Test
+        @Tag("banco")
+        @DisplayName("Test transfer to an account with a smaller scale is rejected without losing money")
+        void testTransferenciaEscalasMixtas() {
+            Banco banco = new Banco();
+            Cuenta origen = new Cuenta("John Doe", new SaldoEscalado(new BigDecimal("10.000"), 3));
+            Cuenta destino = new Cuenta("Jane Doe", new SaldoEscalado(new BigDecimal("0.00"), 2));
+            banco.addCuenta(origen);
+            banco.addCuenta(destino);
+
+            assertThrows(ArithmeticException.class, () -> banco.transferir(origen, destino, new BigDecimal("1.005")));
+            assertEquals("10.000", origen.getSaldo().toPlainString());
+            assertEquals("0.00", destino.getSaldo().toPlainString());
+
+            banco.addListener(new MovimientoListener() {
+                @Override
+                public void onCredito(Cuenta cuenta, BigDecimal monto, Cuenta contraparte) {
+                    if(cuenta == destino) {
+                        throw new IllegalStateException("Listener fallido");
+                    }
+                }
+            });
+            assertThrows(IllegalStateException.class, () -> banco.transferir(origen, destino, new BigDecimal("2.5")));
+            assertEquals("10.000", origen.getSaldo().toPlainString(), () -> "El débito se debe devolver");
+            assertEquals("0.00", destino.getSaldo().toPlainString());
+        }
+    }
+
+    @Nested
+    @Tag("cuenta")
+    @DisplayName("Test de Saldo Caliente de Cuenta")
+    class CuentaTestSaldoCaliente {
+        @Test
+        @DisplayName("Test credits are folded before reading and debiting")
+        void testOperacionesSaldoCaliente() {
+            Cuenta cuenta = new Cuenta("John Doe", new SaldoCaliente(new BigDecimal("10.00"), 2));
+            cuenta.credito(new BigDecimal("5.25"));
+            cuenta.credito(new BigDecimal("4.75"));
+            cuenta.debito(new BigDecimal("20.00"));
+            assertEquals("0.00", cuenta.getSaldo().toPlainString());
+
+            Exception exception = assertThrows(NotEnoughMoneyException.class, () -> cuenta.debito(new BigDecimal("0.01")));
+            assertEquals("Not enough money", exception.getMessage());
+        }
+
+        @Test
+        @DisplayName("Test concurrent credits are not lost and never allow an overdraft")
+        void testCreditosConcurrentes() throws InterruptedException {
+            Cuenta cuenta = new Cuenta("John Doe", new SaldoCaliente(BigDecimal.ZERO, 2, 4));
+            AtomicInteger rechazados = new AtomicInteger();
+            Thread[] hilos = new Thread[4];
+            for(int i = 0; i < hilos.length; i++) {
+                hilos[i] = new Thread(() -> {
+                    for(int j = 0; j < 10_000; j++) {
+                        cuenta.credito(new BigDecimal("0.01"));
+                        try {
+                            cuenta.debito(new BigDecimal("0.01"));
+                        } catch(NotEnoughMoneyException e) {
+                            // Otro hilo se llevó el crédito
+                            rechazados.incrementAndGet();
+                        }
+                    }
+                });
+                hilos[i].start();
+            }
+            for(Thread hilo : hilos) {
+                hilo.join();
+            }
+            assertEquals(BigDecimal.valueOf(rechazados.get(), 2), cuenta.getSaldo());
+            cuenta.setSaldo(BigDecimal.TEN);
+            assertEquals("10.00", cuenta.getSaldo().toPlainString());
+        }
+
+        @Test
+        @DisplayName("Test a credit that overflows its cell is rejected")
+        void testDesbordeCelda() {
+            SaldoCaliente saldo = new SaldoCaliente(BigDecimal.ZERO, 0, 1);
+            saldo.credito(Long.MAX_VALUE);
+            assertThrows(ArithmeticException.class, () -> saldo.credito(1L));
+            assertEquals(BigDecimal.valueOf(Long.MAX_VALUE), saldo.get());
+        }
+    }
+
+    @Nested
+    @Tag("cuenta")
+    @DisplayName("Test de Débito sin Excepciones")
+    class CuentaTestTryDebito {
+        @Test
+        @DisplayName("Test tryDebito reports the rejection without changing the saldo")
+        void testTryDebito() {
+            Cuenta cuenta = new Cuenta("John Doe", new BigDecimal("100"));
+            assertEquals(ResultadoOperacion.EXITOSA, cuenta.tryDebito(new BigDecimal("40")));
+            assertEquals(ResultadoOperacion.SIN_FONDOS, cuenta.tryDebito(new BigDecimal("60.01")));
+            assertEquals("60", cuenta.getSaldo().toPlainString());
+        }
+
+        @Test
+        @DisplayName("Test NotEnoughMoney exception is stackless and shared")
+        void testExcepcionSinTraza() {
+            Cuenta cuenta = new Cuenta("John Doe", new SaldoEscalado(BigDecimal.ONE, 2));
+            NotEnoughMoneyException primera = assertThrows(NotEnoughMoneyException.class, () -> cuenta.debito(BigDecimal.TEN));
+            NotEnoughMoneyException segunda = assertThrows(NotEnoughMoneyException.class, () -> cuenta.debito(BigDecimal.TEN));
+            assertSame(primera, segunda);
+            assertEquals("Not enough money", primera.getMessage());
+            assertEquals(0, primera.getStackTrace().length);
+            assertEquals(0, new NotEnoughMoneyException("Not enough money").getStackTrace().length);
+        }
+    }
+
     @Nested
     @DisplayName("Test de Relaciones de Cuenta")
     class CuentaTestRelaciones {
@@ -215,6 +354,11 @@ class CuentaTest {
                                 .filter(c -> c.getPersona().equals(expectedPerson))
                                 .findFirst()
                                 .isPresent());
+                    },
+                    () -> {
+                        // Si esta presente el valor buscado [Opt 4], usando el índice del Banco
+                        assertEquals(cuenta2, banco.findByPersona(expectedPerson).orElseThrow(),
+                                () -> "La cuenta de la Persona no concuerda con el esperado");
                     });
 
         }
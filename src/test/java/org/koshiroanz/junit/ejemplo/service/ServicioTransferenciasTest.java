@@ -0,0 +1,116 @@
+package org.koshiroanz.junit.ejemplo.service;
+
+import org.junit.jupiter.api.*;
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+import org.koshiroanz.junit.ejemplo.exceptions.ServicioSaturadoException;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+import org.koshiroanz.junit.ejemplo.models.MovimientoListener;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class ServicioTransferenciasTest {
+    Banco banco;
+    Cuenta cuenta1;
+    Cuenta cuenta2;
+
+    @BeforeEach
+    void init() {
+        banco = new Banco();
+        cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+        cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000"));
+        banco.addCuenta(cuenta1);
+        banco.addCuenta(cuenta2);
+    }
+
+    @Test
+    @DisplayName("Test service completes transfers and reports overdrafts")
+    void testTransferencias() throws Exception {
+        try(ServicioTransferencias servicio = ServicioTransferencias.conHilosDePlataforma(banco, 10, 2)) {
+            servicio.transferir(cuenta1, cuenta2, new BigDecimal("500")).get(5, TimeUnit.SECONDS);
+            CompletableFuture<Void> rechazada = servicio.transferir(cuenta2, cuenta1, new BigDecimal("5000"));
+
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> rechazada.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(NotEnoughMoneyException.class, exception.getCause());
+        }
+        assertEquals("2000", cuenta1.getSaldo().toPlainString());
+        assertEquals("1500", cuenta2.getSaldo().toPlainString());
+    }
+
+    @Test
+    @DisplayName("Test saturated service rejects immediately")
+    void testAdmisionAcotada() throws Exception {
+        // Las transferencias quedan retenidas en confirmar hasta liberar el latch
+        CountDownLatch liberar = new CountDownLatch(1);
+        banco.addListener(new MovimientoListener() {
+            @Override
+            public void confirmar(Cuenta cuenta) {
+                try {
+                    liberar.await();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        try(ServicioTransferencias servicio = ServicioTransferencias.conHilosDePlataforma(banco, 2, 2)) {
+            List<CompletableFuture<Void>> admitidas = List.of(
+                    servicio.transferir(cuenta1, cuenta2, BigDecimal.ONE),
+                    servicio.transferir(cuenta1, cuenta2, BigDecimal.ONE));
+            CompletableFuture<Void> rechazada = servicio.transferir(cuenta1, cuenta2, BigDecimal.ONE);
+
+            assertTrue(rechazada.isCompletedExceptionally());
+            assertInstanceOf(ServicioSaturadoException.class, assertThrows(ExecutionException.class, rechazada::get).getCause());
+            assertEquals(1, servicio.getRechazadas());
+            assertEquals(2, servicio.getEnCurso());
+
+            liberar.countDown();
+            CompletableFuture.allOf(admitidas.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            assertEquals(0, servicio.getEnCurso());
+        }
+        assertEquals("2498", cuenta1.getSaldo().toPlainString());
+    }
+
+    @Test
+    @DisplayName("Test a transfer chained on a completed one is admitted")
+    void testTransferenciasEncadenadas() throws Exception {
+        try(ServicioTransferencias servicio = ServicioTransferencias.conHilosDePlataforma(banco, 1, 1)) {
+            for(int i = 0; i < 200; i++) {
+                servicio.transferir(cuenta1, cuenta2, BigDecimal.ONE)
+                        .thenCompose(v -> servicio.transferir(cuenta2, cuenta1, BigDecimal.ONE))
+                        .get(5, TimeUnit.SECONDS);
+            }
+            assertEquals(0, servicio.getRechazadas());
+        }
+    }
+
+    @Test
+    @DisplayName("Test closing from an interrupted thread keeps the interrupt")
+    void testCerrarInterrumpido() {
+        ServicioTransferencias servicio = ServicioTransferencias.conHilosDePlataforma(banco, 1, 1);
+        Thread.currentThread().interrupt();
+        servicio.close();
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test
+    @DisplayName("Test load generator reports latency percentiles")
+    void testGeneradorCarga() throws Exception {
+        try(ServicioTransferencias servicio = ServicioTransferencias.conHilosDePlataforma(banco, 1000, 2)) {
+            ResultadoCarga resultado = new GeneradorCarga(List.of(cuenta1, cuenta2), BigDecimal.ONE, 42)
+                    .ejecutar("plataforma", servicio, 2000, 20000);
+
+            assertEquals(2000, resultado.completadas() + resultado.rechazadas() + resultado.fallidas());
+            assertTrue(resultado.p50() <= resultado.p99() && resultado.p99() <= resultado.p999());
+        }
+        assertEquals("3500", cuenta1.getSaldo().add(cuenta2.getSaldo()).toPlainString());
+    }
+}
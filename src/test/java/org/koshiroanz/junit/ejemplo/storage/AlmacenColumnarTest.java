@@ -0,0 +1,110 @@
+package org.koshiroanz.junit.ejemplo.storage;
+
+import org.junit.jupiter.api.*;
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class AlmacenColumnarTest {
+    AlmacenColumnar almacen;
+    Banco banco;
+
+    @BeforeEach
+    void init() {
+        almacen = new AlmacenColumnar(2);
+        banco = new Banco(almacen);
+    }
+
+    @Test
+    @DisplayName("Test accounts operate over their columnar row")
+    void testOperacionesSobreFila() {
+        Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+        Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000.50"));
+        banco.addCuenta(cuenta1);
+        banco.addCuenta(cuenta2);
+
+        banco.transferir(cuenta1, cuenta2, new BigDecimal("500.25"));
+
+        assertAll(
+                () -> assertEquals("1999.75", cuenta1.getSaldo().toPlainString()),
+                () -> assertEquals("1500.75", cuenta2.getSaldo().toPlainString()),
+                () -> assertEquals("3500.50", banco.saldoTotal().toPlainString()),
+                () -> assertThrows(NotEnoughMoneyException.class, () -> cuenta1.debito(new BigDecimal("2000"))),
+                () -> assertEquals("1999.75", cuenta1.getSaldo().toPlainString()));
+    }
+
+    @Test
+    @DisplayName("Test accounts without a persona can be stored and renamed")
+    void testPersonaNula() {
+        Cuenta anonima = new Cuenta((String) null, new BigDecimal("10"));
+        banco.addCuenta(anonima);
+
+        assertNull(anonima.getPersona());
+        assertNull(almacen.getPersona(0));
+        assertEquals("10.00", almacen.saldoTotal(null).toPlainString());
+
+        anonima.setPersona("John Doe");
+        assertEquals("John Doe", almacen.getPersona(0));
+        assertEquals("0.00", almacen.saldoTotal(null).toPlainString());
+        assertEquals("10.00", almacen.saldoTotal("John Doe").toPlainString());
+    }
+
+    @Test
+    @DisplayName("Test persona column is dictionary encoded")
+    void testDiccionarioPersonas() {
+        Cuenta cuenta1 = new Cuenta(new String("John Doe"), new BigDecimal("10"));
+        Cuenta cuenta2 = new Cuenta(new String("John Doe"), new BigDecimal("20"));
+        Cuenta cuenta3 = new Cuenta("Jane Doe", new BigDecimal("30"));
+        banco.addCuenta(cuenta1);
+        banco.addCuenta(cuenta2);
+        banco.addCuenta(cuenta3);
+
+        assertSame(cuenta1.getPersona(), cuenta2.getPersona(), () -> "La persona debería estar internada");
+        assertEquals("30.00", almacen.saldoTotal("John Doe").toPlainString());
+
+        cuenta3.setPersona("John Doe");
+        assertEquals("60.00", almacen.saldoTotal("John Doe").toPlainString());
+        assertEquals("0.00", almacen.saldoTotal("Jane Doe").toPlainString());
+    }
+
+    @Test
+    @DisplayName("Test store grows across blocks")
+    void testCrecimiento() {
+        int cuentas = 200_000;
+        for(int i = 0; i < cuentas; i++) {
+            banco.addCuenta(new Cuenta("Persona " + (i % 1000), BigDecimal.ONE));
+        }
+        Cuenta ultima = banco.getCuentas().get(cuentas - 1);
+        ultima.credito(BigDecimal.TEN);
+
+        assertEquals(cuentas, almacen.size());
+        assertEquals("11.00", ultima.getSaldo().toPlainString());
+        assertEquals(BigDecimal.valueOf(cuentas + 10).setScale(2), banco.saldoTotal());
+    }
+
+    @Test
+    @DisplayName("Test totals can be read while rows are appended across blocks")
+    void testTotalesDuranteCrecimiento() throws Exception {
+        int filas = 300_000;
+        Thread escritor = new Thread(() -> {
+            for(int i = 0; i < filas; i++) {
+                almacen.agregar(i, "Persona " + (i & 7), BigDecimal.ONE);
+            }
+        });
+        escritor.start();
+        BigDecimal anterior = BigDecimal.ZERO;
+        while(escritor.isAlive()) {
+            BigDecimal total = almacen.saldoTotal();
+            almacen.saldoTotal("Persona 0");
+            assertTrue(total.compareTo(anterior) >= 0, () -> "El total no debe retroceder");
+            anterior = total;
+        }
+        escritor.join();
+        assertEquals(BigDecimal.valueOf(filas).setScale(2), almacen.saldoTotal());
+    }
+}
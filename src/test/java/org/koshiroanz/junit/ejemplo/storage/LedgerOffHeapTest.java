@@ -0,0 +1,149 @@
+package org.koshiroanz.junit.ejemplo.storage;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.koshiroanz.junit.ejemplo.exceptions.NotEnoughMoneyException;
+import org.koshiroanz.junit.ejemplo.models.Banco;
+import org.koshiroanz.junit.ejemplo.models.Cuenta;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("banco")
+class LedgerOffHeapTest {
+    @TempDir
+    Path directorio;
+
+    @Test
+    @DisplayName("Test accounts operate over off-heap records")
+    void testOperacionesEnMemoria() {
+        Banco banco = new Banco(LedgerOffHeap.enMemoria(10, 2));
+        Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+        Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000"));
+        banco.addCuenta(cuenta1);
+        banco.addCuenta(cuenta2);
+
+        banco.transferir(cuenta1, cuenta2, new BigDecimal("500.10"));
+
+        assertAll(
+                () -> assertEquals("1999.90", cuenta1.getSaldo().toPlainString()),
+                () -> assertEquals("1500.10", cuenta2.getSaldo().toPlainString()),
+                () -> assertEquals("3500.00", banco.saldoTotal().toPlainString()),
+                () -> assertThrows(NotEnoughMoneyException.class, () -> cuenta2.debito(new BigDecimal("1500.11"))));
+    }
+
+    @Test
+    @DisplayName("Test mapped ledger survives a restart")
+    void testLedgerMapeadoSobreviveReinicio() {
+        Path archivo = directorio.resolve("ledger.dat");
+        long idJohn;
+        try(LedgerOffHeap ledger = LedgerOffHeap.mapear(archivo, 1000, 2)) {
+            Banco banco = new Banco(ledger);
+            Cuenta cuenta1 = new Cuenta("John Doe", new BigDecimal("2500"));
+            Cuenta cuenta2 = new Cuenta("Jane Doe", new BigDecimal("1000"));
+            banco.addCuenta(cuenta1);
+            banco.addCuenta(cuenta2);
+            banco.transferir(cuenta1, cuenta2, new BigDecimal("500"));
+            cuenta2.setPersona("Jane Roe");
+            idJohn = cuenta1.getId();
+        }
+
+        try(LedgerOffHeap ledger = LedgerOffHeap.mapear(archivo, 1000, 2)) {
+            Banco banco = ledger.recuperar();
+            assertAll(
+                    () -> assertEquals(2, banco.getCuentas().size()),
+                    () -> assertEquals(2, ledger.size()),
+                    () -> assertEquals("2000.00", banco.findById(idJohn).orElseThrow().getSaldo().toPlainString()),
+                    () -> assertEquals("1500.00", banco.findByPersona("Jane Roe").orElseThrow().getSaldo().toPlainString()));
+
+            // Las cuentas recuperadas siguen escribiendo en los mismos registros
+            banco.findById(idJohn).orElseThrow().credito(BigDecimal.ONE);
+            assertEquals("3501.00", banco.saldoTotal().toPlainString());
+        }
+    }
+
+    @Test
+    @DisplayName("Test fixed-width limits of the ledger")
+    void testLimites() {
+        Banco banco = new Banco(LedgerOffHeap.enMemoria(1, 2));
+        banco.addCuenta(new Cuenta("John Doe", BigDecimal.ONE));
+
+        assertThrows(IllegalStateException.class, () -> banco.addCuenta(new Cuenta("Jane Doe", BigDecimal.ONE)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new Banco(LedgerOffHeap.enMemoria(1, 2)).addCuenta(new Cuenta("x".repeat(47), BigDecimal.ONE)));
+    }
+
+    @Test
+    @DisplayName("Test a persona the ledger cannot store is rejected before the account changes")
+    void testPersonaRechazada() {
+        Banco banco = new Banco(LedgerOffHeap.enMemoria(10, 2));
+        Cuenta ana = new Cuenta("Ana", BigDecimal.ONE);
+        Cuenta anonima = new Cuenta((String) null, BigDecimal.TEN);
+        banco.addCuenta(ana);
+        banco.addCuenta(anonima);
+
+        assertThrows(IllegalArgumentException.class, () -> ana.setPersona("x".repeat(60)));
+        anonima.setPersona("Pepe");
+        ana.setPersona(null);
+
+        LedgerOffHeap ledger = (LedgerOffHeap) banco.getAlmacen();
+        assertAll(
+                () -> assertNull(ana.getPersona()),
+                () -> assertNull(ledger.getPersona(0)),
+                () -> assertEquals("Pepe", ledger.getPersona(1)),
+                () -> assertTrue(banco.findByPersona("Ana").isEmpty()),
+                () -> assertSame(anonima, banco.findByPersona("Pepe").orElseThrow()),
+                () -> assertEquals("11.00", banco.saldoTotal().toPlainString()));
+    }
+
+    @Test
+    @DisplayName("Test a failed rename leaves the account, the record and the index unchanged")
+    void testRenombreFallido() {
+        Banco banco = new Banco(LedgerOffHeap.enMemoria(10, 2));
+        Cuenta ana = new Cuenta("Ana", BigDecimal.ONE);
+        banco.addCuenta(ana);
+
+        assertThrows(IllegalArgumentException.class, () -> ana.setPersona("x".repeat(60)));
+
+        assertEquals("Ana", ana.getPersona());
+        assertEquals("Ana", ((LedgerOffHeap) banco.getAlmacen()).getPersona(0));
+        assertSame(ana, banco.findByPersona("Ana").orElseThrow());
+    }
+
+    @Test
+    @DisplayName("Test concurrent transfers over the ledger keep the total")
+    void testTransferenciasConcurrentes() throws Exception {
+        Banco banco = new Banco(LedgerOffHeap.enMemoria(100, 0));
+        List<Cuenta> cuentas = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            Cuenta cuenta = new Cuenta("Persona " + i, new BigDecimal("1000"));
+            banco.addCuenta(cuenta);
+            cuentas.add(cuenta);
+        }
+
+        List<Thread> hilos = new ArrayList<>();
+        for(int h = 0; h < 4; h++) {
+            int hilo = h;
+            hilos.add(new Thread(() -> {
+                for(int i = 0; i < 10000; i++) {
+                    try {
+                        banco.transferir(cuentas.get((i + hilo) % 10), cuentas.get((i * 3 + hilo + 1) % 10), BigDecimal.TEN);
+                    } catch(NotEnoughMoneyException e) {
+                        // Rechazo esperado, el total no cambia
+                    }
+                }
+            }));
+        }
+        hilos.forEach(Thread::start);
+        for(Thread hilo : hilos) {
+            hilo.join();
+        }
+
+        assertEquals("10000", banco.saldoTotal().toPlainString());
+        assertTrue(cuentas.stream().allMatch(c -> c.getSaldo().signum() >= 0));
+    }
+}